@@ -2,5 +2,5 @@
 :: Tetred-CLI JAR file
 SET JAR=${project.artifactId}-${project.version}-jar-with-dependencies.jar
 
-java -jar %JAR% %*
+java --add-modules jdk.incubator.vector -jar %JAR% %*
 
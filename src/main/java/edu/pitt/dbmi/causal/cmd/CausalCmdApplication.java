@@ -18,17 +18,17 @@
  */
 package edu.pitt.dbmi.causal.cmd;
 
-import edu.cmu.tetrad.graph.Graph;
-import edu.cmu.tetrad.util.GraphSampling;
+import edu.cmu.tetrad.data.DataType;
 import edu.cmu.tetrad.util.Params;
-import edu.pitt.dbmi.algo.resampling.ResamplingEdgeEnsemble;
 import edu.pitt.dbmi.causal.cmd.data.DataValidations;
+import edu.pitt.dbmi.causal.cmd.data.NumericKernels;
+import edu.pitt.dbmi.causal.cmd.tetrad.GraphFileSink;
 import edu.pitt.dbmi.causal.cmd.tetrad.TetradAlgorithms;
 import edu.pitt.dbmi.causal.cmd.tetrad.TetradIndependenceTests;
 import edu.pitt.dbmi.causal.cmd.tetrad.TetradRunner;
 import edu.pitt.dbmi.causal.cmd.tetrad.TetradScores;
 import edu.pitt.dbmi.causal.cmd.util.DateTime;
-import edu.pitt.dbmi.causal.cmd.util.GraphIO;
+import edu.pitt.dbmi.causal.cmd.util.LogMessages;
 import edu.pitt.dbmi.causal.cmd.util.WordUtil;
 import edu.pitt.dbmi.data.reader.Delimiter;
 import java.io.BufferedOutputStream;
@@ -100,6 +100,8 @@ public class CausalCmdApplication {
         } else if (Args.hasLongParam(args, CmdParams.VERSION)) {
             System.out.println(Applications.getVersion());
         } else {
+            boundCommonPool(args);
+
             CmdArgs cmdArgs = null;
             try {
                 cmdArgs = CmdParser.parse(args);
@@ -122,6 +124,50 @@ public class CausalCmdApplication {
         }
     }
 
+    /**
+     * Bound the JVM's common fork-join pool, which Tetrad uses for some of its
+     * computations, to the number of threads of the run, the one given on the
+     * command-line or else the default one. This has to be done before the
+     * pool is first used, which happens while the command-line is being
+     * parsed. An invalid value is left for the parser to report.
+     *
+     * @param args command-line arguments
+     */
+    private static void boundCommonPool(String[] args) {
+        int numOfThreads = CmdParser.getDefaultNumOfThreads();
+        if (Args.hasLongParam(args, CmdParams.THREAD)) {
+            try {
+                int threadParam = Integer.parseInt(Args.toMapLongOptions(args).get(CmdParams.THREAD));
+                if (threadParam > 0) {
+                    numOfThreads = threadParam;
+                }
+            } catch (NumberFormatException exception) {
+                // the command-line parser will report the invalid value
+            }
+        }
+
+        System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", String.valueOf(numOfThreads));
+    }
+
+    /**
+     * Switch the vectorized numeric loops on or off for this run.
+     *
+     * @param cmdArgs command-line parameters and arguments
+     * @param out output stream writer
+     */
+    private static void setNumericKernels(CmdArgs cmdArgs, PrintStream out) {
+        boolean isVectorized = NumericKernels.setVectorized(cmdArgs.isVectorKernels());
+        if (cmdArgs.isVectorKernels()) {
+            if (isVectorized) {
+                LogMessages.logMessage("Computing with the Vector API.", LOGGER, out);
+            } else if (NumericKernels.isVectorApiAvailable()) {
+                LogMessages.logMessage("Computing with scalar loops: the Vector API did not give the same results.", LOGGER, out);
+            } else {
+                LogMessages.logMessage("Computing with scalar loops: the Vector API is not available.  Run java with --add-modules jdk.incubator.vector.", LOGGER, out);
+            }
+        }
+    }
+
     /**
      * Run Tetrad algorithm.
      *
@@ -142,57 +188,19 @@ public class CausalCmdApplication {
 
         try (PrintStream out = new PrintStream(new BufferedOutputStream(Files.newOutputStream(outTxtFile, StandardOpenOption.CREATE)), true)) {
             writeOutParameters(cmdArgs, out);
+            setNumericKernels(cmdArgs, out);
 
-            if (!cmdArgs.isSkipValidation()) {
-                DataValidations.validate(cmdArgs, out);
+            // tabular data is validated while it is read in
+            if (!cmdArgs.isSkipValidation() && cmdArgs.getDataType() == DataType.Covariance) {
+                DataValidations.validateCovariance(cmdArgs, out);
                 out.println();
             }
 
-            TetradRunner tetradRunner = new TetradRunner(cmdArgs);
-            tetradRunner.runAlgorithm(out);
-            out.println();
-            out.println("================================================================================");
-
-            Graph[] graphs = tetradRunner.getGraphs().stream().toArray(Graph[]::new);
-            for (int i = 0; i < graphs.length; i++) {
-                if (i > 0) {
-                    out.println("--------------------------------------------------------------------------------");
-                }
-
-                if (cmdArgs.hasEnsembleOption) {
-                    String ensemble = cmdArgs.getParameters().get(Params.RESAMPLING_ENSEMBLE);
-                    if (ensemble != null) {
-                        try {
-                            int ensembleValue = Integer.parseInt(ensemble);
-
-                            // Ensemble method: Preserved (1), Highest (2), Majority (3)
-                            if (ensembleValue == 1) {
-                                graphs[i] = GraphSampling.createDisplayGraph(graphs[i], ResamplingEdgeEnsemble.Preserved);
-                            } else if (ensembleValue == 2) {
-                                graphs[i] = GraphSampling.createDisplayGraph(graphs[i], ResamplingEdgeEnsemble.Highest);
-                            } else if (ensembleValue == 3) {
-                                graphs[i] = GraphSampling.createDisplayGraph(graphs[i], ResamplingEdgeEnsemble.Majority);
-                            }
-                        } catch (NumberFormatException exception) {
-                            exception.printStackTrace(System.err);
-                        }
-                    }
-                }
-
-                out.println(graphs[i].toString().trim());
-
-                if (cmdArgs.isJsonGraph()) {
-                    String fileName = (i > 0)
-                            ? String.format("%s_graph_%d.json", prefix, i)
-                            : String.format("%s_graph.json", prefix);
-
-                    Path outGraphFile = Paths.get(outDir, fileName);
-                    if (Files.exists(outGraphFile)) {
-                        Files.deleteIfExists(outGraphFile);
-                    }
-
-                    GraphIO.writeAsJSON(graphs[i], outGraphFile);
+            try (GraphFileSink graphSink = new GraphFileSink(cmdArgs, out)) {
+                try (TetradRunner tetradRunner = new TetradRunner(cmdArgs)) {
+                    tetradRunner.runAlgorithm(out, graphSink);
                 }
+                graphSink.writeGraphs(out);
             }
         }
     }
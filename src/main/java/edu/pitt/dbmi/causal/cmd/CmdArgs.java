@@ -19,6 +19,7 @@
 package edu.pitt.dbmi.causal.cmd;
 
 import edu.cmu.tetrad.data.DataType;
+import edu.pitt.dbmi.causal.cmd.data.RowFilter;
 import edu.pitt.dbmi.data.reader.Delimiter;
 import java.nio.file.Path;
 import java.util.List;
@@ -64,6 +65,61 @@ public class CmdArgs {
      */
     protected Path outDirectory;
 
+    /**
+     * Compute the covariance matrix of continuous data while reading it in.
+     */
+    protected boolean streamCovariance;
+
+    /**
+     * Write the covariance matrix of continuous data to the output directory.
+     */
+    protected boolean writeCovariance;
+
+    /**
+     * Search on the covariance matrix of continuous data instead of the data
+     * when the test and the score take a covariance matrix.
+     */
+    protected boolean useCovariance;
+
+    /**
+     * Compute the covariance matrices with the Vector API when it is
+     * available.
+     */
+    protected boolean vectorKernels;
+
+    /**
+     * Store continuous values as floats and category codes in the smallest
+     * integer type that holds them.
+     */
+    protected boolean compactData;
+
+    /**
+     * Store continuous data column by column.
+     */
+    protected boolean columnMajor;
+
+    /**
+     * Collapse identical rows of discrete data into one row and its count.
+     */
+    protected boolean collapseRows;
+
+    /**
+     * Memory ceiling, in megabytes, of the cached contingency tables of
+     * discrete data. No tables are cached when 0.
+     */
+    protected int contingencyCacheSize;
+
+    /**
+     * Directory to where the tabular datasets read in are cached.
+     */
+    protected Path cacheDirectory;
+
+    /**
+     * Directory of the scratch files holding the tabular datasets off the
+     * heap.
+     */
+    protected Path offHeapDirectory;
+
     /**
      * Prefix file name of output files.
      */
@@ -125,6 +181,32 @@ public class CmdArgs {
      */
     protected int numCategories;
 
+    /**
+     * Number of rows to find the discrete columns of mixed data from, 0 for
+     * all the rows.
+     */
+    protected int categorySampleSize;
+
+    /**
+     * Read in only the rows that match the filter.
+     */
+    protected RowFilter rowFilter;
+
+    /**
+     * Read in only the first rows, 0 for all the rows.
+     */
+    protected int rowLimit;
+
+    /**
+     * Number of rows of the random sample of rows, 0 for all the rows.
+     */
+    protected int rowSampleSize;
+
+    /**
+     * Seed of the random sample of rows.
+     */
+    protected long rowSampleSeed;
+
     /**
      * Indicates whether or not to skip data validation.
      */
@@ -135,6 +217,11 @@ public class CmdArgs {
      */
     protected boolean jsonGraph;
 
+    /**
+     * Indicates whether to resume an interrupted run from its checkpoint.
+     */
+    protected boolean resume;
+
     /**
      * Maximum number of threads can be used by algorithm, score, or
      * independence test.
@@ -186,6 +273,46 @@ public class CmdArgs {
         return outDirectory;
     }
 
+    public boolean isStreamCovariance() {
+        return streamCovariance;
+    }
+
+    public boolean isWriteCovariance() {
+        return writeCovariance;
+    }
+
+    public boolean isUseCovariance() {
+        return useCovariance;
+    }
+
+    public boolean isVectorKernels() {
+        return vectorKernels;
+    }
+
+    public boolean isCompactData() {
+        return compactData;
+    }
+
+    public boolean isColumnMajor() {
+        return columnMajor;
+    }
+
+    public boolean isCollapseRows() {
+        return collapseRows;
+    }
+
+    public int getContingencyCacheSize() {
+        return contingencyCacheSize;
+    }
+
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public Path getOffHeapDirectory() {
+        return offHeapDirectory;
+    }
+
     public String getFilePrefix() {
         return filePrefix;
     }
@@ -234,6 +361,26 @@ public class CmdArgs {
         return numCategories;
     }
 
+    public int getCategorySampleSize() {
+        return categorySampleSize;
+    }
+
+    public RowFilter getRowFilter() {
+        return rowFilter;
+    }
+
+    public int getRowLimit() {
+        return rowLimit;
+    }
+
+    public int getRowSampleSize() {
+        return rowSampleSize;
+    }
+
+    public long getRowSampleSeed() {
+        return rowSampleSeed;
+    }
+
     public boolean isSkipValidation() {
         return skipValidation;
     }
@@ -242,6 +389,10 @@ public class CmdArgs {
         return jsonGraph;
     }
 
+    public boolean isResume() {
+        return resume;
+    }
+
     public int getNumOfThreads() {
         return numOfThreads;
     }
@@ -158,13 +158,16 @@ public final class CmdOptions {
         // dataset options
         opts.add(options.get(CmdParams.QUOTE_CHAR));
         opts.add(options.get(CmdParams.COMMENT_MARKER));
+        opts.add(options.get(CmdParams.DIR_CACHE));
 
         // output options
         opts.add(options.get(CmdParams.FILE_PREFIX));
         opts.add(options.get(CmdParams.JSON_GRAPH));
         opts.add(options.get(CmdParams.DIR_OUT));
+        opts.add(options.get(CmdParams.RESUME));
+
+        opts.add(options.get(CmdParams.THREAD));
 
-//        opts.add(options.get(CmdParams.THREAD));
         // data validation options
         opts.add(options.get(CmdParams.SKIP_VALIDATION));
 
@@ -183,6 +186,21 @@ public final class CmdOptions {
         options.put(CmdParams.MISSING_MARKER, Option.builder().longOpt(CmdParams.MISSING_MARKER).desc("Denotes missing value.").hasArg().argName("string").build());
         options.put(CmdParams.COMMENT_MARKER, Option.builder().longOpt(CmdParams.COMMENT_MARKER).desc("Comment marker.").hasArg().argName("string").build());
         options.put(CmdParams.NO_HEADER, Option.builder().longOpt(CmdParams.NO_HEADER).desc("Indicates tabular dataset has no header.").build());
+        options.put(CmdParams.STREAM_COVARIANCE, Option.builder().longOpt(CmdParams.STREAM_COVARIANCE).desc("Compute the covariance matrix of continuous data while reading it in, instead of keeping the data in memory.  Requires a test or score that takes a covariance matrix.").build());
+        options.put(CmdParams.WRITE_COVARIANCE, Option.builder().longOpt(CmdParams.WRITE_COVARIANCE).desc("Write the covariance matrix of each continuous dataset to the output directory as a binary covariance file, to be read in by later runs with --data-type covariance.").build());
+        options.put(CmdParams.USE_COVARIANCE, Option.builder().longOpt(CmdParams.USE_COVARIANCE).desc("Search on the covariance matrix of each continuous dataset instead of the data when the test and the score take a covariance matrix.").build());
+        options.put(CmdParams.VECTOR_KERNELS, Option.builder().longOpt(CmdParams.VECTOR_KERNELS).desc("Compute the covariance matrices of continuous data with the Vector API (java --add-modules jdk.incubator.vector).  Falls back to the scalar loops when the module is not present.").build());
+        options.put(CmdParams.DIR_OFF_HEAP, Option.builder().longOpt(CmdParams.DIR_OFF_HEAP).desc("Keep the values of tabular datasets off the Java heap, in memory-mapped scratch files in this directory.  The files are deleted as soon as they are mapped.").hasArg().argName("directory").build());
+        options.put(CmdParams.COLUMN_MAJOR, Option.builder().longOpt(CmdParams.COLUMN_MAJOR).desc("Store continuous data column by column, one array of doubles per variable, instead of row by row.  Faster to scan a variable and without an array per row.").build());
+        options.put(CmdParams.COLLAPSE_ROWS, Option.builder().longOpt(CmdParams.COLLAPSE_ROWS).desc("Collapse identical rows of discrete data into one row and the number of times it occurs.  Used when the test and the score count rows: chi-square-test, g-square-test and bdeu-score.").build());
+        options.put(CmdParams.CONTINGENCY_CACHE, Option.builder().longOpt(CmdParams.CONTINGENCY_CACHE).desc("Cache the contingency tables counted from discrete data, in up to this many megabytes, for chi-square-test, g-square-test and bdeu-score.  The tables used the least recently are evicted.  Hit and miss statistics are written out after the search.").hasArg().argName("megabytes").build());
+        options.put(CmdParams.COMPACT_DATA, Option.builder().longOpt(CmdParams.COMPACT_DATA).desc("Store continuous values as floats and discrete values as bytes or shorts when they fit, to use less memory.  Continuous values keep about 7 significant digits.").build());
+        options.put(CmdParams.CATEGORY_SAMPLE_SIZE, Option.builder().longOpt(CmdParams.CATEGORY_SAMPLE_SIZE).desc("Find the discrete columns of mixed data from this many rows at the start of the file instead of from all of them.  A confidence report is logged.").hasArg().argName("rows").build());
+        options.put(CmdParams.ROW_FILTER, Option.builder().longOpt(CmdParams.ROW_FILTER).desc("Read in only the rows whose value in a column compares to a value, for example age>=30.  Operators: =, !=, <, <=, >, >=.").hasArg().argName("expression").build());
+        options.put(CmdParams.ROW_LIMIT, Option.builder().longOpt(CmdParams.ROW_LIMIT).desc("Read in only the first rows of the data.").hasArg().argName("rows").build());
+        options.put(CmdParams.ROW_SAMPLE, Option.builder().longOpt(CmdParams.ROW_SAMPLE).desc("Read in a uniform random sample of the rows of the data.").hasArg().argName("rows").build());
+        options.put(CmdParams.ROW_SAMPLE_SEED, Option.builder().longOpt(CmdParams.ROW_SAMPLE_SEED).desc("Seed of the random sample of rows.  A random seed is used and logged by default.").hasArg().argName("long").build());
+        options.put(CmdParams.DIR_CACHE, Option.builder().longOpt(CmdParams.DIR_CACHE).desc("Cache directory.  Tabular datasets read in are cached there and reused by later runs with the same files and options.").hasArg().argName("directory").build());
 
         options.put(CmdParams.HELP, new Option(null, CmdParams.HELP, false, "Show help."));
         options.put(CmdParams.HELP_ALL, new Option(null, CmdParams.HELP_ALL, false, "Show all options and descriptions."));
@@ -193,6 +211,7 @@ public final class CmdOptions {
         options.put(CmdParams.FILE_PREFIX, Option.builder().longOpt(CmdParams.FILE_PREFIX).desc("Replace the default output filename prefix in the format of <algorithm>_<numeric timestamp>.").hasArg().argName("string").build());
         options.put(CmdParams.JSON_GRAPH, new Option(null, CmdParams.JSON_GRAPH, false, "Write out graph as json."));
         options.put(CmdParams.DIR_OUT, Option.builder().longOpt(CmdParams.DIR_OUT).desc("Output directory").hasArg().argName("directory").build());
+        options.put(CmdParams.RESUME, new Option(null, CmdParams.RESUME, false, "Resume an interrupted run from its checkpoint in the output directory, skipping the searches already done.  Requires the --prefix of the interrupted run."));
 
         options.put(CmdParams.KNOWLEDGE, Option.builder().longOpt(CmdParams.KNOWLEDGE).desc("Prior knowledge file.").hasArg().argName("file").build());
         options.put(CmdParams.EXTERNAL_GRAPH, Option.builder().longOpt(CmdParams.EXTERNAL_GRAPH).desc("External graph file.").hasArg().argName("file").build());
@@ -201,7 +220,7 @@ public final class CmdOptions {
 
         options.put(CmdParams.SKIP_VALIDATION, new Option(null, CmdParams.SKIP_VALIDATION, false, "Skip validation."));
 
-        options.put(CmdParams.THREAD, Option.builder().longOpt(CmdParams.THREAD).desc("Number threads.").hasArg().argName("string").build());
+        options.put(CmdParams.THREAD, Option.builder().longOpt(CmdParams.THREAD).desc("Maximum number of threads used for reading data, searching, and resampling.").hasArg().argName("integer").build());
 
         options.put(CmdParams.TEST, Option.builder().longOpt(CmdParams.TEST).desc(getIndependenceTestDesc()).hasArg().argName("string").build());
         options.put(CmdParams.SCORE, Option.builder().longOpt(CmdParams.SCORE).desc(getScoreDesc()).hasArg().argName("string").build());
@@ -242,7 +261,7 @@ public final class CmdOptions {
      */
     private void addRequiredOptions() {
         options.put(CmdParams.ALGORITHM, Option.builder().longOpt(CmdParams.ALGORITHM).desc(getAlgorithmDesc()).hasArg().argName("string").required().build());
-        options.put(CmdParams.DATASET, Option.builder().longOpt(CmdParams.DATASET).desc("Dataset. Multiple files are seperated by commas.").hasArg().argName("files").required().build());
+        options.put(CmdParams.DATASET, Option.builder().longOpt(CmdParams.DATASET).desc("Dataset. Multiple files are seperated by commas.  An algorithm that takes a single dataset searches each file separately.").hasArg().argName("files").required().build());
         options.put(CmdParams.DELIMITER, Option.builder().longOpt(CmdParams.DELIMITER).desc(getDelimiterDesc()).hasArg().argName("string").required().build());
         options.put(CmdParams.DATA_TYPE, Option.builder().longOpt(CmdParams.DATA_TYPE).desc(getDataTypeDesc()).hasArg().argName("string").required().build());
     }
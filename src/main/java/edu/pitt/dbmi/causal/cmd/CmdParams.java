@@ -41,6 +41,7 @@ public final class CmdParams {
     public static final String FILE_PREFIX = "prefix";
     public static final String JSON_GRAPH = "json-graph";
     public static final String DIR_OUT = "out";
+    public static final String RESUME = "resume";
 
     // file
     public static final String DATASET = "dataset";
@@ -55,6 +56,21 @@ public final class CmdParams {
     public static final String MISSING_MARKER = "missing-marker";
     public static final String COMMENT_MARKER = "comment-marker";
     public static final String NO_HEADER = "no-header";
+    public static final String DIR_CACHE = "cache-dir";
+    public static final String DIR_OFF_HEAP = "off-heap-dir";
+    public static final String STREAM_COVARIANCE = "stream-covariance";
+    public static final String WRITE_COVARIANCE = "write-covariance";
+    public static final String USE_COVARIANCE = "use-covariance";
+    public static final String VECTOR_KERNELS = "vector-kernels";
+    public static final String COMPACT_DATA = "compact-data";
+    public static final String COLUMN_MAJOR = "column-major";
+    public static final String COLLAPSE_ROWS = "collapse-rows";
+    public static final String CONTINGENCY_CACHE = "contingency-cache";
+    public static final String CATEGORY_SAMPLE_SIZE = "category-sample-size";
+    public static final String ROW_FILTER = "row-filter";
+    public static final String ROW_LIMIT = "row-limit";
+    public static final String ROW_SAMPLE = "row-sample";
+    public static final String ROW_SAMPLE_SEED = "row-sample-seed";
 
     public static final String ALGORITHM = "algorithm";
     public static final String DATA_TYPE = "data-type";
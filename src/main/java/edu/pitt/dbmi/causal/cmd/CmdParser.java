@@ -20,12 +20,16 @@ package edu.pitt.dbmi.causal.cmd;
 
 import edu.cmu.tetrad.algcomparison.algorithm.Algorithm;
 import edu.cmu.tetrad.algcomparison.algorithm.AlgorithmFactory;
+import edu.cmu.tetrad.algcomparison.algorithm.MultiDataSetAlgorithm;
+import edu.cmu.tetrad.algcomparison.algorithm.cluster.ClusterAlgorithm;
 import edu.cmu.tetrad.algcomparison.utils.TakesIndependenceWrapper;
 import edu.cmu.tetrad.algcomparison.utils.UsesScoreWrapper;
 import edu.cmu.tetrad.data.DataType;
 import edu.cmu.tetrad.util.ParamDescription;
 import edu.cmu.tetrad.util.ParamDescriptions;
 import edu.cmu.tetrad.util.Params;
+import edu.pitt.dbmi.causal.cmd.data.RowFilter;
+import edu.pitt.dbmi.causal.cmd.tetrad.GraphFileSink;
 import edu.pitt.dbmi.causal.cmd.tetrad.TetradAlgorithms;
 import edu.pitt.dbmi.causal.cmd.tetrad.TetradIndependenceTests;
 import edu.pitt.dbmi.causal.cmd.tetrad.TetradScores;
@@ -41,6 +45,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
 import org.apache.commons.cli.CommandLine;
@@ -109,6 +114,12 @@ public final class CmdParser {
         cmdArgs.outDirectory = cmd.hasOption(CmdParams.DIR_OUT)
                 ? Paths.get(cmd.getOptionValue(CmdParams.DIR_OUT))
                 : Paths.get(".");
+        cmdArgs.cacheDirectory = cmd.hasOption(CmdParams.DIR_CACHE)
+                ? Paths.get(cmd.getOptionValue(CmdParams.DIR_CACHE))
+                : null;
+        cmdArgs.offHeapDirectory = cmd.hasOption(CmdParams.DIR_OFF_HEAP)
+                ? Paths.get(cmd.getOptionValue(CmdParams.DIR_OFF_HEAP))
+                : null;
         cmdArgs.missingValueMarker = cmd.hasOption(CmdParams.MISSING_MARKER)
                 ? cmd.getOptionValue(CmdParams.MISSING_MARKER)
                 : null;
@@ -126,11 +137,40 @@ public final class CmdParser {
                 : null;
         cmdArgs.filePrefix = getValidPrefix(cmd, cmdArgs, parseOptions);
         cmdArgs.jsonGraph = cmd.hasOption(CmdParams.JSON_GRAPH);
+        cmdArgs.resume = cmd.hasOption(CmdParams.RESUME);
         cmdArgs.skipValidation = cmd.hasOption(CmdParams.SKIP_VALIDATION);
         cmdArgs.hasHeader = !cmd.hasOption(CmdParams.NO_HEADER);
+        cmdArgs.streamCovariance = cmd.hasOption(CmdParams.STREAM_COVARIANCE);
+        cmdArgs.writeCovariance = cmd.hasOption(CmdParams.WRITE_COVARIANCE);
+        cmdArgs.useCovariance = cmd.hasOption(CmdParams.USE_COVARIANCE);
+        cmdArgs.vectorKernels = cmd.hasOption(CmdParams.VECTOR_KERNELS);
+        cmdArgs.compactData = cmd.hasOption(CmdParams.COMPACT_DATA);
+        cmdArgs.columnMajor = cmd.hasOption(CmdParams.COLUMN_MAJOR);
+        cmdArgs.collapseRows = cmd.hasOption(CmdParams.COLLAPSE_ROWS);
+        cmdArgs.contingencyCacheSize = cmd.hasOption(CmdParams.CONTINGENCY_CACHE)
+                ? getValidPositiveInteger(cmd.getOptionValue(CmdParams.CONTINGENCY_CACHE), parseOptions, CmdParams.CONTINGENCY_CACHE)
+                : 0;
+        cmdArgs.numCategories = cmd.hasOption(CmdParams.NUM_CATEGORIES)
+                ? getValidPositiveInteger(cmd.getOptionValue(CmdParams.NUM_CATEGORIES), parseOptions, CmdParams.NUM_CATEGORIES)
+                : 0;
+        cmdArgs.categorySampleSize = cmd.hasOption(CmdParams.CATEGORY_SAMPLE_SIZE)
+                ? getValidPositiveInteger(cmd.getOptionValue(CmdParams.CATEGORY_SAMPLE_SIZE), parseOptions, CmdParams.CATEGORY_SAMPLE_SIZE)
+                : 0;
+        cmdArgs.rowFilter = cmd.hasOption(CmdParams.ROW_FILTER)
+                ? getValidRowFilter(cmd.getOptionValue(CmdParams.ROW_FILTER), parseOptions, CmdParams.ROW_FILTER)
+                : null;
+        cmdArgs.rowLimit = cmd.hasOption(CmdParams.ROW_LIMIT)
+                ? getValidPositiveInteger(cmd.getOptionValue(CmdParams.ROW_LIMIT), parseOptions, CmdParams.ROW_LIMIT)
+                : 0;
+        cmdArgs.rowSampleSize = cmd.hasOption(CmdParams.ROW_SAMPLE)
+                ? getValidPositiveInteger(cmd.getOptionValue(CmdParams.ROW_SAMPLE), parseOptions, CmdParams.ROW_SAMPLE)
+                : 0;
+        cmdArgs.rowSampleSeed = cmd.hasOption(CmdParams.ROW_SAMPLE_SEED)
+                ? getValidLong(cmd.getOptionValue(CmdParams.ROW_SAMPLE_SEED), parseOptions, CmdParams.ROW_SAMPLE_SEED)
+                : (new Random()).nextLong();
         cmdArgs.numOfThreads = cmd.hasOption(CmdParams.THREAD)
-                ? getValidThreadNumber(cmd.getOptionValue(CmdParams.THREAD), parseOptions, CmdParams.THREAD)
-                : Runtime.getRuntime().availableProcessors() - 1;
+                ? getValidPositiveInteger(cmd.getOptionValue(CmdParams.THREAD), parseOptions, CmdParams.THREAD)
+                : getDefaultNumOfThreads();
 
         cmdArgs.hasEnsembleOption = cmd.hasOption(Params.RESAMPLING_ENSEMBLE);
 
@@ -151,6 +191,28 @@ public final class CmdParser {
         cmdArgs.defaultParamValues = cmd.hasOption(CmdParams.DEFAULT);
 
         cmdArgs.parameters = getValidParameters(cmd, cmdArgs, parseOptions);
+
+        // a stream can only be read once
+        if (cmdArgs.categorySampleSize > 0 && cmdArgs.datasetFiles.stream().anyMatch(FileUtils::isStream)) {
+            parseOptions.getInvalidValueOptions().addOption(parseOptions.getOptions().getOption(CmdParams.CATEGORY_SAMPLE_SIZE));
+            String errMsg = "The category sample is read separately from the data and cannot be taken from the standard input or a named pipe.";
+            throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
+        }
+
+        // resampling needs the cases, which are not kept when streaming the covariance matrix
+        String numOfResampling = cmdArgs.parameters.get(Params.NUMBER_RESAMPLING);
+        if (cmdArgs.streamCovariance && numOfResampling != null && Integer.parseInt(numOfResampling) > 0) {
+            parseOptions.getInvalidValueOptions().addOption(parseOptions.getOptions().getOption(CmdParams.STREAM_COVARIANCE));
+            String errMsg = "Resampling cannot be done on the covariance matrix streamed from the data.";
+            throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
+        }
+
+        // the checkpoint of a run is found by its output prefix
+        if (cmdArgs.resume && !cmd.hasOption(CmdParams.FILE_PREFIX)) {
+            parseOptions.getInvalidValueOptions().addOption(parseOptions.getOptions().getOption(CmdParams.RESUME));
+            String errMsg = "A run can only be resumed with the --prefix of the interrupted run.";
+            throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
+        }
     }
 
     /**
@@ -170,20 +232,20 @@ public final class CmdParser {
         String[] datasetFiles = datasetCmd.split(",");
         List<Path> dataset = new LinkedList<>();
         for (String datasetFile : datasetFiles) {
-            dataset.add(getValidFile(datasetFile, parseOptions, CmdParams.DATASET));
+            dataset.add(getValidDatasetFile(datasetFile, cmdArgs.dataType, dataset, parseOptions));
         }
         cmdArgs.datasetFiles = dataset;
+    }
 
-        // make sure algorithm can handle multiple dataset
-        if (dataset.size() > 1 && !TetradAlgorithms.getInstance().takesMultipleDataset(cmdArgs.algorithmClass)) {
-            Options opts = parseOptions.getOptions();
-            Options invalidOpts = parseOptions.getInvalidValueOptions();
-
-            invalidOpts.addOption(opts.getOption(CmdParams.DATASET));
-            String algoName = TetradAlgorithms.getInstance().getName(cmdArgs.getAlgorithmClass());
-            String errMsg = String.format("Algorithm '%s' cannot handle multiple dataset files.", algoName);
-            throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
-        }
+    /**
+     * Get the number of threads used when none is given on the command-line,
+     * one less than the number of processors, leaving one for the rest of the
+     * system.
+     *
+     * @return default number of threads
+     */
+    public static int getDefaultNumOfThreads() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
     }
 
     /**
@@ -241,8 +303,26 @@ public final class CmdParser {
             opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.EXCLUDE_VARIABLE));
             opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.MISSING_MARKER));
             opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.NO_HEADER));
+            opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.COMPACT_DATA));
+            opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.DIR_OFF_HEAP));
+            opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.ROW_FILTER));
+            opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.ROW_LIMIT));
+            opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.ROW_SAMPLE));
+            opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.ROW_SAMPLE_SEED));
             if (dataType == DataType.Mixed) {
                 opts.addOption(OptionFactory.createRequiredNumCategoryOpt());
+                opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.CATEGORY_SAMPLE_SIZE));
+            }
+            if (dataType == DataType.Continuous) {
+                opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.STREAM_COVARIANCE));
+                opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.WRITE_COVARIANCE));
+                opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.USE_COVARIANCE));
+                opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.VECTOR_KERNELS));
+                opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.COLUMN_MAJOR));
+            }
+            if (dataType == DataType.Discrete) {
+                opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.COLLAPSE_ROWS));
+                opts.addOption(CmdOptions.getInstance().getLongOption(CmdParams.CONTINGENCY_CACHE));
             }
         }
 
@@ -284,6 +364,31 @@ public final class CmdParser {
             throw new CmdParserException(parseOptions, exception);
         }
 
+        // ensure the covariance matrix streamed from the data can be used
+        boolean isStreamCovariance = argsMap.containsKey(CmdParams.STREAM_COVARIANCE);
+        if (isStreamCovariance) {
+            if (argsMap.containsKey(CmdParams.METADATA)) {
+                invalidOpts.addOption(opts.getOption(CmdParams.STREAM_COVARIANCE));
+                invalidOpts.addOption(opts.getOption(CmdParams.METADATA));
+                String errMsg = "Metadata cannot apply to the covariance matrix streamed from the data.";
+                throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
+            }
+            for (String rowParam : new String[]{CmdParams.ROW_FILTER, CmdParams.ROW_LIMIT, CmdParams.ROW_SAMPLE}) {
+                if (argsMap.containsKey(rowParam)) {
+                    invalidOpts.addOption(opts.getOption(CmdParams.STREAM_COVARIANCE));
+                    invalidOpts.addOption(opts.getOption(rowParam));
+                    String errMsg = String.format("Parameter %s cannot apply to the covariance matrix streamed from the data.", rowParam);
+                    throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
+                }
+            }
+            if (TetradAlgorithms.getInstance().takesMultipleDataset(algorithmClass)) {
+                invalidOpts.addOption(opts.getOption(CmdParams.STREAM_COVARIANCE));
+                invalidOpts.addOption(opts.getOption(CmdParams.ALGORITHM));
+                String errMsg = String.format("Algorithm '%s' cannot run on the covariance matrix streamed from the data.", algorithmCmd);
+                throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
+            }
+        }
+
         Class indTestClass = null;
         if (testParamReq) {
             String indTestCmd = argsMap.get(CmdParams.TEST);
@@ -299,6 +404,12 @@ public final class CmdParser {
                 throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
             }
 
+            if (isStreamCovariance && !indTests.hasCommand(indTestCmd, DataType.Covariance)) {
+                invalidOpts.addOption(opts.getOption(CmdParams.TEST));
+                String errMsg = String.format("Independence test '%s' cannot use the covariance matrix streamed from the data.", indTestCmd);
+                throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
+            }
+
             indTestClass = TetradIndependenceTests.getInstance().getClass(indTestCmd);
         }
 
@@ -317,6 +428,12 @@ public final class CmdParser {
                 throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
             }
 
+            if (isStreamCovariance && !scores.hasCommand(scoreCmd, DataType.Covariance)) {
+                invalidOpts.addOption(opts.getOption(CmdParams.SCORE));
+                String errMsg = String.format("Score '%s' cannot use the covariance matrix streamed from the data.", scoreCmd);
+                throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
+            }
+
             scoreClass = TetradScores.getInstance().getClass(scoreCmd);
         }
 
@@ -367,6 +484,13 @@ public final class CmdParser {
         // add algorithm parameters
         params.addAll(algorithm.getParameters());
 
+        // the searches of multiple datasets and clusters can be repeated, and
+        // repeated from a seed
+        if (algorithm instanceof MultiDataSetAlgorithm || algorithm instanceof ClusterAlgorithm) {
+            params.add(Params.NUM_RUNS);
+            params.add(Params.SEED);
+        }
+
         // add the algorithm test parameters, if any
         if (algorithm instanceof TakesIndependenceWrapper) {
             params.addAll(((TakesIndependenceWrapper) algorithm).getIndependenceWrapper().getParameters());
@@ -464,10 +588,62 @@ public final class CmdParser {
 
         setParametersAndValues(parametersWithValues, parameters, cmdArgs.isDefaultParamValues());
         setUserParameterValues(parametersWithValues, parameters, cmd, parseOptions);
+        setThreadParameterValues(parametersWithValues, parameters, cmd, cmdArgs.getNumOfThreads());
+        setSeedParameterValue(parametersWithValues, parameters, cmdArgs);
 
         return parametersWithValues;
     }
 
+    /**
+     * Draw a seed for the run when the seed parameter is off (-1), so that the
+     * run can be repeated from the seed written out with the parameters. A
+     * resumed run takes the seed of its checkpoint instead.
+     *
+     * @param parametersWithValues set of parameters and values
+     * @param parameters set of parameters
+     * @param cmdArgs command-line arguments
+     */
+    private static void setSeedParameterValue(Map<String, String> parametersWithValues, Set<String> parameters, CmdArgs cmdArgs) {
+        if (parameters.contains(Params.SEED) && Long.parseLong(parametersWithValues.get(Params.SEED)) == -1) {
+            Long checkpointSeed = cmdArgs.isResume() ? GraphFileSink.getCheckpointSeed(cmdArgs) : null;
+            long seed = (checkpointSeed == null)
+                    ? (new Random()).nextLong() & Long.MAX_VALUE
+                    : checkpointSeed;
+            parametersWithValues.put(Params.SEED, String.valueOf(seed));
+        }
+    }
+
+    /**
+     * Derive Tetrad's own thread parameters from the number of threads given
+     * for the run. Values explicitly given by the user are capped at the
+     * number of threads. When resampling is on, the resampling gets the
+     * threads and each search on a resampled dataset runs on a single thread
+     * unless the user says otherwise.
+     *
+     * @param parametersWithValues set of parameters and values
+     * @param parameters set of parameters
+     * @param cmd command-line input
+     * @param numOfThreads maximum number of threads for the run
+     */
+    private static void setThreadParameterValues(Map<String, String> parametersWithValues, Set<String> parameters, CommandLine cmd, int numOfThreads) {
+        boolean isResampling = parameters.contains(Params.NUMBER_RESAMPLING)
+                && Integer.parseInt(parametersWithValues.get(Params.NUMBER_RESAMPLING)) > 0;
+
+        if (parameters.contains(Params.BOOTSTRAPPING_NUM_THREADS)) {
+            int value = cmd.hasOption(Params.BOOTSTRAPPING_NUM_THREADS)
+                    ? Math.min(Integer.parseInt(parametersWithValues.get(Params.BOOTSTRAPPING_NUM_THREADS)), numOfThreads)
+                    : numOfThreads;
+            parametersWithValues.put(Params.BOOTSTRAPPING_NUM_THREADS, String.valueOf(value));
+        }
+
+        if (parameters.contains(Params.NUM_THREADS)) {
+            int value = cmd.hasOption(Params.NUM_THREADS)
+                    ? Math.min(Integer.parseInt(parametersWithValues.get(Params.NUM_THREADS)), numOfThreads)
+                    : isResampling ? 1 : numOfThreads;
+            parametersWithValues.put(Params.NUM_THREADS, String.valueOf(value));
+        }
+    }
+
     /**
      * Set parameters based on user's input.
      *
@@ -533,6 +709,8 @@ public final class CmdParser {
                         String errMsg = String.format("Value for parameter %s is %f but maximum is %f.", param, val, max);
                         throw new CmdParserException(parseOptions, new NumberFormatException(errMsg));
                     }
+                } else if (type == Long.class) {
+                    getValidLong(value, parseOptions, param);
                 } else if (type == Boolean.class) {
                     if (value == null) {
                         value = "true";
@@ -566,36 +744,81 @@ public final class CmdParser {
     }
 
     /**
-     * Extract the thread number from the command-line option and check to make
-     * sure the number is valid.
+     * Extract the positive integer from the command-line option and check to
+     * make sure the number is valid.
      *
-     * @param value number of threads taken from the command-line
+     * @param value number taken from the command-line
      * @param parseOptions command-line options
      * @param cmdParam command-line parameter
-     * @return number of thread from the command-line input that is valid
+     * @return positive integer from the command-line input that is valid
      * @throws CmdParserException when an error occurs while parsing
      */
-    private static int getValidThreadNumber(String value, ParseOptions parseOptions, String cmdParam) throws CmdParserException {
-        int numOfThreads = 0;
+    private static int getValidPositiveInteger(String value, ParseOptions parseOptions, String cmdParam) throws CmdParserException {
+        int number = 0;
 
         Options opts = parseOptions.getOptions();
         Options invalidOpts = parseOptions.getInvalidValueOptions();
 
         try {
-            numOfThreads = Integer.parseInt(value);
+            number = Integer.parseInt(value);
         } catch (NumberFormatException exception) {
             invalidOpts.addOption(opts.getOption(cmdParam));
             String errMsg = String.format("The value '%s' for parameter %s is not a integer.", value, cmdParam);
             throw new CmdParserException(parseOptions, new NumberFormatException(errMsg));
         }
 
-        if (numOfThreads < 1) {
+        if (number < 1) {
             invalidOpts.addOption(opts.getOption(cmdParam));
             String errMsg = String.format("Parameter %s requires value greater than or equal to 1.", cmdParam);
             throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
         }
 
-        return numOfThreads;
+        return number;
+    }
+
+    /**
+     * Extract the long integer from the command-line option and make sure the
+     * number is valid.
+     *
+     * @param value number taken from the command-line
+     * @param parseOptions command-line options
+     * @param cmdParam command-line parameter
+     * @return long integer from the command-line input that is valid
+     * @throws CmdParserException when an error occurs while parsing
+     */
+    private static long getValidLong(String value, ParseOptions parseOptions, String cmdParam) throws CmdParserException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException exception) {
+            Options opts = parseOptions.getOptions();
+            Options invalidOpts = parseOptions.getInvalidValueOptions();
+
+            invalidOpts.addOption(opts.getOption(cmdParam));
+            String errMsg = String.format("The value '%s' for parameter %s is not a long integer.", value, cmdParam);
+            throw new CmdParserException(parseOptions, new NumberFormatException(errMsg));
+        }
+    }
+
+    /**
+     * Extract the row filter from the command-line option and make sure the
+     * filter expression is valid.
+     *
+     * @param expression filter expression from the command-line
+     * @param parseOptions command-line options
+     * @param cmdParam command-line parameter
+     * @return row filter from the command-line input that is valid
+     * @throws CmdParserException when an error occurs while parsing
+     */
+    private static RowFilter getValidRowFilter(String expression, ParseOptions parseOptions, String cmdParam) throws CmdParserException {
+        try {
+            return RowFilter.parse(expression);
+        } catch (IllegalArgumentException exception) {
+            Options opts = parseOptions.getOptions();
+            Options invalidOpts = parseOptions.getInvalidValueOptions();
+
+            invalidOpts.addOption(opts.getOption(cmdParam));
+            throw new CmdParserException(parseOptions, exception);
+        }
     }
 
     /**
@@ -625,6 +848,39 @@ public final class CmdParser {
         return c;
     }
 
+    /**
+     * Extract the dataset file location and make sure the file is valid. The
+     * standard input and named pipes are valid for tabular data, which is
+     * read in with a single pass.
+     */
+    private static Path getValidDatasetFile(String filePath, DataType dataType, List<Path> datasetFiles, ParseOptions parseOptions) throws CmdParserException {
+        Path file = Paths.get(filePath);
+
+        Options opts = parseOptions.getOptions();
+        Options invalidOpts = parseOptions.getInvalidValueOptions();
+        try {
+            FileUtils.existsOrIsStream(file);
+        } catch (FileNotFoundException exception) {
+            invalidOpts.addOption(opts.getOption(CmdParams.DATASET));
+            throw new CmdParserException(parseOptions, exception);
+        }
+
+        if (FileUtils.isStream(file)) {
+            if (dataType == DataType.Covariance) {
+                invalidOpts.addOption(opts.getOption(CmdParams.DATASET));
+                String errMsg = String.format("Covariance file '%s' must be a regular file.", filePath);
+                throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
+            }
+            if (FileUtils.isStandardInput(file) && datasetFiles.stream().anyMatch(FileUtils::isStandardInput)) {
+                invalidOpts.addOption(opts.getOption(CmdParams.DATASET));
+                String errMsg = "The standard input can only be read in once.";
+                throw new CmdParserException(parseOptions, new IllegalArgumentException(errMsg));
+            }
+        }
+
+        return file;
+    }
+
     /**
      * Extract the file location from the command-line option and make sure the
      * file is valid.
@@ -0,0 +1,405 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Node;
+import edu.pitt.dbmi.data.reader.DataReaderException;
+import edu.pitt.dbmi.data.reader.validation.MessageType;
+import edu.pitt.dbmi.data.reader.validation.ValidationAttribute;
+import edu.pitt.dbmi.data.reader.validation.ValidationCode;
+import edu.pitt.dbmi.data.reader.validation.ValidationResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The class {@code BinaryCovarianceFile} reads and writes a covariance matrix
+ * in a binary format, which is loaded without parsing any number. All the
+ * values are little-endian:
+ * <ol>
+ * <li>the 8 bytes {@code CCMDCOV1},</li>
+ * <li>the number of variables n and the sample size, as ints,</li>
+ * <li>the name of each variable, as an int length followed by that many
+ * UTF-8 bytes,</li>
+ * <li>zeros up to the next multiple of 8 bytes,</li>
+ * <li>the n(n+1)/2 doubles of the lower triangle, row by row.</li>
+ * </ol>
+ *
+ * The matrix is read in through memory mappings of the file, so the values are
+ * copied from the page cache straight into the covariance matrix.
+ */
+public final class BinaryCovarianceFile {
+
+    private static final byte[] MAGIC = "CCMDCOV1".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Largest memory mapping of the matrix, in bytes.
+     */
+    private static final long MAX_MAPPING_SIZE = 1L << 30;
+
+    /**
+     * Number of invalid values reported before the validation stops.
+     */
+    private static final int MAX_INVALID_NUMBERS = 100;
+
+    /**
+     * Size of the blocks of the matrix mirrored into the upper triangle.
+     */
+    private static final int BLOCK_SIZE = 64;
+
+    private BinaryCovarianceFile() {
+    }
+
+    /**
+     * Determine if a given file is a binary covariance file.
+     *
+     * @param file file
+     * @return true if the file starts with the binary covariance header
+     * @throws IOException when unable to read the file
+     */
+    public static boolean isBinaryCovarianceFile(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+
+        try (InputStream in = Files.newInputStream(file, StandardOpenOption.READ)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Write a covariance matrix to a binary covariance file.
+     *
+     * @param covarianceMatrix covariance matrix
+     * @param file file to write to
+     * @throws IOException when unable to write the file
+     */
+    public static void write(ICovarianceMatrix covarianceMatrix, Path file) throws IOException {
+        List<String> names = covarianceMatrix.getVariableNames();
+        int numOfVars = names.size();
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buffer.put(MAGIC);
+            buffer.putInt(numOfVars);
+            buffer.putInt(covarianceMatrix.getSampleSize());
+            long position = MAGIC.length + 2 * Integer.BYTES;
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                ensureRemaining(channel, buffer, Integer.BYTES);
+                buffer.putInt(bytes.length);
+                for (int offset = 0; offset < bytes.length;) {
+                    ensureRemaining(channel, buffer, 1);
+                    int length = Math.min(buffer.remaining(), bytes.length - offset);
+                    buffer.put(bytes, offset, length);
+                    offset += length;
+                }
+                position += Integer.BYTES + bytes.length;
+            }
+            ensureRemaining(channel, buffer, Double.BYTES);
+            while (position % Double.BYTES != 0) {
+                buffer.put((byte) 0);
+                position++;
+            }
+
+            for (int i = 0; i < numOfVars; i++) {
+                for (int j = 0; j <= i; j++) {
+                    ensureRemaining(channel, buffer, Double.BYTES);
+                    buffer.putDouble(covarianceMatrix.getValue(i, j));
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int size) throws IOException {
+        if (buffer.remaining() < size) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Read in a covariance matrix from a binary covariance file.
+     *
+     * @param file binary covariance file
+     * @return covariance matrix
+     * @throws IOException when unable to read the file
+     */
+    public static ICovarianceMatrix read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, file);
+
+            int numOfVars = header.names.size();
+            double[][] matrix = new double[numOfVars][numOfVars];
+            for (Mapping mapping : getMappings(channel, header)) {
+                for (int i = mapping.firstRow; i < mapping.lastRow; i++) {
+                    mapping.values.get(matrix[i], 0, i + 1);
+                }
+            }
+            mirrorLowerTriangle(matrix);
+
+            List<Node> variables = new ArrayList<>(numOfVars);
+            for (String name : header.names) {
+                variables.add(new ContinuousVariable(name));
+            }
+
+            return new CovarianceMatrix(variables, matrix, header.sampleSize);
+        }
+    }
+
+    /**
+     * Copy the lower triangle of a square matrix into its upper triangle, one
+     * block at a time.
+     */
+    private static void mirrorLowerTriangle(double[][] matrix) {
+        int size = matrix.length;
+        for (int rowBlock = 0; rowBlock < size; rowBlock += BLOCK_SIZE) {
+            int rowEnd = Math.min(rowBlock + BLOCK_SIZE, size);
+            for (int colBlock = 0; colBlock <= rowBlock; colBlock += BLOCK_SIZE) {
+                int colEnd = Math.min(colBlock + BLOCK_SIZE, size);
+                for (int i = rowBlock; i < rowEnd; i++) {
+                    double[] row = matrix[i];
+                    for (int j = colBlock, end = Math.min(colEnd, i); j < end; j++) {
+                        matrix[j][i] = row[j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Validate a binary covariance file.
+     *
+     * @param file binary covariance file
+     * @return validation results
+     */
+    public static List<ValidationResult> validate(Path file) {
+        List<ValidationResult> validationResults = new LinkedList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header;
+            try {
+                header = readHeader(channel, file);
+            } catch (DataReaderException exception) {
+                ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_INSUFFICIENT_DATA, exception.getMessage());
+                result.setAttribute(ValidationAttribute.FILE_NAME, file.getFileName());
+                validationResults.add(result);
+
+                return validationResults;
+            }
+
+            int numOfVars = header.names.size();
+            if (header.sampleSize < 1) {
+                String errMsg = String.format("Invalid sample size %d.", header.sampleSize);
+                ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_INVALID_NUMBER, errMsg);
+                result.setAttribute(ValidationAttribute.VALUE, header.sampleSize);
+                validationResults.add(result);
+            }
+
+            Set<String> names = new HashSet<>();
+            for (int i = 0; i < numOfVars; i++) {
+                String name = header.names.get(i);
+                if (name.isEmpty() || !names.add(name)) {
+                    String errMsg = name.isEmpty()
+                            ? String.format("Column %d: Missing variable name.", i + 1)
+                            : String.format("Column %d: Duplicate variable name %s.", i + 1, name);
+                    ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_MISSING_VALUE, errMsg);
+                    result.setAttribute(ValidationAttribute.COLUMN_NUMBER, i + 1);
+                    result.setAttribute(ValidationAttribute.VALUE, name);
+                    validationResults.add(result);
+                }
+            }
+
+            long expectedSize = header.dataOffset + getNumberOfValues(numOfVars) * Double.BYTES;
+            long actualSize = channel.size();
+            if (actualSize != expectedSize) {
+                String errMsg = (actualSize < expectedSize)
+                        ? String.format("Insufficient data.  Expect %d bytes but encounter %d.", expectedSize, actualSize)
+                        : String.format("Excess data.  Expect %d bytes but encounter %d.", expectedSize, actualSize);
+                MessageType messageType = (actualSize < expectedSize) ? MessageType.FILE_INSUFFICIENT_DATA : MessageType.FILE_EXCESS_DATA;
+                ValidationResult result = new ValidationResult(ValidationCode.ERROR, messageType, errMsg);
+                result.setAttribute(ValidationAttribute.EXPECTED_COUNT, expectedSize);
+                result.setAttribute(ValidationAttribute.ACTUAL_COUNT, actualSize);
+                validationResults.add(result);
+
+                return validationResults;
+            }
+
+            int numOfInvalidNumbers = 0;
+            for (Mapping mapping : getMappings(channel, header)) {
+                for (int i = mapping.firstRow; i < mapping.lastRow && numOfInvalidNumbers < MAX_INVALID_NUMBERS; i++) {
+                    for (int j = 0; j <= i && numOfInvalidNumbers < MAX_INVALID_NUMBERS; j++) {
+                        double value = mapping.values.get();
+                        if (!Double.isFinite(value) || (i == j && value < 0)) {
+                            String errMsg = String.format("Row %d, column %d: Invalid %s %s.", i + 1, j + 1, (i == j) ? "variance" : "covariance", value);
+                            ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_INVALID_NUMBER, errMsg);
+                            result.setAttribute(ValidationAttribute.ROW_NUMBER, i + 1);
+                            result.setAttribute(ValidationAttribute.COLUMN_NUMBER, j + 1);
+                            result.setAttribute(ValidationAttribute.VALUE, value);
+                            validationResults.add(result);
+                            numOfInvalidNumbers++;
+                        }
+                    }
+                }
+            }
+
+            String infoMsg = String.format("There are %d cases and %d variables.", header.sampleSize, numOfVars);
+            ValidationResult result = new ValidationResult(ValidationCode.INFO, MessageType.FILE_SUMMARY, infoMsg);
+            result.setAttribute(ValidationAttribute.ROW_NUMBER, header.sampleSize);
+            result.setAttribute(ValidationAttribute.COLUMN_NUMBER, numOfVars);
+            validationResults.add(result);
+        } catch (IOException exception) {
+            validationResults.add(TabularDataBuilder.createFileErrorResult(file));
+        }
+
+        return validationResults;
+    }
+
+    private static long getNumberOfValues(int numOfVars) {
+        return ((long) numOfVars * (numOfVars + 1)) / 2;
+    }
+
+    private static Header readHeader(FileChannel channel, Path file) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                String errMsg = String.format("File %s is not a binary covariance file.", file.getFileName());
+                throw new DataReaderException(errMsg);
+            }
+
+            int numOfVars = buffer.getInt();
+            int sampleSize = buffer.getInt();
+            if (numOfVars < 1) {
+                String errMsg = String.format("Binary covariance file %s has %d variables.", file.getFileName(), numOfVars);
+                throw new DataReaderException(errMsg);
+            }
+            if (numOfVars > buffer.remaining() / Integer.BYTES) {
+                throw new BufferUnderflowException();
+            }
+
+            List<String> names = new ArrayList<>(numOfVars);
+            for (int i = 0; i < numOfVars; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                names.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            long dataOffset = ((buffer.position() + Double.BYTES - 1) / Double.BYTES) * Double.BYTES;
+
+            return new Header(names, sampleSize, dataOffset);
+        } catch (BufferUnderflowException exception) {
+            String errMsg = String.format("Binary covariance file %s ends in the header.", file.getFileName());
+            throw new DataReaderException(errMsg);
+        }
+    }
+
+    /**
+     * Map the matrix in the file by whole rows, as few mappings as possible.
+     */
+    private static List<Mapping> getMappings(FileChannel channel, Header header) throws IOException {
+        int numOfVars = header.names.size();
+        long expectedSize = header.dataOffset + getNumberOfValues(numOfVars) * Double.BYTES;
+        if (channel.size() < expectedSize) {
+            String errMsg = String.format("Binary covariance file has %d bytes but %d variables need %d.", channel.size(), numOfVars, expectedSize);
+            throw new DataReaderException(errMsg);
+        }
+
+        List<Mapping> mappings = new LinkedList<>();
+        int firstRow = 0;
+        long offset = header.dataOffset;
+        while (firstRow < numOfVars) {
+            int lastRow = firstRow;
+            long size = 0;
+            while (lastRow < numOfVars && (size == 0 || size + (lastRow + 1L) * Double.BYTES <= MAX_MAPPING_SIZE)) {
+                size += (lastRow + 1L) * Double.BYTES;
+                lastRow++;
+            }
+
+            DoubleBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, offset, size)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+            mappings.add(new Mapping(values, firstRow, lastRow));
+
+            firstRow = lastRow;
+            offset += size;
+        }
+
+        return mappings;
+    }
+
+    private static final class Header {
+
+        private final List<String> names;
+        private final int sampleSize;
+        private final long dataOffset;
+
+        private Header(List<String> names, int sampleSize, long dataOffset) {
+            this.names = names;
+            this.sampleSize = sampleSize;
+            this.dataOffset = dataOffset;
+        }
+
+    }
+
+    private static final class Mapping {
+
+        private final DoubleBuffer values;
+        private final int firstRow;
+        private final int lastRow;
+
+        private Mapping(DoubleBuffer values, int firstRow, int lastRow) {
+            this.values = values;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+        }
+
+    }
+
+}
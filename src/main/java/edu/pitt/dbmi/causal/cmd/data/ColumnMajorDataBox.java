@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import java.util.Arrays;
+
+/**
+ * The class {@code ColumnMajorDataBox} stores continuous data column by
+ * column, one array of doubles per column. Scanning a column reads consecutive
+ * values of one array instead of one value from each row array, and there is
+ * no array object per row for the garbage collector to scan.
+ *
+ * Missing values are stored as NaN, the same as in the data boxes of Tetrad.
+ *
+ * The box is a {@link VerticalDoubleDataBox}, so that Tetrad takes the column
+ * vectors from it where it would take them from its own column-major box, for
+ * example when computing covariances on the fly. Tetrad demeans those vectors
+ * in place, so they are handed out as copies, the same as Tetrad copies the
+ * rows of its row-major box.
+ */
+public final class ColumnMajorDataBox extends VerticalDoubleDataBox {
+
+    private static final long serialVersionUID = 23L;
+
+    private final double[][] columns;
+    private final int numOfRows;
+
+    /**
+     * Constructor. All the values are missing.
+     *
+     * @param numOfRows number of rows
+     * @param numOfCols number of columns, at least one
+     */
+    public ColumnMajorDataBox(int numOfRows, int numOfCols) {
+        this(numOfRows, createMissingColumns(numOfRows, numOfCols));
+    }
+
+    /**
+     * Constructor. The columns are used as they are, not copied.
+     *
+     * @param numOfRows number of rows
+     * @param columns values of each column, at least one column
+     */
+    public ColumnMajorDataBox(int numOfRows, double[][] columns) {
+        super(checkColumns(numOfRows, columns));
+
+        this.numOfRows = numOfRows;
+        this.columns = columns;
+    }
+
+    private static double[][] createMissingColumns(int numOfRows, int numOfCols) {
+        if (numOfRows < 0) {
+            throw new IllegalArgumentException("Parameter numOfRows cannot be negative.");
+        }
+        if (numOfCols < 0) {
+            throw new IllegalArgumentException("Parameter numOfCols cannot be negative.");
+        }
+
+        double[][] columns = new double[numOfCols][numOfRows];
+        for (double[] column : columns) {
+            Arrays.fill(column, Double.NaN);
+        }
+
+        return columns;
+    }
+
+    private static double[][] checkColumns(int numOfRows, double[][] columns) {
+        if (columns == null) {
+            throw new IllegalArgumentException("Parameter columns cannot be null.");
+        }
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("There must be at least one column.");
+        }
+        for (double[] column : columns) {
+            if (column.length != numOfRows) {
+                throw new IllegalArgumentException("All columns must have the same number of rows.");
+            }
+        }
+
+        return columns;
+    }
+
+    @Override
+    public int numRows() {
+        return numOfRows;
+    }
+
+    @Override
+    public int numCols() {
+        return columns.length;
+    }
+
+    @Override
+    public void set(int row, int col, Number value) {
+        columns[col][row] = (value == null) ? Double.NaN : value.doubleValue();
+    }
+
+    @Override
+    public Number get(int row, int col) {
+        double value = columns[col][row];
+
+        return Double.isNaN(value) ? null : value;
+    }
+
+    @Override
+    public DataBox copy() {
+        return new ColumnMajorDataBox(numOfRows, getVariableVectors());
+    }
+
+    @Override
+    public DataBox like() {
+        return copy();
+    }
+
+    @Override
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        if (cols.length == 0) {
+            return new VerticalDoubleDataBox(rows.length, 0);
+        }
+
+        double[][] selection = new double[cols.length][rows.length];
+        for (int j = 0; j < cols.length; j++) {
+            double[] column = columns[cols[j]];
+            double[] selectedColumn = selection[j];
+            for (int i = 0; i < rows.length; i++) {
+                selectedColumn[i] = column[rows[i]];
+            }
+        }
+
+        return new ColumnMajorDataBox(rows.length, selection);
+    }
+
+    /**
+     * Get copies of the columns, which the caller is free to change.
+     *
+     * @return values of each column
+     */
+    @Override
+    public double[][] getVariableVectors() {
+        double[][] copy = new double[columns.length][];
+        for (int col = 0; col < columns.length; col++) {
+            copy[col] = columns[col].clone();
+        }
+
+        return copy;
+    }
+
+    /**
+     * Get the columns. The arrays are the ones of the data box, not copies.
+     *
+     * @return values of each column
+     */
+    public double[][] getColumns() {
+        return columns;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.util.DataConvertUtils;
+import edu.pitt.dbmi.data.reader.ContinuousData;
+import edu.pitt.dbmi.data.reader.DataColumn;
+
+/**
+ * The class {@code ColumnMajorTabularData} is continuous tabular data kept
+ * column by column, as it is built, to be turned into a dataset stored in a
+ * {@link ColumnMajorDataBox} without going through rows.
+ */
+final class ColumnMajorTabularData implements ContinuousData {
+
+    private final DataColumn[] dataColumns;
+    private final int numOfRows;
+    private final double[][] columns;
+
+    ColumnMajorTabularData(DataColumn[] dataColumns, int numOfRows, double[][] columns) {
+        this.dataColumns = dataColumns;
+        this.numOfRows = numOfRows;
+        this.columns = columns;
+    }
+
+    /**
+     * Create the dataset of the columns.
+     *
+     * @return dataset stored column by column
+     */
+    DataSet toDataSet() {
+        DataBox dataBox = (columns.length > 0)
+                ? new ColumnMajorDataBox(numOfRows, columns)
+                : new DoubleDataBox(numOfRows, 0);
+
+        return new BoxDataSet(dataBox, DataConvertUtils.toNodes(dataColumns));
+    }
+
+    @Override
+    public DataColumn[] getDataColumns() {
+        return dataColumns;
+    }
+
+    /**
+     * Get the values row by row, copied from the columns.
+     *
+     * @return values of each row
+     */
+    @Override
+    public double[][] getData() {
+        double[][] data = new double[numOfRows][columns.length];
+        for (int col = 0; col < columns.length; col++) {
+            double[] column = columns[col];
+            for (int row = 0; row < numOfRows; row++) {
+                data[row][col] = column[row];
+            }
+        }
+
+        return data;
+    }
+
+}
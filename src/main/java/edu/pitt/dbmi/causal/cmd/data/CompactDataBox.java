@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.data.MixedDataBox;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import edu.cmu.tetrad.data.VerticalIntDataBox;
+import edu.cmu.tetrad.graph.Node;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The class {@code CompactDataBox} stores the columns of a dataset in the
+ * smallest type that holds their values. Continuous columns are stored as
+ * floats and discrete columns as bytes, shorts or ints, depending on their
+ * number of categories. The values are widened when they are read, so the
+ * data box can be used in place of the data boxes of Tetrad.
+ *
+ * A continuous column keeps about 7 significant digits of its values.
+ *
+ * The box is a {@link VerticalDoubleDataBox} so that Tetrad can compute the
+ * covariances of a continuous dataset on the fly from it. The columns are
+ * widened to doubles only when Tetrad asks for them, and the widened columns
+ * are released once the search no longer uses them.
+ */
+public final class CompactDataBox extends VerticalDoubleDataBox {
+
+    private static final long serialVersionUID = 23L;
+
+    private static final int MISSING_CODE = -99;
+
+    private final List<Node> variables;
+    private final int numOfRows;
+
+    private final float[][] continuousData;
+    private final byte[][] byteData;
+    private final short[][] shortData;
+    private final int[][] intData;
+
+    /**
+     * Constructor. All the values are missing.
+     *
+     * @param variables continuous or discrete variables of the columns
+     * @param numOfRows number of rows
+     */
+    public CompactDataBox(List<Node> variables, int numOfRows) {
+        // the values are stored in the fields below, not in the parent box
+        super(new double[1][0]);
+
+        if (variables == null) {
+            throw new IllegalArgumentException("Parameter variables cannot be null.");
+        }
+        if (numOfRows < 0) {
+            throw new IllegalArgumentException("Parameter numOfRows cannot be negative.");
+        }
+
+        this.variables = variables;
+        this.numOfRows = numOfRows;
+
+        int numOfCols = variables.size();
+        this.continuousData = new float[numOfCols][];
+        this.byteData = new byte[numOfCols][];
+        this.shortData = new short[numOfCols][];
+        this.intData = new int[numOfCols][];
+        for (int col = 0; col < numOfCols; col++) {
+            Node variable = variables.get(col);
+            if (variable instanceof ContinuousVariable) {
+                continuousData[col] = new float[numOfRows];
+                Arrays.fill(continuousData[col], Float.NaN);
+            } else if (variable instanceof DiscreteVariable) {
+                int numOfCategories = ((DiscreteVariable) variable).getNumCategories();
+                if (numOfCategories <= Byte.MAX_VALUE) {
+                    byteData[col] = new byte[numOfRows];
+                    Arrays.fill(byteData[col], (byte) MISSING_CODE);
+                } else if (numOfCategories <= Short.MAX_VALUE) {
+                    shortData[col] = new short[numOfRows];
+                    Arrays.fill(shortData[col], (short) MISSING_CODE);
+                } else {
+                    intData[col] = new int[numOfRows];
+                    Arrays.fill(intData[col], MISSING_CODE);
+                }
+            } else {
+                String errMsg = String.format("Variable %s at index %d is neither continuous nor discrete.", variable.getName(), col);
+                throw new IllegalArgumentException(errMsg);
+            }
+        }
+    }
+
+    /**
+     * Copy the values of the dataset into a compact dataset.
+     *
+     * @param dataSet continuous, discrete or mixed dataset
+     * @return dataset with the same variables and values, stored compactly
+     */
+    public static DataSet compact(DataSet dataSet) {
+        List<Node> variables = dataSet.getVariables();
+        int numOfRows = dataSet.getNumRows();
+        CompactDataBox compactDataBox = new CompactDataBox(variables, numOfRows);
+
+        DataBox dataBox = (dataSet instanceof BoxDataSet) ? ((BoxDataSet) dataSet).getDataBox() : null;
+        for (int col = 0; col < variables.size(); col++) {
+            if (compactDataBox.continuousData[col] != null) {
+                float[] column = compactDataBox.continuousData[col];
+                if (dataBox instanceof DoubleDataBox) {
+                    double[][] data = ((DoubleDataBox) dataBox).getData();
+                    for (int row = 0; row < numOfRows; row++) {
+                        column[row] = (float) data[row][col];
+                    }
+                } else if (dataBox instanceof MixedDataBox && ((MixedDataBox) dataBox).getContinuousData()[col] != null) {
+                    double[] data = ((MixedDataBox) dataBox).getContinuousData()[col];
+                    for (int row = 0; row < numOfRows; row++) {
+                        column[row] = (float) data[row];
+                    }
+                } else {
+                    for (int row = 0; row < numOfRows; row++) {
+                        column[row] = (float) dataSet.getDouble(row, col);
+                    }
+                }
+            } else {
+                int[] data;
+                if (dataBox instanceof VerticalIntDataBox) {
+                    data = ((VerticalIntDataBox) dataBox).getVariableVectors()[col];
+                } else if (dataBox instanceof MixedDataBox && ((MixedDataBox) dataBox).getDiscreteData()[col] != null) {
+                    data = ((MixedDataBox) dataBox).getDiscreteData()[col];
+                } else {
+                    data = new int[numOfRows];
+                    for (int row = 0; row < numOfRows; row++) {
+                        data[row] = dataSet.getInt(row, col);
+                    }
+                }
+                for (int row = 0; row < numOfRows; row++) {
+                    compactDataBox.setCode(row, col, data[row]);
+                }
+            }
+        }
+
+        return new BoxDataSet(compactDataBox, variables);
+    }
+
+    @Override
+    public int numRows() {
+        return numOfRows;
+    }
+
+    @Override
+    public int numCols() {
+        return variables.size();
+    }
+
+    @Override
+    public void set(int row, int col, Number value) {
+        if (continuousData[col] != null) {
+            continuousData[col][row] = (value == null) ? Float.NaN : value.floatValue();
+        } else {
+            setCode(row, col, (value == null) ? MISSING_CODE : value.intValue());
+        }
+    }
+
+    @Override
+    public Number get(int row, int col) {
+        if (col >= variables.size() || row >= numOfRows) {
+            return null;
+        }
+
+        if (continuousData[col] != null) {
+            float value = continuousData[col][row];
+
+            return Float.isNaN(value) ? null : Double.valueOf(value);
+        }
+
+        int code;
+        if (byteData[col] != null) {
+            code = byteData[col][row];
+        } else if (shortData[col] != null) {
+            code = shortData[col][row];
+        } else {
+            code = intData[col][row];
+        }
+
+        // small codes are cached by Integer.valueOf
+        return (code == MISSING_CODE) ? null : Integer.valueOf(code);
+    }
+
+    @Override
+    public DataBox copy() {
+        return viewSelection(allRows(), allCols());
+    }
+
+    @Override
+    public DataBox like() {
+        return viewSelection(allRows(), allCols());
+    }
+
+    @Override
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        List<Node> newVariables = new ArrayList<>(cols.length);
+        for (int col : cols) {
+            newVariables.add(variables.get(col));
+        }
+
+        CompactDataBox dataBox = new CompactDataBox(newVariables, rows.length);
+        for (int j = 0; j < cols.length; j++) {
+            int col = cols[j];
+            for (int i = 0; i < rows.length; i++) {
+                if (continuousData[col] != null) {
+                    dataBox.continuousData[j][i] = continuousData[col][rows[i]];
+                } else {
+                    Number value = get(rows[i], col);
+                    dataBox.setCode(i, j, (value == null) ? MISSING_CODE : value.intValue());
+                }
+            }
+        }
+
+        return dataBox;
+    }
+
+    /**
+     * Get the values of each column widened to doubles, with NaN for the
+     * missing values. The arrays are new, so the caller is free to change
+     * them.
+     *
+     * @return values of each column
+     */
+    @Override
+    public double[][] getVariableVectors() {
+        double[][] vectors = new double[variables.size()][numOfRows];
+        for (int col = 0; col < vectors.length; col++) {
+            double[] vector = vectors[col];
+            if (continuousData[col] != null) {
+                float[] column = continuousData[col];
+                for (int row = 0; row < numOfRows; row++) {
+                    vector[row] = column[row];
+                }
+            } else {
+                for (int row = 0; row < numOfRows; row++) {
+                    Number value = get(row, col);
+                    vector[row] = (value == null) ? Double.NaN : value.doubleValue();
+                }
+            }
+        }
+
+        return vectors;
+    }
+
+    /**
+     * Set the category code of a discrete column. The column is widened when
+     * the code does not fit in it.
+     */
+    private void setCode(int row, int col, int code) {
+        if (byteData[col] != null) {
+            if (code >= Byte.MIN_VALUE && code <= Byte.MAX_VALUE) {
+                byteData[col][row] = (byte) code;
+                return;
+            }
+
+            short[] column = new short[numOfRows];
+            for (int i = 0; i < numOfRows; i++) {
+                column[i] = byteData[col][i];
+            }
+            shortData[col] = column;
+            byteData[col] = null;
+        }
+
+        if (shortData[col] != null) {
+            if (code >= Short.MIN_VALUE && code <= Short.MAX_VALUE) {
+                shortData[col][row] = (short) code;
+                return;
+            }
+
+            int[] column = new int[numOfRows];
+            for (int i = 0; i < numOfRows; i++) {
+                column[i] = shortData[col][i];
+            }
+            intData[col] = column;
+            shortData[col] = null;
+        }
+
+        if (intData[col] == null) {
+            throw new IllegalArgumentException("Indices out of bounds or null value.");
+        }
+        intData[col][row] = code;
+    }
+
+    private int[] allRows() {
+        int[] rows = new int[numOfRows];
+        for (int i = 0; i < numOfRows; i++) {
+            rows[i] = i;
+        }
+
+        return rows;
+    }
+
+    private int[] allCols() {
+        int[] cols = new int[variables.size()];
+        for (int j = 0; j < cols.length; j++) {
+            cols[j] = j;
+        }
+
+        return cols;
+    }
+
+}
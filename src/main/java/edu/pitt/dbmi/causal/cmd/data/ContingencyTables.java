@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class {@code ContingencyTables} caches the contingency tables of a
+ * discrete dataset. A table of counts over a set of variables is computed from
+ * the rows the first time it is asked for, and is then reused whatever order
+ * the variables are asked in. The tables used the least recently are evicted
+ * to keep the cache under its memory ceiling.
+ *
+ * A table lists the counts of the combinations of values of its variables, the
+ * value of the last variable changing the fastest. Rows missing a value of any
+ * of the variables are not counted.
+ */
+public final class ContingencyTables {
+
+    /**
+     * Value of a missing discrete value.
+     */
+    public static final int MISSING_VALUE = -99;
+
+    /**
+     * Estimated bytes of a cache entry besides its counts and its key.
+     */
+    private static final long ENTRY_OVERHEAD = 96;
+
+    private final int[][] columns;
+    private final int[] counts;
+    private final int[] dims;
+    private final long maxBytes;
+
+    private final LinkedHashMap<Key, int[]> tables = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param columns values of the rows, column by column
+     * @param counts number of times each row occurs
+     * @param dims number of categories of each variable
+     * @param maxBytes memory ceiling of the cached tables
+     */
+    public ContingencyTables(int[][] columns, int[] counts, int[] dims, long maxBytes) {
+        this.columns = columns;
+        this.counts = counts;
+        this.dims = dims;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Count the combinations of values of variables over the rows.
+     *
+     * @param columns values of the rows, column by column
+     * @param counts number of times each row occurs
+     * @param dims number of categories of each variable
+     * @param variables column indices of the variables
+     * @return contingency table of the variables
+     */
+    public static int[] count(int[][] columns, int[] counts, int[] dims, int[] variables) {
+        int numOfCells = 1;
+        for (int variable : variables) {
+            numOfCells *= dims[variable];
+        }
+
+        int[] table = new int[numOfCells];
+        rows:
+        for (int row = 0; row < counts.length; row++) {
+            int cell = 0;
+            for (int variable : variables) {
+                int value = columns[variable][row];
+                if (value == MISSING_VALUE) {
+                    continue rows;
+                }
+                cell = cell * dims[variable] + value;
+            }
+
+            table[cell] += counts[row];
+        }
+
+        return table;
+    }
+
+    /**
+     * Get the contingency table of variables. The table may be shared with
+     * later calls and must not be modified.
+     *
+     * @param variables column indices of the variables, all different
+     * @return contingency table of the variables in the given order
+     */
+    public int[] getTable(int[] variables) {
+        int[] sorted = variables.clone();
+        Arrays.sort(sorted);
+        Key key = new Key(sorted);
+
+        int[] table;
+        synchronized (tables) {
+            table = tables.get(key);
+        }
+        if (table == null) {
+            misses.increment();
+            table = count(columns, counts, dims, sorted);
+            put(key, table);
+        } else {
+            hits.increment();
+        }
+
+        return Arrays.equals(sorted, variables)
+                ? table
+                : reorder(table, sorted, variables);
+    }
+
+    private void put(Key key, int[] table) {
+        long tableBytes = ENTRY_OVERHEAD + 4L * (table.length + key.variables.length);
+        if (tableBytes > maxBytes) {
+            return;
+        }
+
+        synchronized (tables) {
+            if (tables.putIfAbsent(key, table) != null) {
+                return;
+            }
+
+            bytes += tableBytes;
+            Iterator<Map.Entry<Key, int[]>> iterator = tables.entrySet().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<Key, int[]> eldest = iterator.next();
+                bytes -= ENTRY_OVERHEAD + 4L * (eldest.getValue().length + eldest.getKey().variables.length);
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Lay out a table of sorted variables in the order the variables are asked
+     * in.
+     */
+    private int[] reorder(int[] table, int[] sorted, int[] variables) {
+        int numOfVariables = variables.length;
+
+        // stride in the asked order of each sorted variable
+        int[] strides = new int[numOfVariables];
+        int stride = 1;
+        for (int i = numOfVariables - 1; i >= 0; i--) {
+            strides[Arrays.binarySearch(sorted, variables[i])] = stride;
+            stride *= dims[variables[i]];
+        }
+
+        int[] reordered = new int[table.length];
+        int[] coords = new int[numOfVariables];
+        int cell = 0;
+        for (int count : table) {
+            reordered[cell] = count;
+
+            // next combination of the sorted variables, the last the fastest
+            for (int i = numOfVariables - 1; i >= 0; i--) {
+                cell += strides[i];
+                if (++coords[i] < dims[sorted[i]]) {
+                    break;
+                }
+                cell -= coords[i] * strides[i];
+                coords[i] = 0;
+            }
+        }
+
+        return reordered;
+    }
+
+    /**
+     * Get the number of tables found in the cache.
+     *
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of tables counted from the rows.
+     *
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of tables evicted from the cache.
+     *
+     * @return number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get a one-line summary of the use of the cache.
+     *
+     * @return hit and miss statistics
+     */
+    public String getStatistics() {
+        long numOfHits = getHits();
+        long numOfLookups = numOfHits + getMisses();
+        double hitRate = (numOfLookups > 0) ? 100.0 * numOfHits / numOfLookups : 0.0;
+
+        int numOfTables;
+        long numOfBytes;
+        synchronized (tables) {
+            numOfTables = tables.size();
+            numOfBytes = bytes;
+        }
+
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d tables cached in %.1f of %.1f MB",
+                numOfHits, getMisses(), hitRate, getEvictions(), numOfTables, numOfBytes / 1048576.0, maxBytes / 1048576.0);
+    }
+
+    private static final class Key {
+
+        private final int[] variables;
+        private final int hashCode;
+
+        private Key(int[] variables) {
+            this.variables = variables;
+            this.hashCode = Arrays.hashCode(variables);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof Key) && Arrays.equals(variables, ((Key) obj).variables);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import java.util.Arrays;
+
+/**
+ * The class {@code CovarianceAccumulator} accumulates the means and the
+ * covariances of rows of continuous values without keeping the rows.
+ *
+ * The rows are buffered in small blocks. The mean and the sums of products of
+ * the deviations from the mean of a block are computed in two passes over the
+ * block, then combined with the ones of the rows before it using the pairwise
+ * update of Chan, Golub and LeVeque. The values are also shifted by the first
+ * row so that large offsets do not cost precision. This is about as accurate
+ * as two passes over the whole data, unlike summing the products of the raw
+ * values.
+ */
+final class CovarianceAccumulator {
+
+    private static final int BLOCK_SIZE = 256;
+
+    private final int numOfCols;
+
+    private final double[][] block;
+    private int blockSize;
+
+    private long numOfRows;
+    private final double[] shifts;
+    private final double[] means;
+
+    /**
+     * Sums of products of deviations from the means, lower triangle only.
+     */
+    private final double[][] sums;
+
+    private final double[] blockMeans;
+    private final double[][] blockSums;
+    private final double[] deltas;
+
+    /**
+     * Constructor.
+     *
+     * @param numOfCols number of values in a row
+     */
+    CovarianceAccumulator(int numOfCols) {
+        this.numOfCols = numOfCols;
+        this.block = new double[BLOCK_SIZE][numOfCols];
+        this.shifts = new double[numOfCols];
+        this.means = new double[numOfCols];
+        this.sums = new double[numOfCols][];
+        this.blockMeans = new double[numOfCols];
+        this.blockSums = new double[numOfCols][];
+        this.deltas = new double[numOfCols];
+        for (int i = 0; i < numOfCols; i++) {
+            sums[i] = new double[i + 1];
+            blockSums[i] = new double[i + 1];
+        }
+    }
+
+    /**
+     * Get the array to put the values of the next row in. The row is added
+     * by {@link #addRow()}.
+     *
+     * @return array for the values of the next row
+     */
+    double[] nextRow() {
+        return block[blockSize];
+    }
+
+    /**
+     * Add the row whose values were put in the array given by
+     * {@link #nextRow()}.
+     */
+    void addRow() {
+        if (++blockSize == BLOCK_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Get the number of rows added.
+     *
+     * @return number of rows added
+     */
+    long getNumberOfRows() {
+        return numOfRows + blockSize;
+    }
+
+    /**
+     * Get the sample covariance matrix of the rows added.
+     *
+     * @return covariance matrix, with the sums of products divided by the
+     * number of rows minus one
+     */
+    double[][] getCovariances() {
+        flush();
+
+        double[][] covariances = new double[numOfCols][numOfCols];
+        double divisor = numOfRows - 1;
+        for (int i = 0; i < numOfCols; i++) {
+            for (int j = 0; j <= i; j++) {
+                double covariance = sums[i][j] / divisor;
+                covariances[i][j] = covariance;
+                covariances[j][i] = covariance;
+            }
+        }
+
+        return covariances;
+    }
+
+    /**
+     * Combine the buffered rows with the rows before them.
+     */
+    private void flush() {
+        if (blockSize == 0) {
+            return;
+        }
+
+        Kernels kernels = NumericKernels.get();
+        if (numOfRows == 0) {
+            System.arraycopy(block[0], 0, shifts, 0, numOfCols);
+        }
+        Arrays.fill(blockMeans, 0);
+        for (int row = 0; row < blockSize; row++) {
+            double[] values = block[row];
+            kernels.subtract(values, shifts, numOfCols);
+            kernels.addMultiple(1, values, blockMeans, numOfCols);
+        }
+        for (int i = 0; i < numOfCols; i++) {
+            blockMeans[i] /= blockSize;
+        }
+
+        for (int i = 0; i < numOfCols; i++) {
+            Arrays.fill(blockSums[i], 0);
+        }
+        for (int row = 0; row < blockSize; row++) {
+            double[] values = block[row];
+            kernels.subtract(values, blockMeans, numOfCols);
+            for (int i = 0; i < numOfCols; i++) {
+                kernels.addMultiple(values[i], values, blockSums[i], i + 1);
+            }
+        }
+
+        long totalRows = numOfRows + blockSize;
+        double weight = (double) numOfRows * blockSize / totalRows;
+        for (int i = 0; i < numOfCols; i++) {
+            deltas[i] = blockMeans[i] - means[i];
+        }
+        for (int i = 0; i < numOfCols; i++) {
+            double[] sumsRow = sums[i];
+            kernels.addMultiple(1, blockSums[i], sumsRow, i + 1);
+            kernels.addMultiple(deltas[i] * weight, deltas, sumsRow, i + 1);
+        }
+        for (int i = 0; i < numOfCols; i++) {
+            means[i] += (blockMeans[i] - means[i]) * blockSize / totalRows;
+        }
+
+        numOfRows = totalRows;
+        blockSize = 0;
+    }
+
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The class {@code CovarianceBuilder} computes the covariance matrix of a
+ * continuous dataset with several threads. The columns are centered, then the
+ * matrix is accumulated one tile of column blocks at a time, over blocks of
+ * rows that stay in the cache. Each tile of the lower triangle is a task of its
+ * own.
+ *
+ * When the data has missing values, the covariance of each pair of variables
+ * is computed from the rows where both are present, and the sample size is the
+ * smallest number of such rows. A matrix of pairwise covariances is not always
+ * positive definite.
+ *
+ * The covariances are bias corrected, like those of
+ * {@link CovarianceMatrix#CovarianceMatrix(DataSet)}.
+ */
+public final class CovarianceBuilder {
+
+    private static final int COLUMN_BLOCK_SIZE = 64;
+    private static final int ROW_BLOCK_SIZE = 512;
+
+    private final ExecutorService executorService;
+    private final int numOfThreads;
+
+    /**
+     * Constructor.
+     *
+     * @param executorService threads to compute the matrix with, can be null
+     * @param numOfThreads number of threads of the executor service
+     */
+    public CovarianceBuilder(ExecutorService executorService, int numOfThreads) {
+        this.executorService = executorService;
+        this.numOfThreads = numOfThreads;
+    }
+
+    /**
+     * Compute the covariance matrix of a continuous dataset.
+     *
+     * @param dataSet continuous dataset
+     * @return covariance matrix
+     * @throws IOException when the computation is interrupted
+     */
+    public ICovarianceMatrix build(DataSet dataSet) throws IOException {
+        if (!dataSet.isContinuous()) {
+            throw new IllegalArgumentException("Not a continuous data set.");
+        }
+
+        int numOfRows = dataSet.getNumRows();
+        int numOfCols = dataSet.getNumColumns();
+        Kernels kernels = NumericKernels.get();
+
+        // one task per column block
+        double[][] columns = new double[numOfCols][];
+        double[][] masks = new double[numOfCols][];
+        List<Callable<Integer>> columnTasks = new ArrayList<>();
+        for (int colBlock = 0; colBlock < numOfCols; colBlock += COLUMN_BLOCK_SIZE) {
+            int first = colBlock;
+            int last = Math.min(colBlock + COLUMN_BLOCK_SIZE, numOfCols);
+            columnTasks.add(() -> {
+                readInColumns(dataSet, columns, masks, first, last, kernels);
+                return numOfRows;
+            });
+        }
+        run(columnTasks);
+
+        boolean isPairwise = Arrays.stream(masks).anyMatch(mask -> mask != null);
+        double[][] pairMasks = isPairwise ? fillMasks(masks, numOfRows) : null;
+
+        // one task per tile of the lower triangle
+        double[][] covariances = new double[numOfCols][numOfCols];
+        List<Callable<Integer>> tileTasks = new ArrayList<>();
+        for (int rowBlock = 0; rowBlock < numOfCols; rowBlock += COLUMN_BLOCK_SIZE) {
+            for (int colBlock = 0; colBlock <= rowBlock; colBlock += COLUMN_BLOCK_SIZE) {
+                int firstRow = rowBlock;
+                int firstCol = colBlock;
+                tileTasks.add(() -> isPairwise
+                        ? computePairwiseTile(columns, pairMasks, covariances, firstRow, firstCol, numOfRows, kernels)
+                        : computeTile(columns, covariances, firstRow, firstCol, numOfRows, kernels));
+            }
+        }
+        int sampleSize = run(tileTasks);
+
+        return new CovarianceMatrix(dataSet.getVariables(), covariances, sampleSize);
+    }
+
+    /**
+     * Copy the columns of the dataset and center them. The missing values of a
+     * column are set to zero and given a mask of 0s and 1s.
+     */
+    private static void readInColumns(DataSet dataSet, double[][] columns, double[][] masks, int first, int last, Kernels kernels) {
+        int numOfRows = dataSet.getNumRows();
+        double[][] rowMajorData = getRowMajorData(dataSet);
+        double[][] columnMajorData = getColumnMajorData(dataSet);
+        OffHeapDataBox offHeapData = getOffHeapData(dataSet);
+        for (int col = first; col < last; col++) {
+            double[] column = new double[numOfRows];
+            if (columnMajorData != null) {
+                System.arraycopy(columnMajorData[col], 0, column, 0, numOfRows);
+            } else if (offHeapData != null && offHeapData.isContinuous(col)) {
+                offHeapData.getDoubles(col, column);
+            } else if (rowMajorData != null) {
+                for (int row = 0; row < numOfRows; row++) {
+                    column[row] = rowMajorData[row][col];
+                }
+            } else {
+                for (int row = 0; row < numOfRows; row++) {
+                    column[row] = dataSet.getDouble(row, col);
+                }
+            }
+
+            // NaN, the missing value, makes the sum NaN
+            double sum = kernels.sum(column, 0, numOfRows);
+            int count = numOfRows;
+            if (Double.isNaN(sum)) {
+                sum = 0;
+                count = 0;
+                for (double value : column) {
+                    if (!Double.isNaN(value)) {
+                        sum += value;
+                        count++;
+                    }
+                }
+            }
+            double mean = (count == 0) ? 0 : sum / count;
+
+            double[] mask = null;
+            if (count < numOfRows) {
+                mask = new double[numOfRows];
+                for (int row = 0; row < numOfRows; row++) {
+                    if (Double.isNaN(column[row])) {
+                        column[row] = 0;
+                    } else {
+                        column[row] -= mean;
+                        mask[row] = 1;
+                    }
+                }
+            } else {
+                kernels.subtract(column, mean, 0, numOfRows);
+            }
+
+            columns[col] = column;
+            masks[col] = mask;
+        }
+    }
+
+    private static double[][] getRowMajorData(DataSet dataSet) {
+        if (dataSet instanceof BoxDataSet) {
+            DataBox dataBox = ((BoxDataSet) dataSet).getDataBox();
+            if (dataBox instanceof DoubleDataBox) {
+                return ((DoubleDataBox) dataBox).getData();
+            }
+        }
+
+        return null;
+    }
+
+    private static double[][] getColumnMajorData(DataSet dataSet) {
+        if (dataSet instanceof BoxDataSet) {
+            DataBox dataBox = ((BoxDataSet) dataSet).getDataBox();
+            if (dataBox instanceof ColumnMajorDataBox) {
+                return ((ColumnMajorDataBox) dataBox).getColumns();
+            }
+        }
+
+        return null;
+    }
+
+    private static OffHeapDataBox getOffHeapData(DataSet dataSet) {
+        if (dataSet instanceof BoxDataSet) {
+            DataBox dataBox = ((BoxDataSet) dataSet).getDataBox();
+            if (dataBox instanceof OffHeapDataBox) {
+                return (OffHeapDataBox) dataBox;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Give the columns without missing values a mask of 1s, shared by all of
+     * them.
+     */
+    private static double[][] fillMasks(double[][] masks, int numOfRows) {
+        double[] fullMask = null;
+        double[][] pairMasks = new double[masks.length][];
+        for (int i = 0; i < masks.length; i++) {
+            if (masks[i] == null) {
+                if (fullMask == null) {
+                    fullMask = new double[numOfRows];
+                    Arrays.fill(fullMask, 1);
+                }
+                pairMasks[i] = fullMask;
+            } else {
+                pairMasks[i] = masks[i];
+            }
+        }
+
+        return pairMasks;
+    }
+
+    /**
+     * Compute a tile of the covariance matrix of data without missing values.
+     *
+     * @return sample size
+     */
+    private static int computeTile(double[][] columns, double[][] covariances, int firstRow, int firstCol, int numOfRows, Kernels kernels) {
+        int lastRow = Math.min(firstRow + COLUMN_BLOCK_SIZE, columns.length);
+        int lastCol = Math.min(firstCol + COLUMN_BLOCK_SIZE, columns.length);
+        double[][] sums = new double[lastRow - firstRow][lastCol - firstCol];
+        for (int first = 0; first < numOfRows; first += ROW_BLOCK_SIZE) {
+            int last = Math.min(first + ROW_BLOCK_SIZE, numOfRows);
+            for (int i = firstRow; i < lastRow; i++) {
+                double[] x = columns[i];
+                double[] tileSums = sums[i - firstRow];
+                for (int j = firstCol, end = Math.min(lastCol, i + 1); j < end; j++) {
+                    tileSums[j - firstCol] += kernels.dot(x, columns[j], first, last);
+                }
+            }
+        }
+
+        for (int i = firstRow; i < lastRow; i++) {
+            for (int j = firstCol, end = Math.min(lastCol, i + 1); j < end; j++) {
+                double covariance = sums[i - firstRow][j - firstCol] / (numOfRows - 1);
+                covariances[i][j] = covariance;
+                covariances[j][i] = covariance;
+            }
+        }
+
+        return numOfRows;
+    }
+
+    /**
+     * Compute a tile of the covariance matrix from the rows where both
+     * variables of each pair are present.
+     *
+     * @return smallest number of rows of a pair
+     */
+    private static int computePairwiseTile(double[][] columns, double[][] masks, double[][] covariances, int firstRow, int firstCol, int numOfRows, Kernels kernels) {
+        int lastRow = Math.min(firstRow + COLUMN_BLOCK_SIZE, columns.length);
+        int lastCol = Math.min(firstCol + COLUMN_BLOCK_SIZE, columns.length);
+        int numOfTileRows = lastRow - firstRow;
+        int numOfTileCols = lastCol - firstCol;
+        double[][] products = new double[numOfTileRows][numOfTileCols];
+        double[][] sumsX = new double[numOfTileRows][numOfTileCols];
+        double[][] sumsY = new double[numOfTileRows][numOfTileCols];
+        double[][] counts = new double[numOfTileRows][numOfTileCols];
+        for (int first = 0; first < numOfRows; first += ROW_BLOCK_SIZE) {
+            int last = Math.min(first + ROW_BLOCK_SIZE, numOfRows);
+            for (int i = firstRow; i < lastRow; i++) {
+                double[] x = columns[i];
+                double[] maskX = masks[i];
+                int ti = i - firstRow;
+                for (int j = firstCol, end = Math.min(lastCol, i + 1); j < end; j++) {
+                    double[] y = columns[j];
+                    double[] maskY = masks[j];
+                    int tj = j - firstCol;
+                    products[ti][tj] += kernels.dot(x, y, first, last);
+                    sumsX[ti][tj] += kernels.dot(x, maskY, first, last);
+                    sumsY[ti][tj] += kernels.dot(maskX, y, first, last);
+                    counts[ti][tj] += kernels.dot(maskX, maskY, first, last);
+                }
+            }
+        }
+
+        int sampleSize = numOfRows;
+        for (int i = firstRow; i < lastRow; i++) {
+            int ti = i - firstRow;
+            for (int j = firstCol, end = Math.min(lastCol, i + 1); j < end; j++) {
+                int tj = j - firstCol;
+                double count = counts[ti][tj];
+                double covariance = (count < 2)
+                        ? Double.NaN
+                        : (products[ti][tj] - sumsX[ti][tj] * sumsY[ti][tj] / count) / (count - 1);
+                covariances[i][j] = covariance;
+                covariances[j][i] = covariance;
+                sampleSize = Math.min(sampleSize, (int) count);
+            }
+        }
+
+        return sampleSize;
+    }
+
+    /**
+     * Run the tasks, on the executor service if there is one.
+     *
+     * @return smallest result of the tasks
+     */
+    private int run(List<Callable<Integer>> tasks) throws IOException {
+        int min = Integer.MAX_VALUE;
+        if (executorService == null || numOfThreads < 2 || tasks.size() < 2) {
+            for (Callable<Integer> task : tasks) {
+                try {
+                    min = Math.min(min, task.call());
+                } catch (RuntimeException exception) {
+                    throw exception;
+                } catch (Exception exception) {
+                    throw new IOException(exception);
+                }
+            }
+
+            return min;
+        }
+
+        List<Future<Integer>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<Integer> task : tasks) {
+                futures.add(executorService.submit(task));
+            }
+            for (Future<Integer> future : futures) {
+                min = Math.min(min, future.get());
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Computing of the covariance matrix was interrupted.");
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        } finally {
+            futures.forEach(e -> e.cancel(true));
+        }
+
+        return min;
+    }
+
+}
@@ -19,36 +19,53 @@
 package edu.pitt.dbmi.causal.cmd.data;
 
 import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.DataType;
 import edu.cmu.tetrad.data.DelimiterType;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.data.SimpleDataLoader;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphSaveLoadUtils;
 import edu.cmu.tetrad.util.DataConvertUtils;
+import edu.cmu.tetrad.util.Params;
 import edu.pitt.dbmi.causal.cmd.AlgorithmRunException;
 import edu.pitt.dbmi.causal.cmd.CmdArgs;
+import edu.pitt.dbmi.causal.cmd.ValidationException;
+import edu.pitt.dbmi.causal.cmd.tetrad.TetradAlgorithms;
+import edu.pitt.dbmi.causal.cmd.tetrad.TetradIndependenceTests;
+import edu.pitt.dbmi.causal.cmd.tetrad.TetradRowWeights;
+import edu.pitt.dbmi.causal.cmd.tetrad.TetradScores;
+import edu.pitt.dbmi.causal.cmd.util.FileUtils;
 import edu.pitt.dbmi.causal.cmd.util.LogMessages;
-import edu.pitt.dbmi.data.reader.DataColumn;
-import edu.pitt.dbmi.data.reader.DataColumns;
+import edu.pitt.dbmi.data.reader.Data;
 import edu.pitt.dbmi.data.reader.Delimiter;
-import edu.pitt.dbmi.data.reader.covariance.CovarianceData;
 import edu.pitt.dbmi.data.reader.covariance.CovarianceDataReader;
 import edu.pitt.dbmi.data.reader.covariance.LowerCovarianceDataFileReader;
+import edu.pitt.dbmi.data.reader.metadata.ColumnMetadata;
+import edu.pitt.dbmi.data.reader.metadata.InterventionalColumn;
 import edu.pitt.dbmi.data.reader.metadata.Metadata;
 import edu.pitt.dbmi.data.reader.metadata.MetadataFileReader;
-import edu.pitt.dbmi.data.reader.tabular.TabularColumnFileReader;
-import edu.pitt.dbmi.data.reader.tabular.TabularColumnReader;
-import edu.pitt.dbmi.data.reader.tabular.TabularDataFileReader;
-import edu.pitt.dbmi.data.reader.tabular.TabularDataReader;
+import edu.pitt.dbmi.data.reader.validation.ValidationCode;
+import edu.pitt.dbmi.data.reader.validation.ValidationResult;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
@@ -69,6 +86,12 @@ public final class DataFiles {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(DataFiles.class);
 
+    /**
+     * Part of the maximum heap size the files being read in at the same time
+     * can take up.
+     */
+    private static final long MEMORY_CEILING_DIVISOR = 2;
+
     private DataFiles() {
     }
 
@@ -86,7 +109,7 @@ public final class DataFiles {
             return null;
         } else {
             LogMessages.readingFileStart(file, LOGGER, out);
-            Metadata metadata = (new MetadataFileReader(file)).read();
+            Metadata metadata = FileUtils.readUncompressed(file, metadataFile -> (new MetadataFileReader(metadataFile)).read());
             LogMessages.readingFileEnd(file, LOGGER, out);
 
             return metadata;
@@ -107,7 +130,7 @@ public final class DataFiles {
             return null;
         } else {
             LogMessages.readingFileStart(file, LOGGER, out);
-            Knowledge knowledge = SimpleDataLoader.loadKnowledge(file.toFile(), DelimiterType.WHITESPACE, "//");
+            Knowledge knowledge = FileUtils.readUncompressed(file, knowledgeFile -> SimpleDataLoader.loadKnowledge(knowledgeFile.toFile(), DelimiterType.WHITESPACE, "//"));
             LogMessages.readingFileEnd(file, LOGGER, out);
 
             return knowledge;
@@ -136,16 +159,34 @@ public final class DataFiles {
      * @throws IOException when errors occur during reading file
      * @throws AlgorithmRunException when dataset is not supported by the given
      * algorithm from command-line
+     * @throws ValidationException when tabular dataset validation fails
+     */
+    public static List<DataModel> readInDatasets(CmdArgs cmdArgs, PrintStream out) throws IOException, AlgorithmRunException, ValidationException {
+        return readInDatasets(cmdArgs, null, out);
+    }
+
+    /**
+     * Read in datasets files. Tabular dataset files are read in parallel
+     * chunks when more than one thread is allowed.
+     *
+     * @param cmdArgs command-line arguments
+     * @param executorService threads to read in the files with, can be null
+     * @param out output stream to write message to
+     * @return list of datasets read in from files
+     * @throws IOException when errors occur during reading file
+     * @throws AlgorithmRunException when dataset is not supported by the given
+     * algorithm from command-line
+     * @throws ValidationException when tabular dataset validation fails
      */
-    public static List<DataModel> readInDatasets(CmdArgs cmdArgs, PrintStream out) throws IOException, AlgorithmRunException {
+    public static List<DataModel> readInDatasets(CmdArgs cmdArgs, ExecutorService executorService, PrintStream out) throws IOException, AlgorithmRunException, ValidationException {
         DataType dataType = cmdArgs.getDataType();
         switch (dataType) {
             case Covariance:
-                return readInCovarianceFile(cmdArgs, out);
+                return readInCovarianceFile(cmdArgs, executorService, out);
             case Continuous:
             case Discrete:
             case Mixed:
-                return readInTabularData(cmdArgs, out);
+                return readInTabularData(cmdArgs, executorService, out);
             default:
                 String errMsg = String.format("Data type %s not supported.", dataType.name());
                 throw new AlgorithmRunException(errMsg);
@@ -156,97 +197,530 @@ public final class DataFiles {
      * Read in tabular dataset files.
      *
      * @param cmdArgs command-line arguments
+     * @param executorService threads to read in the files with, can be null
      * @param out output stream to write message to
      * @return list of datasets read in from files
      * @throws IOException when errors occur during reading file
+     * @throws ValidationException when dataset validation fails
      */
-    private static List<DataModel> readInTabularData(CmdArgs cmdArgs, PrintStream out) throws IOException {
-        List<DataModel> dataModels = new LinkedList<>();
-
-        final Metadata metadata = readInMetadata(cmdArgs, out);
+    private static List<DataModel> readInTabularData(CmdArgs cmdArgs, ExecutorService executorService, PrintStream out) throws IOException, ValidationException {
+        // each file gets its own copy, its columns are updated with the columns of the file
+        Metadata metadata = readInMetadata(cmdArgs, out);
 
         Set<String> varsToExclude = DataFiles.readInVariablesToExclude(cmdArgs, out);
-        for (Path dataFile : cmdArgs.getDatasetFiles()) {
+
+        List<DataModel> dataModels = readInDatasetFiles(cmdArgs, executorService, true, out, (dataFile, chunkExecutorService) -> {
             Delimiter delimiter = cmdArgs.getDelimiter();
             char quoteCharacter = cmdArgs.getQuoteChar();
             String commentMarker = cmdArgs.getCommentMarker();
             String missingValueMarker = cmdArgs.getMissingValueMarker();
             boolean hasHeader = cmdArgs.isHasHeader();
 
-            TabularColumnReader columnReader = new TabularColumnFileReader(dataFile, delimiter);
-            columnReader.setCommentMarker(commentMarker);
-            columnReader.setQuoteCharacter(quoteCharacter);
+            DataType dataType = cmdArgs.getDataType();
+            int numberOfCategories = cmdArgs.getNumCategories();
+            int categorySampleSize = cmdArgs.getCategorySampleSize();
+            int numOfThreads = cmdArgs.getNumOfThreads();
+
+            if (cmdArgs.isStreamCovariance()) {
+                List<ValidationResult> validationResults = cmdArgs.isSkipValidation() ? null : new LinkedList<>();
+
+                StreamingCovarianceReader dataReader = new StreamingCovarianceReader(dataFile, delimiter);
+                dataReader.setCommentMarker(commentMarker);
+                dataReader.setQuoteCharacter(quoteCharacter);
+                dataReader.setMissingDataMarker(missingValueMarker);
 
-            boolean isDiscrete = (cmdArgs.getDataType() == DataType.Discrete);
-            DataColumn[] dataColumns;
-            if (hasHeader) {
-                dataColumns = columnReader.readInDataColumns(varsToExclude, isDiscrete);
+                return new DatasetFile(dataReader.read(varsToExclude, hasHeader, validationResults), validationResults);
+            }
 
-                if (metadata != null) {
-                    dataColumns = DataColumns.update(dataColumns, metadata);
+            // the standard input and named pipes can only be read once
+            boolean isStream = FileUtils.isStream(dataFile);
+
+            // compressed files are decompressed as they are read, from start to end
+            boolean isCompressed = FileUtils.isCompressed(dataFile);
+
+            Path cacheFile = null;
+            List<String> cacheMessages = new LinkedList<>();
+            if (cmdArgs.getCacheDirectory() != null && isStream) {
+                cacheMessages.add(String.format("Dataset from stream %s is not cached.", dataFile.getFileName()));
+            } else if (cmdArgs.getCacheDirectory() != null) {
+                cacheFile = DatasetCache.getCacheFile(cmdArgs.getCacheDirectory(), dataFile, cmdArgs, varsToExclude);
+                if (Files.exists(cacheFile)) {
+                    DataModel dataModel = DatasetCache.read(cacheFile, cmdArgs.isColumnMajor());
+                    if (dataModel != null) {
+                        DatasetFile datasetFile = new DatasetFile(storeData(dataModel, cmdArgs), null);
+                        datasetFile.messages.add(String.format("Read in dataset from cache file %s.", cacheFile.getFileName()));
+
+                        return datasetFile;
+                    }
+                    cacheMessages.add(String.format("Ignored invalid cache file %s.", cacheFile.getFileName()));
                 }
-            } else {
-                dataColumns = columnReader.generateColumns(new int[0], isDiscrete);
             }
 
-            // handle mixed data
-            if (cmdArgs.getDataType() == DataType.Mixed) {
-                TabularDataReader dataReader = new TabularDataFileReader(dataFile, delimiter);
+            Metadata fileMetadata = (metadata == null) ? null : copyOf(metadata);
+
+            // validate the data while reading it in
+            List<ValidationResult> validationResults = cmdArgs.isSkipValidation() ? null : new LinkedList<>();
+
+            // the row limit and the row sample need the rows in order
+            RowFilter rowFilter = cmdArgs.getRowFilter();
+            int rowLimit = cmdArgs.getRowLimit();
+            int rowSampleSize = cmdArgs.getRowSampleSize();
+            boolean isRowOrderNeeded = rowLimit > 0 || rowSampleSize > 0;
+
+            Data data;
+            List<String> columnTypeReport;
+            String rowSelectionReport;
+            if (chunkExecutorService == null || numOfThreads < 2 || isRowOrderNeeded || isStream || isCompressed) {
+                SinglePassTabularDataReader dataReader = new SinglePassTabularDataReader(dataFile, delimiter);
                 dataReader.setCommentMarker(commentMarker);
                 dataReader.setQuoteCharacter(quoteCharacter);
                 dataReader.setMissingDataMarker(missingValueMarker);
+                dataReader.setCategorySampleSize(categorySampleSize);
+                dataReader.setColumnMajor(cmdArgs.isColumnMajor());
+                dataReader.setRowFilter(rowFilter);
+                dataReader.setRowLimit(rowLimit);
+                dataReader.setRowSample(rowSampleSize, cmdArgs.getRowSampleSeed());
+
+                data = dataReader.read(varsToExclude, dataType, numberOfCategories, hasHeader, fileMetadata, validationResults);
+                columnTypeReport = dataReader.getColumnTypeReport();
+                rowSelectionReport = dataReader.getRowSelectionReport();
+            } else {
+                MappedTabularDataReader dataReader = new MappedTabularDataReader(dataFile, delimiter, chunkExecutorService, numOfThreads);
+                dataReader.setCommentMarker(commentMarker);
+                dataReader.setQuoteCharacter(quoteCharacter);
+                dataReader.setMissingDataMarker(missingValueMarker);
+                dataReader.setCategorySampleSize(categorySampleSize);
+                dataReader.setColumnMajor(cmdArgs.isColumnMajor());
+                dataReader.setRowFilter(rowFilter);
 
-                int numberOfCategories = cmdArgs.getNumCategories();
-                dataReader.determineDiscreteDataColumns(dataColumns, numberOfCategories, hasHeader);
+                data = dataReader.read(varsToExclude, dataType, numberOfCategories, hasHeader, fileMetadata, validationResults);
+                columnTypeReport = dataReader.getColumnTypeReport();
+                rowSelectionReport = dataReader.getRowSelectionReport();
             }
 
-            TabularDataReader dataReader = new TabularDataFileReader(dataFile, delimiter);
-            dataReader.setCommentMarker(commentMarker);
-            dataReader.setQuoteCharacter(quoteCharacter);
-            dataReader.setMissingDataMarker(missingValueMarker);
+            DataModel dataModel = (data instanceof ColumnMajorTabularData)
+                    ? ((ColumnMajorTabularData) data).toDataSet()
+                    : DataConvertUtils.toDataModel(data);
+
+            // the cache file has the full-width values
+            List<String> messages = new LinkedList<>(cacheMessages);
+            if (rowSelectionReport != null) {
+                messages.add(rowSelectionReport);
+            }
+            if (columnTypeReport != null) {
+                messages.addAll(columnTypeReport);
+            }
+            if (cacheFile != null && dataModel != null) {
+                try {
+                    if (DatasetCache.write(dataModel, cacheFile)) {
+                        messages.add(String.format("Wrote dataset to cache file %s.", cacheFile.getFileName()));
+                    }
+                } catch (IOException exception) {
+                    messages.add(String.format("Unable to write dataset to cache file %s: %s", cacheFile.getFileName(), exception.getMessage()));
+                }
+            }
 
-            LogMessages.readingFileStart(dataFile, LOGGER, out);
-            DataModel dataModel = DataConvertUtils.toDataModel(dataReader.read(dataColumns, hasHeader, metadata));
-            LogMessages.readingFileEnd(dataFile, LOGGER, out);
+            DatasetFile datasetFile = new DatasetFile(storeData(dataModel, cmdArgs), validationResults);
+            datasetFile.messages.addAll(messages);
 
-            LogMessages.dataInfo(dataFile, dataModel, LOGGER, out);
+            return datasetFile;
+        });
 
-            dataModels.add(dataModel);
+        if (cmdArgs.isCollapseRows() || cmdArgs.getContingencyCacheSize() > 0) {
+            dataModels = applyRowWeights(dataModels, cmdArgs, out);
         }
 
-        return dataModels;
+        return (cmdArgs.isWriteCovariance() || cmdArgs.isUseCovariance())
+                ? applyCovariances(dataModels, cmdArgs, executorService, out)
+                : dataModels;
+    }
+
+    /**
+     * Collapse the identical rows of the discrete datasets into distinct rows
+     * and their counts, and cache their contingency tables, when the search
+     * only counts rows.
+     *
+     * @param dataModels datasets read in
+     * @param cmdArgs command-line arguments
+     * @param out output stream to write message to
+     * @return datasets to search on
+     */
+    private static List<DataModel> applyRowWeights(List<DataModel> dataModels, CmdArgs cmdArgs, PrintStream out) {
+        String reason = getReasonRowsAreNeeded(cmdArgs);
+        if (reason != null) {
+            LogMessages.logMessage(String.format("Counting the rows as they are: %s", reason), LOGGER, out);
+
+            return dataModels;
+        }
+
+        List<Path> dataFiles = cmdArgs.getDatasetFiles();
+        List<DataModel> models = new ArrayList<>(dataModels.size());
+        for (int i = 0; i < dataModels.size(); i++) {
+            DataModel dataModel = dataModels.get(i);
+            if (dataModel instanceof DataSet && ((DataSet) dataModel).isDiscrete()) {
+                String fileName = dataFiles.get(i).getFileName().toString();
+                WeightedDataSet weightedDataSet;
+                if (cmdArgs.isCollapseRows()) {
+                    weightedDataSet = WeightedDataSet.collapse((DataSet) dataModel);
+                    LogMessages.logMessage(String.format("Collapsed %d rows of dataset %s into %d distinct rows.",
+                            weightedDataSet.getSampleSize(), fileName, weightedDataSet.getNumRows()), LOGGER, out);
+                } else {
+                    weightedDataSet = WeightedDataSet.of((DataSet) dataModel);
+                }
+                if (cmdArgs.getContingencyCacheSize() > 0) {
+                    weightedDataSet.cacheContingencyTables(cmdArgs.getContingencyCacheSize() * 1024L * 1024L);
+                    LogMessages.logMessage(String.format("Caching the contingency tables of dataset %s in up to %d MB.", fileName, cmdArgs.getContingencyCacheSize()), LOGGER, out);
+                }
+                models.add(weightedDataSet);
+            } else {
+                models.add(dataModel);
+            }
+        }
+
+        return models;
+    }
+
+    /**
+     * Find why the search needs to count the rows itself rather than through
+     * the counts of the distinct rows and the cached contingency tables.
+     *
+     * @return the reason, or null if the rows can be counted for the search
+     */
+    private static String getReasonRowsAreNeeded(CmdArgs cmdArgs) {
+        Class algorithmClass = cmdArgs.getAlgorithmClass();
+        if (algorithmClass != null && TetradAlgorithms.getInstance().takesMultipleDataset(algorithmClass)) {
+            return String.format("algorithm %s takes the datasets.", TetradAlgorithms.getInstance().getName(algorithmClass));
+        }
+
+        Class testClass = cmdArgs.getTestClass();
+        if (testClass != null && !TetradRowWeights.takesRowWeights(testClass, null)) {
+            return String.format("test %s counts the rows itself.", TetradIndependenceTests.getInstance().getName(testClass));
+        }
+
+        Class scoreClass = cmdArgs.getScoreClass();
+        if (scoreClass != null && !TetradRowWeights.takesRowWeights(null, scoreClass)) {
+            return String.format("score %s counts the rows itself.", TetradScores.getInstance().getName(scoreClass));
+        }
+
+        String numOfResampling = cmdArgs.getParameters().get(Params.NUMBER_RESAMPLING);
+        if (numOfResampling != null && Integer.parseInt(numOfResampling) > 0) {
+            return "resampling needs the rows.";
+        }
+
+        if (cmdArgs.getMetadataFile() != null) {
+            return "the metadata applies to the rows.";
+        }
+
+        return null;
+    }
+
+    /**
+     * Write the covariance matrices of the continuous datasets to the output
+     * directory, and search on them instead of the datasets when the search
+     * only needs the covariances.
+     *
+     * @param dataModels datasets read in
+     * @param cmdArgs command-line arguments
+     * @param executorService threads to compute the covariances with, can be
+     * null
+     * @param out output stream to write message to
+     * @return datasets to search on
+     * @throws IOException when unable to write a covariance file
+     */
+    private static List<DataModel> applyCovariances(List<DataModel> dataModels, CmdArgs cmdArgs, ExecutorService executorService, PrintStream out) throws IOException {
+        boolean isUseCovariance = cmdArgs.isUseCovariance();
+        if (isUseCovariance) {
+            String reason = getReasonDataIsNeeded(cmdArgs);
+            if (reason != null) {
+                LogMessages.logMessage(String.format("Searching on the data instead of the covariance matrix: %s", reason), LOGGER, out);
+                isUseCovariance = false;
+            }
+        }
+
+        CovarianceBuilder covarianceBuilder = new CovarianceBuilder(executorService, cmdArgs.getNumOfThreads());
+        List<Path> dataFiles = cmdArgs.getDatasetFiles();
+        List<DataModel> models = new ArrayList<>(dataModels.size());
+        for (int i = 0; i < dataModels.size(); i++) {
+            DataModel dataModel = dataModels.get(i);
+            String fileName = dataFiles.get(i).getFileName().toString();
+
+            ICovarianceMatrix covarianceMatrix = null;
+            if (dataModel instanceof ICovarianceMatrix) {
+                covarianceMatrix = (ICovarianceMatrix) dataModel;
+            } else if (dataModel instanceof DataSet && ((DataSet) dataModel).isContinuous()) {
+                covarianceMatrix = covarianceBuilder.build((DataSet) dataModel);
+                int sampleSize = covarianceMatrix.getSampleSize();
+                if (sampleSize < 2) {
+                    LogMessages.logMessage(String.format("Dataset %s has a pair of variables present together in fewer than 2 rows.  Its covariance matrix is not used.", fileName), LOGGER, out);
+                    covarianceMatrix = null;
+                } else if (sampleSize < ((DataSet) dataModel).getNumRows()) {
+                    LogMessages.logMessage(String.format("Dataset %s has missing values.  Its covariances are computed from the rows where both variables are present, the fewest being %d.", fileName, sampleSize), LOGGER, out);
+                }
+            }
+
+            if (covarianceMatrix != null && cmdArgs.isWriteCovariance()) {
+                String covarianceFileName = (i > 0)
+                        ? String.format("%s_covariance_%d.bin", cmdArgs.getFilePrefix(), i)
+                        : String.format("%s_covariance.bin", cmdArgs.getFilePrefix());
+                Path covarianceFile = cmdArgs.getOutDirectory().resolve(covarianceFileName);
+                BinaryCovarianceFile.write(covarianceMatrix, covarianceFile);
+                LogMessages.logMessage(String.format("Wrote covariance matrix of dataset %s to file %s.", fileName, covarianceFileName), LOGGER, out);
+            }
+
+            if (covarianceMatrix != null && isUseCovariance && covarianceMatrix != dataModel) {
+                LogMessages.logMessage(String.format("Searching on the covariance matrix of dataset %s.", fileName), LOGGER, out);
+                models.add(covarianceMatrix);
+            } else {
+                models.add(dataModel);
+            }
+        }
+
+        return models;
+    }
+
+    /**
+     * Find why the search needs the data rather than its covariance matrix.
+     *
+     * @return the reason, or null if the covariance matrix is enough
+     */
+    private static String getReasonDataIsNeeded(CmdArgs cmdArgs) {
+        Class algorithmClass = cmdArgs.getAlgorithmClass();
+        if (algorithmClass != null && TetradAlgorithms.getInstance().takesMultipleDataset(algorithmClass)) {
+            return String.format("algorithm %s takes the datasets.", TetradAlgorithms.getInstance().getName(algorithmClass));
+        }
+
+        Class testClass = cmdArgs.getTestClass();
+        if (testClass != null && !TetradIndependenceTests.getInstance().takesCovariance(testClass)) {
+            return String.format("test %s needs the data.", TetradIndependenceTests.getInstance().getName(testClass));
+        }
+
+        Class scoreClass = cmdArgs.getScoreClass();
+        if (scoreClass != null && !TetradScores.getInstance().takesCovariance(scoreClass)) {
+            return String.format("score %s needs the data.", TetradScores.getInstance().getName(scoreClass));
+        }
+
+        String numOfResampling = cmdArgs.getParameters().get(Params.NUMBER_RESAMPLING);
+        if (numOfResampling != null && Integer.parseInt(numOfResampling) > 0) {
+            return "resampling needs the data.";
+        }
+
+        if (cmdArgs.getMetadataFile() != null) {
+            return "the metadata applies to the data.";
+        }
+
+        return null;
+    }
+
+    /**
+     * Copy the metadata, down to its columns. The columns shared by the domain
+     * and the interventional columns stay shared in the copy.
+     */
+    private static Metadata copyOf(Metadata metadata) {
+        Map<ColumnMetadata, ColumnMetadata> columnCopies = new IdentityHashMap<>();
+        Function<ColumnMetadata, ColumnMetadata> copyColumn = column -> (column == null)
+                ? null
+                : columnCopies.computeIfAbsent(column, c -> new ColumnMetadata(c.getName(), c.getColumnNumber(), c.isDiscrete()));
+
+        List<ColumnMetadata> domainColumns = metadata.getDomainColumnns().stream()
+                .map(copyColumn)
+                .collect(Collectors.toList());
+        List<InterventionalColumn> interventionalColumns = metadata.getInterventionalColumns().stream()
+                .map(column -> new InterventionalColumn(copyColumn.apply(column.getValueColumn()), copyColumn.apply(column.getStatusColumn())))
+                .collect(Collectors.toList());
+
+        return new Metadata(domainColumns, interventionalColumns);
+    }
+
+    /**
+     * Store the dataset off the heap or compactly when asked to.
+     */
+    private static DataModel storeData(DataModel dataModel, CmdArgs cmdArgs) throws IOException {
+        if (!(dataModel instanceof DataSet)) {
+            return dataModel;
+        }
+
+        boolean offHeap = cmdArgs.getOffHeapDirectory() != null;
+        if (!(offHeap || cmdArgs.isCompactData())) {
+            return dataModel;
+        }
+
+        return offHeap
+                ? OffHeapDataBox.copyOf((DataSet) dataModel, cmdArgs.getOffHeapDirectory(), cmdArgs.isCompactData())
+                : CompactDataBox.compact((DataSet) dataModel);
     }
 
     /**
-     * Read in covariances files.
+     * Read in covariances files, either text lower-triangular files or
+     * {@link BinaryCovarianceFile binary covariance files}.
      *
      * @param cmdArgs command-line arguments
+     * @param executorService threads to read in the files with, can be null
      * @param out output stream to write message to
      * @return list of datasets read in from files
      * @throws IOException when errors occur during reading file
+     * @throws ValidationException never, covariance files are validated
+     * before they are read in
      */
-    private static List<DataModel> readInCovarianceFile(CmdArgs cmdArgs, PrintStream out) throws IOException {
-        List<DataModel> dataModels = new LinkedList<>();
-
-        for (Path dataFile : cmdArgs.getDatasetFiles()) {
+    private static List<DataModel> readInCovarianceFile(CmdArgs cmdArgs, ExecutorService executorService, PrintStream out) throws IOException, ValidationException {
+        return readInDatasetFiles(cmdArgs, executorService, false, out, (dataFile, chunkExecutorService) -> {
             Delimiter delimiter = cmdArgs.getDelimiter();
             char quoteCharacter = cmdArgs.getQuoteChar();
             String commentMarker = cmdArgs.getCommentMarker();
 
-            CovarianceDataReader dataFileReader = new LowerCovarianceDataFileReader(dataFile, delimiter);
-            dataFileReader.setCommentMarker(commentMarker);
-            dataFileReader.setQuoteCharacter(quoteCharacter);
+            DataModel covarianceMatrix = FileUtils.readUncompressed(dataFile, file -> {
+                if (BinaryCovarianceFile.isBinaryCovarianceFile(file)) {
+                    return BinaryCovarianceFile.read(file);
+                }
+
+                CovarianceDataReader dataFileReader = new LowerCovarianceDataFileReader(file, delimiter);
+                dataFileReader.setCommentMarker(commentMarker);
+                dataFileReader.setQuoteCharacter(quoteCharacter);
+
+                return DataConvertUtils.toCovarianceMatrix(dataFileReader.readInData());
+            });
+
+            return new DatasetFile(covarianceMatrix, null);
+        });
+    }
+
+    /**
+     * Read in the dataset files. When more than one thread is allowed and
+     * there is more than one file, the files are read in at the same time,
+     * each one with a single thread, and as many at a time as the memory
+     * ceiling allows. The datasets and the log messages are in the order of
+     * the files on the command line either way.
+     *
+     * @param cmdArgs command-line arguments
+     * @param executorService threads to read in the files with, can be null
+     * @param logDataInfo true to log the size of the datasets
+     * @param out output stream to write message to
+     * @param fileReader reads in one dataset file
+     * @return list of datasets read in from files
+     * @throws IOException when errors occur during reading file
+     * @throws ValidationException when dataset validation fails
+     */
+    private static List<DataModel> readInDatasetFiles(CmdArgs cmdArgs, ExecutorService executorService, boolean logDataInfo, PrintStream out, DatasetFileReader fileReader) throws IOException, ValidationException {
+        List<DataModel> dataModels = new LinkedList<>();
+
+        List<Path> dataFiles = cmdArgs.getDatasetFiles();
+        if (executorService == null || cmdArgs.getNumOfThreads() < 2 || dataFiles.size() < 2) {
+            for (Path dataFile : dataFiles) {
+                LogMessages.readingFileStart(dataFile, LOGGER, out);
+                DatasetFile datasetFile = fileReader.read(dataFile, executorService);
+                LogMessages.readingFileEnd(dataFile, LOGGER, out);
+
+                dataModels.add(logDatasetFile(dataFile, datasetFile, logDataInfo, out));
+            }
+
+            return dataModels;
+        }
 
-            LogMessages.readingFileStart(dataFile, LOGGER, out);
-            CovarianceData covarianceData = dataFileReader.readInData();
-            LogMessages.readingFileEnd(dataFile, LOGGER, out);
+        int memoryCeiling = getMemoryCeiling();
+        Semaphore memory = new Semaphore(memoryCeiling);
+        List<Future<DatasetFile>> futures = new ArrayList<>(dataFiles.size());
+        try {
+            for (Path dataFile : dataFiles) {
+                int permits = Math.min(memoryCeiling, getMemoryEstimate(dataFile));
+                memory.acquire(permits);
+                futures.add(executorService.submit(() -> {
+                    try {
+                        Date readStart = new Date();
+                        DatasetFile datasetFile = fileReader.read(dataFile, null);
+                        datasetFile.readStart = readStart;
+                        datasetFile.readEnd = new Date();
+
+                        return datasetFile;
+                    } finally {
+                        memory.release(permits);
+                    }
+                }));
+            }
+
+            // log the files in order, as if they were read in one after another
+            for (int i = 0; i < dataFiles.size(); i++) {
+                Path dataFile = dataFiles.get(i);
+                DatasetFile datasetFile;
+                try {
+                    datasetFile = futures.get(i).get();
+                } catch (ExecutionException exception) {
+                    LogMessages.readingFileStart(dataFile, LOGGER, out);
+
+                    Throwable cause = exception.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw new IOException(cause);
+                    }
+                }
+                LogMessages.readingFileStart(dataFile, datasetFile.readStart, LOGGER, out);
+                LogMessages.readingFileEnd(dataFile, datasetFile.readEnd, LOGGER, out);
 
-            dataModels.add(DataConvertUtils.toCovarianceMatrix(covarianceData));
+                dataModels.add(logDatasetFile(dataFile, datasetFile, logDataInfo, out));
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading of dataset files was interrupted.");
+        } finally {
+            futures.forEach(e -> e.cancel(true));
         }
 
         return dataModels;
     }
 
+    /**
+     * Log the validation results and the information of the dataset read in.
+     */
+    private static DataModel logDatasetFile(Path dataFile, DatasetFile datasetFile, boolean logDataInfo, PrintStream out) throws ValidationException {
+        datasetFile.messages.forEach(e -> LogMessages.logMessage(e, LOGGER, out));
+
+        if (datasetFile.validationResults != null) {
+            // group validation results by validation code
+            Map<ValidationCode, List<ValidationResult>> groupedResults = datasetFile.validationResults.stream()
+                    .collect(Collectors.groupingBy(ValidationResult::getCode));
+            LogMessages.dataValidationResults(groupedResults, LOGGER, out);
+
+            if (groupedResults.containsKey(ValidationCode.ERROR)) {
+                throw new ValidationException();
+            }
+        }
+
+        if (logDataInfo) {
+            LogMessages.dataInfo(dataFile, datasetFile.dataModel, LOGGER, out);
+        }
+
+        return datasetFile.dataModel;
+    }
+
+    /**
+     * Get the memory, in kilobytes, that the files being read in at the same
+     * time can take up.
+     */
+    private static int getMemoryCeiling() {
+        long kilobytes = (Runtime.getRuntime().maxMemory() / MEMORY_CEILING_DIVISOR) >> 10;
+
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, kilobytes));
+    }
+
+    /**
+     * Estimate the memory, in kilobytes, taken up while reading in the file.
+     * The values are buffered by column then copied into the dataset, which is
+     * about twice the size of the file. The size of a stream is not known, so
+     * it is read in alone.
+     */
+    private static int getMemoryEstimate(Path dataFile) throws IOException {
+        if (FileUtils.isStream(dataFile)) {
+            return Integer.MAX_VALUE;
+        }
+
+        long kilobytes = (2 * Files.size(dataFile)) >> 10;
+
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, kilobytes));
+    }
+
     /**
      * Read in exclude-variable file.
      *
@@ -274,4 +748,40 @@ public final class DataFiles {
         return variablesToExclude;
     }
 
+    /**
+     * Reads in one dataset file.
+     */
+    @FunctionalInterface
+    private interface DatasetFileReader {
+
+        /**
+         * Read in the dataset file.
+         *
+         * @param dataFile dataset file
+         * @param chunkExecutorService threads to read in the parts of the
+         * file with, null to read it in with the current thread
+         */
+        DatasetFile read(Path dataFile, ExecutorService chunkExecutorService) throws IOException;
+
+    }
+
+    /**
+     * A dataset read in from a file, with what is logged about it.
+     */
+    private static final class DatasetFile {
+
+        private final DataModel dataModel;
+        private final List<ValidationResult> validationResults;
+        private final List<String> messages = new LinkedList<>();
+
+        private Date readStart;
+        private Date readEnd;
+
+        private DatasetFile(DataModel dataModel, List<ValidationResult> validationResults) {
+            this.dataModel = dataModel;
+            this.validationResults = validationResults;
+        }
+
+    }
+
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.data.MixedDataBox;
+import edu.cmu.tetrad.data.VerticalIntDataBox;
+import edu.cmu.tetrad.graph.Node;
+import edu.pitt.dbmi.causal.cmd.CmdArgs;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The class {@code DatasetCache} is a utility class for caching the tabular
+ * datasets read in from files, so that later runs on the same file with the
+ * same reading options skip parsing the text.
+ *
+ * A dataset is cached as a binary file named after a hash of the content of
+ * the dataset file and of the options it was read in with. The file has a
+ * header with the variables, including the categories of the discrete ones,
+ * followed by the values of each column. The columns are memory-mapped when
+ * read back in. Missing values are kept as they are in the dataset, NaN for
+ * continuous values and -99 for discrete values.
+ */
+public final class DatasetCache {
+
+    /**
+     * Extension of the cache files.
+     */
+    public static final String FILE_EXTENSION = ".dataset";
+
+    private static final int MAGIC_NUMBER = 0x43434453;
+
+    /**
+     * Version of the cache file format, part of the hash so that files of an
+     * older format are not read in.
+     */
+    private static final int VERSION = 1;
+
+    private static final byte CONTINUOUS_DATA = 0;
+    private static final byte DISCRETE_DATA = 1;
+    private static final byte MIXED_DATA = 2;
+
+    private static final byte CONTINUOUS_COLUMN = 0;
+    private static final byte DISCRETE_COLUMN = 1;
+
+    /**
+     * Largest part of a column mapped into memory at once.
+     */
+    private static final int MAX_MAP_SIZE = 1 << 30;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private DatasetCache() {
+    }
+
+    /**
+     * Get the cache file of the dataset file read in with the command-line
+     * options.
+     *
+     * @param cacheDirectory directory of the cache files
+     * @param dataFile dataset file
+     * @param cmdArgs command-line arguments
+     * @param variablesToExclude variables not read in
+     * @return cache file, which may not exist yet
+     * @throws IOException when unable to read the dataset or metadata file
+     */
+    public static Path getCacheFile(Path cacheDirectory, Path dataFile, CmdArgs cmdArgs, Set<String> variablesToExclude) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IOException(exception);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), messageDigest))) {
+            out.writeInt(VERSION);
+            digestFile(dataFile, out);
+
+            out.writeUTF(cmdArgs.getDelimiter().name());
+            out.writeChar(cmdArgs.getQuoteChar());
+            out.writeUTF(String.valueOf(cmdArgs.getCommentMarker()));
+            out.writeUTF(String.valueOf(cmdArgs.getMissingValueMarker()));
+            out.writeBoolean(cmdArgs.isHasHeader());
+            out.writeUTF(cmdArgs.getDataType().name());
+            out.writeInt(cmdArgs.getNumCategories());
+            out.writeInt(cmdArgs.getCategorySampleSize());
+            out.writeUTF(String.valueOf(cmdArgs.getRowFilter()));
+            out.writeInt(cmdArgs.getRowLimit());
+            out.writeInt(cmdArgs.getRowSampleSize());
+            if (cmdArgs.getRowSampleSize() > 0) {
+                out.writeLong(cmdArgs.getRowSampleSeed());
+            }
+
+            Set<String> sortedVariables = new TreeSet<>(variablesToExclude);
+            out.writeInt(sortedVariables.size());
+            for (String variable : sortedVariables) {
+                out.writeUTF(variable);
+            }
+
+            Path metadataFile = cmdArgs.getMetadataFile();
+            out.writeBoolean(metadataFile != null);
+            if (metadataFile != null) {
+                digestFile(metadataFile, out);
+            }
+        }
+
+        return cacheDirectory.resolve(HexFormat.of().formatHex(messageDigest.digest()) + FILE_EXTENSION);
+    }
+
+    /**
+     * Read in the dataset from the cache file.
+     *
+     * @param cacheFile cache file
+     * @param isColumnMajor true to keep continuous data column by column
+     * @return dataset, or null if the file is not a cache file
+     * @throws IOException when unable to read the file
+     */
+    public static DataModel read(Path cacheFile, boolean isColumnMajor) throws IOException {
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(12);
+            while (prefix.hasRemaining() && channel.read(prefix) != -1) {
+            }
+            prefix.flip();
+            if (prefix.remaining() < 12 || prefix.getInt() != MAGIC_NUMBER || prefix.getInt() != VERSION) {
+                return null;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(prefix.getInt());
+            while (header.hasRemaining() && channel.read(header) != -1) {
+            }
+            if (header.hasRemaining()) {
+                return null;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array()));
+            byte dataKind = in.readByte();
+            int numOfRows = in.readInt();
+            int numOfCols = in.readInt();
+            List<Node> variables = new ArrayList<>(numOfCols);
+            for (int i = 0; i < numOfCols; i++) {
+                byte columnKind = in.readByte();
+                String name = in.readUTF();
+                if (columnKind == DISCRETE_COLUMN) {
+                    int numOfCategories = in.readInt();
+                    List<String> categories = new ArrayList<>(numOfCategories);
+                    for (int j = 0; j < numOfCategories; j++) {
+                        categories.add(in.readUTF());
+                    }
+                    variables.add(new DiscreteVariable(name, categories));
+                } else {
+                    variables.add(new ContinuousVariable(name));
+                }
+            }
+
+            // make sure the columns are all there before mapping them
+            long position = channel.position();
+            long size = position;
+            for (Node variable : variables) {
+                size += (long) numOfRows * ((variable instanceof DiscreteVariable) ? Integer.BYTES : Double.BYTES);
+            }
+            if (size != channel.size()) {
+                return null;
+            }
+
+            double[][] continuousData = new double[numOfCols][];
+            int[][] discreteData = new int[numOfCols][];
+            for (int i = 0; i < numOfCols; i++) {
+                if (variables.get(i) instanceof DiscreteVariable) {
+                    discreteData[i] = new int[numOfRows];
+                    position = readColumn(channel, position, discreteData[i]);
+                } else {
+                    continuousData[i] = new double[numOfRows];
+                    position = readColumn(channel, position, continuousData[i]);
+                }
+            }
+
+            DataBox dataBox;
+            switch (dataKind) {
+                case CONTINUOUS_DATA:
+                    if (isColumnMajor && numOfCols > 0) {
+                        dataBox = new ColumnMajorDataBox(numOfRows, continuousData);
+                        break;
+                    }
+                    double[][] data = new double[numOfRows][numOfCols];
+                    for (int row = 0; row < numOfRows; row++) {
+                        double[] rowData = data[row];
+                        for (int col = 0; col < numOfCols; col++) {
+                            rowData[col] = continuousData[col][row];
+                        }
+                    }
+                    dataBox = new DoubleDataBox(data);
+                    break;
+                case DISCRETE_DATA:
+                    dataBox = new VerticalIntDataBox(discreteData);
+                    break;
+                case MIXED_DATA:
+                    dataBox = new MixedDataBox(variables, numOfRows, continuousData, discreteData);
+                    break;
+                default:
+                    return null;
+            }
+
+            return new BoxDataSet(dataBox, variables);
+        }
+    }
+
+    /**
+     * Write the dataset to the cache file. The dataset is first written to a
+     * temporary file which is then moved to the cache file, so that the cache
+     * file is never partially written.
+     *
+     * @param dataModel dataset to cache
+     * @param cacheFile cache file
+     * @return false if the dataset cannot be cached
+     * @throws IOException when unable to write the file
+     */
+    public static boolean write(DataModel dataModel, Path cacheFile) throws IOException {
+        if (!(dataModel instanceof BoxDataSet)) {
+            return false;
+        }
+
+        BoxDataSet dataSet = (BoxDataSet) dataModel;
+        DataBox dataBox = dataSet.getDataBox();
+        byte dataKind;
+        if (dataBox instanceof DoubleDataBox || dataBox instanceof ColumnMajorDataBox) {
+            dataKind = CONTINUOUS_DATA;
+        } else if (dataBox instanceof VerticalIntDataBox) {
+            dataKind = DISCRETE_DATA;
+        } else if (dataBox instanceof MixedDataBox) {
+            dataKind = MIXED_DATA;
+        } else {
+            return false;
+        }
+
+        int numOfRows = dataSet.getNumRows();
+        int numOfCols = dataSet.getNumColumns();
+        List<Node> variables = dataSet.getVariables();
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(header)) {
+            out.writeByte(dataKind);
+            out.writeInt(numOfRows);
+            out.writeInt(numOfCols);
+            for (Node variable : variables) {
+                if (variable instanceof DiscreteVariable) {
+                    List<String> categories = ((DiscreteVariable) variable).getCategories();
+                    out.writeByte(DISCRETE_COLUMN);
+                    out.writeUTF(variable.getName());
+                    out.writeInt(categories.size());
+                    for (String category : categories) {
+                        out.writeUTF(category);
+                    }
+                } else {
+                    out.writeByte(CONTINUOUS_COLUMN);
+                    out.writeUTF(variable.getName());
+                }
+            }
+        }
+
+        Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+        Path tempFile = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), cacheFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                buffer.putInt(MAGIC_NUMBER);
+                buffer.putInt(VERSION);
+                buffer.putInt(header.size());
+                buffer.put(header.toByteArray());
+
+                for (int col = 0; col < numOfCols; col++) {
+                    if (variables.get(col) instanceof DiscreteVariable) {
+                        for (int row = 0; row < numOfRows; row++) {
+                            if (buffer.remaining() < Integer.BYTES) {
+                                flush(channel, buffer);
+                            }
+                            buffer.putInt(dataSet.getInt(row, col));
+                        }
+                    } else {
+                        for (int row = 0; row < numOfRows; row++) {
+                            if (buffer.remaining() < Double.BYTES) {
+                                flush(channel, buffer);
+                            }
+                            buffer.putDouble(dataSet.getDouble(row, col));
+                        }
+                    }
+                }
+                flush(channel, buffer);
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        return true;
+    }
+
+    private static void digestFile(Path file, DataOutputStream out) throws IOException {
+        out.writeLong(Files.size(file));
+        try (InputStream in = Files.newInputStream(file, StandardOpenOption.READ)) {
+            in.transferTo(out);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static long readColumn(FileChannel channel, long position, double[] column) throws IOException {
+        int offset = 0;
+        while (offset < column.length) {
+            int length = Math.min(column.length - offset, MAX_MAP_SIZE / Double.BYTES);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, (long) length * Double.BYTES)
+                    .asDoubleBuffer()
+                    .get(column, offset, length);
+            offset += length;
+            position += (long) length * Double.BYTES;
+        }
+
+        return position;
+    }
+
+    private static long readColumn(FileChannel channel, long position, int[] column) throws IOException {
+        int offset = 0;
+        while (offset < column.length) {
+            int length = Math.min(column.length - offset, MAX_MAP_SIZE / Integer.BYTES);
+            channel.map(FileChannel.MapMode.READ_ONLY, position, (long) length * Integer.BYTES)
+                    .asIntBuffer()
+                    .get(column, offset, length);
+            offset += length;
+            position += (long) length * Integer.BYTES;
+        }
+
+        return position;
+    }
+
+}
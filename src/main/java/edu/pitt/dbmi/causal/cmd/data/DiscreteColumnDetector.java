@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.pitt.dbmi.data.reader.DataColumn;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The class {@code DiscreteColumnDetector} finds which columns of mixed data
+ * are discrete from the first rows of the data instead of the whole file.
+ *
+ * A column stops being tracked as soon as it has more categories than allowed
+ * for a discrete column, and the rows stop being read as soon as every column
+ * is settled that way. The columns that are still within the number of
+ * categories at the end of the sample are assumed to be discrete. For the
+ * one with the least evidence, the report gives the largest chance of a new
+ * category per value that is consistent with the sample, using the rule of
+ * three: after k values without a new category, the chance is at most 3/k
+ * with 95% confidence.
+ */
+final class DiscreteColumnDetector {
+
+    private final DataColumn[] dataColumns;
+    private final int numberOfCategories;
+    private final String missingDataMarker;
+
+    private final List<Set<String>> categories;
+    private final int[] numOfValues;
+    private final int[] lastNewCategory;
+
+    private int numOfUnsettled;
+    private int numOfRows;
+
+    /**
+     * Constructor.
+     *
+     * @param dataColumns columns of the data, the generated columns are left
+     * as they are
+     * @param numberOfCategories maximum number of categories a column can
+     * have to be considered discrete
+     * @param missingDataMarker missing data marker
+     */
+    DiscreteColumnDetector(DataColumn[] dataColumns, int numberOfCategories, String missingDataMarker) {
+        this.dataColumns = dataColumns;
+        this.numberOfCategories = numberOfCategories;
+        this.missingDataMarker = missingDataMarker;
+        this.categories = new ArrayList<>(dataColumns.length);
+        this.numOfValues = new int[dataColumns.length];
+        this.lastNewCategory = new int[dataColumns.length];
+        for (DataColumn dataColumn : dataColumns) {
+            if (dataColumn.isGenerated()) {
+                categories.add(null);
+            } else {
+                categories.add(new HashSet<>());
+                numOfUnsettled++;
+            }
+        }
+    }
+
+    /**
+     * Find the discrete columns from at most the given number of rows, then
+     * set the type of the columns.
+     *
+     * @param recordReader reader positioned at the start of the data
+     * @param hasHeader true if the first record is the header
+     * @param sampleSize largest number of rows to read
+     * @return report of the detection
+     * @throws IOException when unable to read the file
+     */
+    List<String> detect(TabularRecordReader recordReader, boolean hasHeader, int sampleSize) throws IOException {
+        List<String> values = new ArrayList<>();
+        if (hasHeader) {
+            recordReader.readRecord(values);
+        }
+        while (numOfRows < sampleSize && numOfUnsettled > 0 && recordReader.readRecord(values)) {
+            addRecord(values);
+        }
+
+        for (int col = 0; col < dataColumns.length; col++) {
+            if (!dataColumns[col].isGenerated()) {
+                dataColumns[col].setDiscrete(categories.get(col) != null);
+            }
+        }
+
+        return getReport();
+    }
+
+    private void addRecord(List<String> values) {
+        numOfRows++;
+
+        int numOfValuesInRecord = values.size();
+        for (int col = 0; col < dataColumns.length; col++) {
+            Set<String> columnCategories = categories.get(col);
+            int colNum = dataColumns[col].getColumnNumber();
+            if (columnCategories == null || colNum > numOfValuesInRecord) {
+                continue;
+            }
+
+            String value = values.get(colNum - 1);
+            if (value.isEmpty() || value.equals(missingDataMarker)) {
+                continue;
+            }
+
+            numOfValues[col]++;
+            if (columnCategories.add(value)) {
+                lastNewCategory[col] = numOfValues[col];
+                if (columnCategories.size() > numberOfCategories) {
+                    // too many categories for a discrete column
+                    categories.set(col, null);
+                    numOfUnsettled--;
+                }
+            }
+        }
+    }
+
+    private List<String> getReport() {
+        List<String> report = new LinkedList<>();
+
+        int numOfDiscrete = 0;
+        int numOfContinuous = 0;
+        int leastEvidenceCol = -1;
+        int leastEvidence = Integer.MAX_VALUE;
+        for (int col = 0; col < dataColumns.length; col++) {
+            if (dataColumns[col].isGenerated()) {
+                continue;
+            }
+
+            if (categories.get(col) == null) {
+                numOfContinuous++;
+            } else {
+                numOfDiscrete++;
+
+                // number of values since the last new category
+                int evidence = numOfValues[col] - lastNewCategory[col];
+                if (evidence < leastEvidence) {
+                    leastEvidence = evidence;
+                    leastEvidenceCol = col;
+                }
+            }
+        }
+
+        report.add(String.format("Detected %d discrete and %d continuous columns from the first %d rows.", numOfDiscrete, numOfContinuous, numOfRows));
+        if (leastEvidenceCol >= 0) {
+            DataColumn dataColumn = dataColumns[leastEvidenceCol];
+            if (numOfValues[leastEvidenceCol] == 0) {
+                report.add(String.format("Column %s (column %d) is assumed discrete, but it has no values in the sample.  Use a larger sample to be confident of its type.",
+                        dataColumn.getName(), dataColumn.getColumnNumber()));
+            } else if (leastEvidence == 0) {
+                report.add(String.format("Column %s (column %d) is assumed discrete with %d categories, but its last value in the sample is a new category.  Use a larger sample to be confident of its type.",
+                        dataColumn.getName(), dataColumn.getColumnNumber(), categories.get(leastEvidenceCol).size()));
+            } else {
+                report.add(String.format("Column %s (column %d) has the least evidence of being discrete: %d categories and no new category in its last %d values.  A new category is expected in at most %.2f%% of its values (95%% confidence).",
+                        dataColumn.getName(), dataColumn.getColumnNumber(), categories.get(leastEvidenceCol).size(), leastEvidence, Math.min(100.0, 300.0 / leastEvidence)));
+            }
+        }
+
+        return report;
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+/**
+ * The interface {@code Kernels} has the numeric loops run over the data, each
+ * on a part of one or two arrays of doubles.
+ */
+interface Kernels {
+
+    /**
+     * Sum the values x[from] to x[to - 1].
+     *
+     * @param x values
+     * @param from first index
+     * @param to index after the last one
+     * @return sum of the values
+     */
+    double sum(double[] x, int from, int to);
+
+    /**
+     * Dot product of x and y from index from to index to - 1.
+     *
+     * @param x values
+     * @param y values
+     * @param from first index
+     * @param to index after the last one
+     * @return dot product
+     */
+    double dot(double[] x, double[] y, int from, int to);
+
+    /**
+     * Subtract a value from x[from] to x[to - 1].
+     *
+     * @param x values, updated
+     * @param value value to subtract
+     * @param from first index
+     * @param to index after the last one
+     */
+    void subtract(double[] x, double value, int from, int to);
+
+    /**
+     * Subtract y from x, x[i] -= y[i], for the first length values.
+     *
+     * @param x values, updated
+     * @param y values to subtract
+     * @param length number of values
+     */
+    void subtract(double[] x, double[] y, int length);
+
+    /**
+     * Add a multiple of x to y, y[i] += a * x[i], for the first length
+     * values.
+     *
+     * @param a multiplier
+     * @param x values
+     * @param y values, updated
+     * @param length number of values
+     */
+    void addMultiple(double a, double[] x, double[] y, int length);
+
+}
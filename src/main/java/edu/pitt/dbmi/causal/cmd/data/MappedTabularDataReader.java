@@ -0,0 +1,400 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.DataType;
+import edu.pitt.dbmi.data.reader.Data;
+import edu.pitt.dbmi.data.reader.DataColumn;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.metadata.Metadata;
+import edu.pitt.dbmi.data.reader.validation.ValidationResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class {@code MappedTabularDataReader} reads in a tabular dataset by
+ * memory-mapping the file and reading different parts of it at the same time.
+ * The file is split on line boundaries into chunks. The chunks are first
+ * scanned to count their lines and to find whether they start within a
+ * quote, then their values are read in parallel. The data produced is the same
+ * as the one produced by the {@link SinglePassTabularDataReader}.
+ */
+public final class MappedTabularDataReader {
+
+    /**
+     * Smallest chunk of the file read in by a thread.
+     */
+    private static final long MIN_CHUNK_SIZE = 1L << 22;
+
+    /**
+     * Largest chunk of the file read in by a thread. A chunk is mapped in one
+     * piece so it cannot be larger than 2 GB.
+     */
+    private static final long MAX_CHUNK_SIZE = 1L << 28;
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final Path dataFile;
+    private final Delimiter delimiter;
+    private final ExecutorService executorService;
+    private final int numberOfThreads;
+
+    private char quoteCharacter;
+    private String commentMarker;
+    private String missingDataMarker;
+    private int categorySampleSize;
+    private boolean isColumnMajor;
+    private int maxNumOfMsg;
+    private List<String> columnTypeReport;
+    private RowFilter rowFilter;
+    private String rowSelectionReport;
+    private long chunkSize;
+
+    /**
+     * Constructor.
+     *
+     * @param dataFile tabular data file
+     * @param delimiter data delimiter
+     * @param executorService threads to read the chunks of the file with
+     * @param numberOfThreads number of threads of the executor service
+     */
+    public MappedTabularDataReader(Path dataFile, Delimiter delimiter, ExecutorService executorService, int numberOfThreads) {
+        this.dataFile = dataFile;
+        this.delimiter = delimiter;
+        this.executorService = executorService;
+        this.numberOfThreads = numberOfThreads;
+        this.quoteCharacter = (char) -1;
+        this.commentMarker = "";
+        this.missingDataMarker = "";
+        this.maxNumOfMsg = TabularDataBuilder.DEFAULT_MAX_NUM_OF_MESSAGES;
+    }
+
+    /**
+     * Read in the dataset.
+     *
+     * @param namesOfColumnsToExclude names of the columns not to read in,
+     * ignored when the data has no header
+     * @param dataType continuous, discrete, or mixed
+     * @param numberOfCategories maximum number of categories a column of mixed
+     * data can have to be considered discrete
+     * @param hasHeader true if the first line of the data is the header
+     * @param metadata data metadata, can be null
+     * @return data read in
+     * @throws IOException when unable to read the file
+     */
+    public Data read(Set<String> namesOfColumnsToExclude, DataType dataType, int numberOfCategories, boolean hasHeader, Metadata metadata) throws IOException {
+        return read(namesOfColumnsToExclude, dataType, numberOfCategories, hasHeader, metadata, null);
+    }
+
+    /**
+     * Read in and validate the dataset. Problems in the data are added to the
+     * validation results instead of being thrown.
+     *
+     * @param namesOfColumnsToExclude names of the columns not to read in,
+     * ignored when the data has no header
+     * @param dataType continuous, discrete, or mixed
+     * @param numberOfCategories maximum number of categories a column of mixed
+     * data can have to be considered discrete
+     * @param hasHeader true if the first line of the data is the header
+     * @param metadata data metadata, can be null
+     * @param validationResults list to add the validation results to, data is
+     * not validated if null
+     * @return data read in, or null if the validation found any error
+     * @throws IOException when unable to read the file
+     */
+    public Data read(Set<String> namesOfColumnsToExclude, DataType dataType, int numberOfCategories, boolean hasHeader, Metadata metadata, List<ValidationResult> validationResults) throws IOException {
+        try {
+            List<String> values = new ArrayList<>();
+            int headerLineNum;
+            try (InputStream in = Files.newInputStream(dataFile, StandardOpenOption.READ);
+                 TabularRecordReader recordReader = new TabularRecordReader(in, delimiter, quoteCharacter, commentMarker)) {
+                if (!recordReader.readRecord(values)) {
+                    return null;
+                }
+                headerLineNum = recordReader.getLineNumber();
+            }
+
+            int filterColNum = (rowFilter == null) ? 0 : rowFilter.getColumnNumber(values, hasHeader);
+            DataColumn[] dataColumns = TabularDataBuilder.createDataColumns(values, headerLineNum, hasHeader, namesOfColumnsToExclude, quoteCharacter, dataType, metadata);
+            boolean isTypeDetected = (dataType == DataType.Mixed);
+            if (isTypeDetected && categorySampleSize > 0) {
+                try (InputStream sampleIn = Files.newInputStream(dataFile, StandardOpenOption.READ);
+                     TabularRecordReader sampleReader = new TabularRecordReader(sampleIn, delimiter, quoteCharacter, commentMarker)) {
+                    DiscreteColumnDetector detector = new DiscreteColumnDetector(dataColumns, numberOfCategories, missingDataMarker);
+                    columnTypeReport = detector.detect(sampleReader, hasHeader, categorySampleSize);
+                }
+                isTypeDetected = false;
+            }
+            TabularDataBuilder dataBuilder = new TabularDataBuilder(dataColumns, isTypeDetected, numberOfCategories, missingDataMarker, validationResults != null);
+            dataBuilder.setColumnMajor(isColumnMajor);
+            dataBuilder.setMaximumNumberOfMessages(maxNumOfMsg);
+
+            List<MappedByteBuffer> buffers = mapChunks();
+            int numOfChunks = buffers.size();
+
+            // find where each chunk starts
+            int[] numOfLines = new int[numOfChunks];
+            boolean[] hasOpenQuote = new boolean[numOfChunks];
+            List<Future<Integer>> scans = new ArrayList<>(numOfChunks);
+            for (int i = 0; i < numOfChunks; i++) {
+                int chunkIndex = i;
+                ByteBuffer buffer = buffers.get(i).duplicate();
+                scans.add(executorService.submit(() -> {
+                    TabularRecordReader recordReader = new TabularRecordReader(buffer, delimiter, quoteCharacter, commentMarker, 0, false);
+                    recordReader.skipToEnd();
+                    numOfLines[chunkIndex] = recordReader.getCurrentLineNumber();
+                    hasOpenQuote[chunkIndex] = recordReader.isQuoted();
+
+                    return chunkIndex;
+                }));
+            }
+            getAll(scans);
+
+            int[] lineNumbers = new int[numOfChunks];
+            boolean[] isQuoted = new boolean[numOfChunks];
+            lineNumbers[0] = 1;
+            for (int i = 1; i < numOfChunks; i++) {
+                lineNumbers[i] = lineNumbers[i - 1] + numOfLines[i - 1];
+                isQuoted[i] = isQuoted[i - 1] ^ hasOpenQuote[i - 1];
+            }
+
+            // read in the chunks, only the rows selected are parsed
+            AtomicInteger numOfRowsRead = new AtomicInteger();
+            List<Future<TabularDataBuilder.Chunk>> reads = new ArrayList<>(numOfChunks);
+            for (int i = 0; i < numOfChunks; i++) {
+                ByteBuffer buffer = buffers.get(i);
+                int firstLineNum = lineNumbers[i];
+                boolean isChunkQuoted = isQuoted[i];
+                reads.add(executorService.submit(() -> {
+                    TabularRecordReader recordReader = new TabularRecordReader(buffer, delimiter, quoteCharacter, commentMarker, firstLineNum, isChunkQuoted);
+                    List<String> record = new ArrayList<>();
+                    TabularDataBuilder.Chunk chunk = dataBuilder.createChunk();
+                    int numOfChunkRowsRead = 0;
+                    while (recordReader.readRecord(record)) {
+                        int recordLineNum = recordReader.getLineNumber();
+                        if (!(hasHeader && recordLineNum == headerLineNum)) {
+                            numOfChunkRowsRead++;
+                            if (rowFilter == null || rowFilter.test(record, filterColNum, missingDataMarker)) {
+                                chunk.addRecord(record, recordLineNum);
+                            }
+                        }
+                    }
+                    numOfRowsRead.addAndGet(numOfChunkRowsRead);
+
+                    return chunk;
+                }));
+            }
+
+            List<TabularDataBuilder.Chunk> chunks = getAll(reads);
+            rowSelectionReport = (rowFilter == null)
+                    ? null
+                    : SinglePassTabularDataReader.createRowSelectionReport(chunks.stream().mapToInt(TabularDataBuilder.Chunk::getNumberOfRows).sum(), numOfRowsRead.get(), rowFilter, null);
+
+            return dataBuilder.build(chunks, metadata, validationResults);
+        } catch (IOException exception) {
+            if (validationResults == null || exception instanceof InterruptedIOException) {
+                throw exception;
+            }
+            validationResults.add(TabularDataBuilder.createFileErrorResult(dataFile));
+
+            return null;
+        }
+    }
+
+    /**
+     * Split the file into chunks on line boundaries and map them into memory.
+     */
+    private List<MappedByteBuffer> mapChunks() throws IOException {
+        List<MappedByteBuffer> buffers = new LinkedList<>();
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long maxChunkSize = (chunkSize > 0)
+                    ? chunkSize
+                    : Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (4L * numberOfThreads)));
+
+            long start = 0;
+            do {
+                long end = (size - start > maxChunkSize)
+                        ? findLineEnd(channel, start + maxChunkSize)
+                        : size;
+                if (end - start > Integer.MAX_VALUE) {
+                    String errMsg = String.format("Line starting at byte %d of file %s is too long.", start + maxChunkSize, dataFile.getFileName());
+                    throw new IOException(errMsg);
+                }
+                buffers.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                start = end;
+            } while (start < size);
+        }
+
+        return new ArrayList<>(buffers);
+    }
+
+    /**
+     * Find the position right after the end of the line at the given position.
+     */
+    private long findLineEnd(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long size = channel.size();
+        boolean isCarriageReturn = false;
+        while (position < size) {
+            buffer.clear();
+            int len = channel.read(buffer, position);
+            for (int i = 0; i < len; i++) {
+                byte currChar = buffer.get(i);
+                if (isCarriageReturn) {
+                    return (currChar == LINE_FEED) ? position + i + 1 : position + i;
+                } else if (currChar == LINE_FEED) {
+                    return position + i + 1;
+                } else if (currChar == CARRIAGE_RETURN) {
+                    isCarriageReturn = true;
+                }
+            }
+            position += len;
+        }
+
+        return size;
+    }
+
+    private <T> List<T> getAll(List<Future<T>> futures) throws IOException {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException exception) {
+            futures.forEach(e -> e.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Reading of file %s was interrupted.", dataFile.getFileName()));
+        } catch (ExecutionException exception) {
+            // the first chunk that fails has the first error of the file
+            futures.forEach(e -> e.cancel(true));
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+
+        return results;
+    }
+
+    public void setQuoteCharacter(char quoteCharacter) {
+        this.quoteCharacter = quoteCharacter;
+    }
+
+    public void setCommentMarker(String commentMarker) {
+        this.commentMarker = (commentMarker == null) ? "" : commentMarker.trim();
+    }
+
+    public void setMissingDataMarker(String missingDataMarker) {
+        this.missingDataMarker = (missingDataMarker == null) ? "" : missingDataMarker.trim();
+    }
+
+    /**
+     * Find the discrete columns of mixed data from at most the given number
+     * of rows at the start of the file, instead of from all of them. By
+     * default, all the rows are used.
+     *
+     * @param categorySampleSize number of rows, 0 for all the rows
+     */
+    public void setCategorySampleSize(int categorySampleSize) {
+        this.categorySampleSize = categorySampleSize;
+    }
+
+    /**
+     * Get the report of the detection of the discrete columns from a sample
+     * of the rows.
+     *
+     * @return report of the last read, or null if no sample was used
+     */
+    public List<String> getColumnTypeReport() {
+        return columnTypeReport;
+    }
+
+    /**
+     * Read in only the rows that match the filter.
+     *
+     * @param rowFilter row filter, null to read in all the rows
+     */
+    public void setRowFilter(RowFilter rowFilter) {
+        this.rowFilter = rowFilter;
+    }
+
+    /**
+     * Set the largest number of problems reported when validating. The
+     * problems past it are counted but not reported one by one. By default,
+     * at most 100 problems are reported.
+     *
+     * @param maxNumOfMsg largest number of problems reported
+     */
+    public void setMaximumNumberOfMessages(int maxNumOfMsg) {
+        this.maxNumOfMsg = maxNumOfMsg;
+    }
+
+    /**
+     * Keep continuous data column by column instead of turning it into rows.
+     *
+     * @param isColumnMajor true to read continuous data in as
+     * {@link ColumnMajorTabularData}
+     */
+    public void setColumnMajor(boolean isColumnMajor) {
+        this.isColumnMajor = isColumnMajor;
+    }
+
+    /**
+     * Get the report of the rows selected.
+     *
+     * @return report of the last read, or null if all the rows were read in
+     */
+    public String getRowSelectionReport() {
+        return rowSelectionReport;
+    }
+
+    /**
+     * Set the largest number of bytes of a chunk. By default, the chunk size
+     * depends on the file size and on the number of threads.
+     *
+     * @param chunkSize largest number of bytes of a chunk
+     */
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The class {@code NumericKernels} chooses how the numeric loops over the data
+ * are run: one value at a time, or with the Vector API of the incubator module
+ * {@code jdk.incubator.vector}. The scalar loops are used unless the vectorized
+ * ones are asked for, the module is present (java --add-modules
+ * jdk.incubator.vector), and they give the same results as the scalar loops on
+ * a check made when they are switched on. The sums may differ in the last bits
+ * since the vectorized loops add the values in another order.
+ */
+public final class NumericKernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * Largest difference allowed between the sums of the two kernels,
+     * relative to the sum of the absolute values.
+     */
+    private static final double TOLERANCE = 1e-12;
+
+    private static final Kernels SCALAR_KERNELS = new ScalarKernels();
+
+    private static volatile Kernels kernels = SCALAR_KERNELS;
+
+    private NumericKernels() {
+    }
+
+    /**
+     * Determine if the Vector API is available.
+     *
+     * @return true if the module jdk.incubator.vector is present
+     */
+    public static boolean isVectorApiAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    /**
+     * Switch the vectorized loops on or off.
+     *
+     * @param isVectorized true to use the vectorized loops when they are
+     * available
+     * @return true if the vectorized loops are used
+     */
+    public static boolean setVectorized(boolean isVectorized) {
+        Kernels vectorKernels = (isVectorized && isVectorApiAvailable()) ? new VectorKernels() : null;
+        kernels = (vectorKernels != null && isEqual(vectorKernels, SCALAR_KERNELS))
+                ? vectorKernels
+                : SCALAR_KERNELS;
+
+        return kernels != SCALAR_KERNELS;
+    }
+
+    /**
+     * Determine if the vectorized loops are used.
+     *
+     * @return true if the vectorized loops are used
+     */
+    public static boolean isVectorized() {
+        return kernels != SCALAR_KERNELS;
+    }
+
+    /**
+     * Get the kernels in use.
+     *
+     * @return kernels
+     */
+    static Kernels get() {
+        return kernels;
+    }
+
+    /**
+     * Check that two kernels give the same results on random values, over
+     * lengths that do and do not fill whole vectors.
+     */
+    private static boolean isEqual(Kernels kernels, Kernels reference) {
+        Random random = new Random(23);
+        for (int length = 1; length <= 67; length += 11) {
+            double[] x = random.doubles(length, -1e3, 1e3).toArray();
+            double[] y = random.doubles(length, -1e3, 1e3).toArray();
+            double a = random.nextDouble();
+            int from = length / 3;
+
+            double[] absX = Arrays.stream(x).map(Math::abs).toArray();
+            double sumOfAbs = reference.sum(absX, from, length);
+            if (!isClose(kernels.sum(x, from, length), reference.sum(x, from, length), sumOfAbs)) {
+                return false;
+            }
+
+            double dotOfAbs = reference.dot(absX, Arrays.stream(y).map(Math::abs).toArray(), from, length);
+            if (!isClose(kernels.dot(x, y, from, length), reference.dot(x, y, from, length), dotOfAbs)) {
+                return false;
+            }
+
+            double[] actual = x.clone();
+            double[] expected = x.clone();
+            kernels.subtract(actual, a, from, length);
+            reference.subtract(expected, a, from, length);
+            if (!Arrays.equals(actual, expected)) {
+                return false;
+            }
+
+            kernels.subtract(actual, y, length);
+            reference.subtract(expected, y, length);
+            if (!Arrays.equals(actual, expected)) {
+                return false;
+            }
+
+            kernels.addMultiple(a, y, actual, length);
+            reference.addMultiple(a, y, expected, length);
+            if (!Arrays.equals(actual, expected)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isClose(double actual, double expected, double scale) {
+        return Math.abs(actual - expected) <= TOLERANCE * Math.max(scale, Double.MIN_NORMAL);
+    }
+
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.data.MixedDataBox;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import edu.cmu.tetrad.graph.Node;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class {@code OffHeapDataBox} stores the columns of a dataset outside of
+ * the Java heap, in a scratch file mapped into memory. The garbage collector
+ * does not have to scan the values, and the operating system pages them in
+ * and out as they are used, so the data can be larger than the heap.
+ *
+ * A column is stored as doubles, or as floats when compact, if it is
+ * continuous, and as bytes, shorts or ints, depending on its number of
+ * categories, if it is discrete. The scratch file is deleted once mapped, so
+ * it is gone when the data box is no longer used or the program ends.
+ *
+ * The box is a {@link VerticalDoubleDataBox} so that Tetrad can compute the
+ * covariances of a continuous dataset on the fly from it. Tetrad then copies
+ * the columns onto the heap for the duration of the search, the same as it
+ * copies the rows of its own row-major box.
+ */
+public final class OffHeapDataBox extends VerticalDoubleDataBox {
+
+    private static final long serialVersionUID = 23L;
+
+    private static final int MISSING_CODE = -99;
+
+    /**
+     * Number of rows of a column mapped at once, a power of two so that a
+     * mapping is at most 1 GB.
+     */
+    private static final int SEGMENT_SHIFT = 27;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private enum ColumnType {
+        DOUBLE(8), FLOAT(4), BYTE(1), SHORT(2), INT(4);
+
+        private final int width;
+
+        ColumnType(int width) {
+            this.width = width;
+        }
+
+    }
+
+    private final List<Node> variables;
+    private final int numOfRows;
+    private final Path directory;
+    private final boolean isCompact;
+
+    private final transient ColumnType[] columnTypes;
+
+    /**
+     * Mapped segments of each column.
+     */
+    private final transient ByteBuffer[][] columns;
+
+    /**
+     * Constructor. All the values are missing.
+     *
+     * @param variables continuous or discrete variables of the columns
+     * @param numOfRows number of rows
+     * @param directory directory of the scratch file
+     * @param isCompact true to store continuous values as floats
+     * @throws IOException whenever unable to create the scratch file
+     */
+    public OffHeapDataBox(List<Node> variables, int numOfRows, Path directory, boolean isCompact) throws IOException {
+        this(variables, numOfRows, directory, isCompact, true);
+    }
+
+    private OffHeapDataBox(List<Node> variables, int numOfRows, Path directory, boolean isCompact, boolean isMissing) throws IOException {
+        // the values are stored in the mapped columns, not in the parent box
+        super(new double[1][0]);
+
+        if (variables == null) {
+            throw new IllegalArgumentException("Parameter variables cannot be null.");
+        }
+        if (numOfRows < 0) {
+            throw new IllegalArgumentException("Parameter numOfRows cannot be negative.");
+        }
+        if (directory == null) {
+            throw new IllegalArgumentException("Parameter directory cannot be null.");
+        }
+
+        this.variables = variables;
+        this.numOfRows = numOfRows;
+        this.directory = directory;
+        this.isCompact = isCompact;
+        this.columnTypes = getColumnTypes(variables, isCompact);
+        this.columns = map(directory, numOfRows, columnTypes);
+
+        if (isMissing) {
+            for (int col = 0; col < columnTypes.length; col++) {
+                Number missingValue = (columnTypes[col] == ColumnType.DOUBLE || columnTypes[col] == ColumnType.FLOAT)
+                        ? null
+                        : MISSING_CODE;
+                for (int row = 0; row < numOfRows; row++) {
+                    set(row, col, missingValue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the values of the dataset into a dataset stored off the heap.
+     *
+     * @param dataSet continuous, discrete or mixed dataset
+     * @param directory directory of the scratch file
+     * @param isCompact true to store continuous values as floats
+     * @return dataset with the same variables and values, stored off the heap
+     * @throws IOException whenever unable to create the scratch file
+     */
+    public static DataSet copyOf(DataSet dataSet, Path directory, boolean isCompact) throws IOException {
+        List<Node> variables = dataSet.getVariables();
+        int numOfRows = dataSet.getNumRows();
+        OffHeapDataBox dataBox = new OffHeapDataBox(variables, numOfRows, directory, isCompact, false);
+        for (int col = 0; col < variables.size(); col++) {
+            if (variables.get(col) instanceof ContinuousVariable) {
+                for (int row = 0; row < numOfRows; row++) {
+                    dataBox.setDouble(row, col, dataSet.getDouble(row, col));
+                }
+            } else {
+                for (int row = 0; row < numOfRows; row++) {
+                    dataBox.setCode(row, col, dataSet.getInt(row, col));
+                }
+            }
+        }
+
+        return new BoxDataSet(dataBox, variables);
+    }
+
+    /**
+     * Determine if a column is continuous.
+     *
+     * @param col column index
+     * @return true if the column holds continuous values
+     */
+    public boolean isContinuous(int col) {
+        return columnTypes[col] == ColumnType.DOUBLE || columnTypes[col] == ColumnType.FLOAT;
+    }
+
+    /**
+     * Copy the values of a continuous column, with NaN for the missing values.
+     *
+     * @param col column index
+     * @param values array of at least as many values as there are rows
+     */
+    public void getDoubles(int col, double[] values) {
+        if (!isContinuous(col)) {
+            throw new IllegalArgumentException(String.format("Column %d is not continuous.", col));
+        }
+
+        int row = 0;
+        for (ByteBuffer segment : columns[col]) {
+            if (columnTypes[col] == ColumnType.DOUBLE) {
+                int length = segment.capacity() / Double.BYTES;
+                segment.asDoubleBuffer().get(0, values, row, length);
+                row += length;
+            } else {
+                for (int i = 0, length = segment.capacity() / Float.BYTES; i < length; i++) {
+                    values[row++] = segment.getFloat(i * Float.BYTES);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int numRows() {
+        return numOfRows;
+    }
+
+    @Override
+    public int numCols() {
+        return variables.size();
+    }
+
+    @Override
+    public void set(int row, int col, Number value) {
+        if (isContinuous(col)) {
+            setDouble(row, col, (value == null) ? Double.NaN : value.doubleValue());
+        } else {
+            setCode(row, col, (value == null) ? MISSING_CODE : value.intValue());
+        }
+    }
+
+    @Override
+    public Number get(int row, int col) {
+        if (col >= variables.size() || row >= numOfRows) {
+            return null;
+        }
+
+        ByteBuffer segment = columns[col][row >>> SEGMENT_SHIFT];
+        int index = row & SEGMENT_MASK;
+        switch (columnTypes[col]) {
+            case DOUBLE:
+                double value = segment.getDouble(index * Double.BYTES);
+                return Double.isNaN(value) ? null : value;
+            case FLOAT:
+                float floatValue = segment.getFloat(index * Float.BYTES);
+                return Float.isNaN(floatValue) ? null : Double.valueOf(floatValue);
+            default:
+                int code = getCode(segment, index, columnTypes[col]);
+
+                // small codes are cached by Integer.valueOf
+                return (code == MISSING_CODE) ? null : Integer.valueOf(code);
+        }
+    }
+
+    @Override
+    public DataBox copy() {
+        return viewSelection(allRows(), allCols());
+    }
+
+    @Override
+    public DataBox like() {
+        try {
+            return new OffHeapDataBox(variables, numOfRows, directory, isCompact);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        List<Node> newVariables = new ArrayList<>(cols.length);
+        for (int col : cols) {
+            newVariables.add(variables.get(col));
+        }
+
+        OffHeapDataBox dataBox;
+        try {
+            dataBox = new OffHeapDataBox(newVariables, rows.length, directory, isCompact, false);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        for (int j = 0; j < cols.length; j++) {
+            int col = cols[j];
+            for (int i = 0; i < rows.length; i++) {
+                dataBox.set(i, j, get(rows[i], col));
+            }
+        }
+
+        return dataBox;
+    }
+
+    /**
+     * Get the values of each column as doubles, with NaN for the missing
+     * values. The arrays are copied onto the heap, so the caller is free to
+     * change them.
+     *
+     * @return values of each column
+     */
+    @Override
+    public double[][] getVariableVectors() {
+        double[][] vectors = new double[variables.size()][numOfRows];
+        for (int col = 0; col < vectors.length; col++) {
+            double[] vector = vectors[col];
+            if (isContinuous(col)) {
+                getDoubles(col, vector);
+            } else {
+                for (int row = 0; row < numOfRows; row++) {
+                    Number value = get(row, col);
+                    vector[row] = (value == null) ? Double.NaN : value.doubleValue();
+                }
+            }
+        }
+
+        return vectors;
+    }
+
+    /**
+     * The mapped columns cannot be serialized, the values are serialized in a
+     * data box of Tetrad instead.
+     */
+    private Object writeReplace() {
+        MixedDataBox dataBox = new MixedDataBox(variables, numOfRows);
+        for (int col = 0; col < variables.size(); col++) {
+            for (int row = 0; row < numOfRows; row++) {
+                dataBox.set(row, col, get(row, col));
+            }
+        }
+
+        return dataBox;
+    }
+
+    private void setDouble(int row, int col, double value) {
+        ByteBuffer segment = columns[col][row >>> SEGMENT_SHIFT];
+        int index = row & SEGMENT_MASK;
+        if (columnTypes[col] == ColumnType.DOUBLE) {
+            segment.putDouble(index * Double.BYTES, value);
+        } else {
+            segment.putFloat(index * Float.BYTES, (float) value);
+        }
+    }
+
+    private void setCode(int row, int col, int code) {
+        ByteBuffer segment = columns[col][row >>> SEGMENT_SHIFT];
+        int index = row & SEGMENT_MASK;
+        switch (columnTypes[col]) {
+            case BYTE:
+                if (code < Byte.MIN_VALUE || code > Byte.MAX_VALUE) {
+                    throw new IllegalArgumentException(String.format("Category code %d is out of range for column %d.", code, col));
+                }
+                segment.put(index, (byte) code);
+                break;
+            case SHORT:
+                if (code < Short.MIN_VALUE || code > Short.MAX_VALUE) {
+                    throw new IllegalArgumentException(String.format("Category code %d is out of range for column %d.", code, col));
+                }
+                segment.putShort(index * Short.BYTES, (short) code);
+                break;
+            default:
+                segment.putInt(index * Integer.BYTES, code);
+        }
+    }
+
+    private static int getCode(ByteBuffer segment, int index, ColumnType columnType) {
+        switch (columnType) {
+            case BYTE:
+                return segment.get(index);
+            case SHORT:
+                return segment.getShort(index * Short.BYTES);
+            default:
+                return segment.getInt(index * Integer.BYTES);
+        }
+    }
+
+    private static ColumnType[] getColumnTypes(List<Node> variables, boolean isCompact) {
+        ColumnType[] columnTypes = new ColumnType[variables.size()];
+        for (int col = 0; col < columnTypes.length; col++) {
+            Node variable = variables.get(col);
+            if (variable instanceof ContinuousVariable) {
+                columnTypes[col] = isCompact ? ColumnType.FLOAT : ColumnType.DOUBLE;
+            } else if (variable instanceof DiscreteVariable) {
+                int numOfCategories = ((DiscreteVariable) variable).getNumCategories();
+                if (numOfCategories <= Byte.MAX_VALUE) {
+                    columnTypes[col] = ColumnType.BYTE;
+                } else if (numOfCategories <= Short.MAX_VALUE) {
+                    columnTypes[col] = ColumnType.SHORT;
+                } else {
+                    columnTypes[col] = ColumnType.INT;
+                }
+            } else {
+                String errMsg = String.format("Variable %s at index %d is neither continuous nor discrete.", variable.getName(), col);
+                throw new IllegalArgumentException(errMsg);
+            }
+        }
+
+        return columnTypes;
+    }
+
+    /**
+     * Map the columns, one after another, into a new scratch file. The file is
+     * deleted when its channel is closed but stays mapped.
+     */
+    private static ByteBuffer[][] map(Path directory, int numOfRows, ColumnType[] columnTypes) throws IOException {
+        Files.createDirectories(directory);
+        Path scratchFile = Files.createTempFile(directory, "causal-cmd-", ".data");
+
+        int numOfSegments = (numOfRows + SEGMENT_MASK) >>> SEGMENT_SHIFT;
+        ByteBuffer[][] columns = new ByteBuffer[columnTypes.length][numOfSegments];
+        try (FileChannel channel = FileChannel.open(scratchFile, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+            long position = 0;
+            for (int col = 0; col < columnTypes.length; col++) {
+                int width = columnTypes[col].width;
+                for (int segment = 0; segment < numOfSegments; segment++) {
+                    long size = (long) Math.min(SEGMENT_MASK + 1, numOfRows - (segment << SEGMENT_SHIFT)) * width;
+                    columns[col][segment] = channel.map(FileChannel.MapMode.READ_WRITE, position, size)
+                            .order(ByteOrder.nativeOrder());
+
+                    // keep the next mapping aligned to 8 bytes
+                    position += (size + Long.BYTES - 1) & -Long.BYTES;
+                }
+            }
+        }
+
+        return columns;
+    }
+
+    private int[] allRows() {
+        int[] rows = new int[numOfRows];
+        for (int i = 0; i < numOfRows; i++) {
+            rows[i] = i;
+        }
+
+        return rows;
+    }
+
+    private int[] allCols() {
+        int[] cols = new int[variables.size()];
+        for (int j = 0; j < cols.length; j++) {
+            cols[j] = j;
+        }
+
+        return cols;
+    }
+
+}
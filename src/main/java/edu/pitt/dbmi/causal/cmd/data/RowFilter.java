@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.pitt.dbmi.data.reader.DataReaderException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The class {@code RowFilter} keeps the rows of a tabular dataset whose value
+ * in a column compares to a given value, for example {@code age>=30} or
+ * {@code smoker=yes}. The operators are {@code =}, {@code !=}, {@code <},
+ * {@code <=}, {@code >} and {@code >=}.
+ *
+ * The values are compared as numbers when both are numbers, otherwise as
+ * text, in which case only {@code =} and {@code !=} apply. A missing value
+ * never matches. The column is any column of the file, even one that is not
+ * read in. Without a header, the columns are named C1, C2, and so on.
+ */
+public final class RowFilter {
+
+    private static final Pattern EXPRESSION_PATTERN = Pattern.compile("^\\s*(.+?)\\s*(<=|>=|!=|=|<|>)\\s*(.*?)\\s*$");
+    private static final Pattern GENERATED_NAME_PATTERN = Pattern.compile("^C(\\d+)$");
+
+    private final String expression;
+    private final String columnName;
+    private final String operator;
+    private final String value;
+    private final double number;
+
+    private RowFilter(String expression, String columnName, String operator, String value) {
+        this.expression = expression;
+        this.columnName = columnName;
+        this.operator = operator;
+        this.value = value;
+        this.number = toNumber(value);
+    }
+
+    /**
+     * Create a row filter from an expression.
+     *
+     * @param expression column name, operator and value, such as
+     * {@code age>=30}
+     * @return row filter
+     * @throws IllegalArgumentException when the expression is not valid
+     */
+    public static RowFilter parse(String expression) {
+        Matcher matcher = (expression == null) ? null : EXPRESSION_PATTERN.matcher(expression);
+        if (matcher == null || !matcher.matches() || matcher.group(3).isEmpty()) {
+            String errMsg = String.format("Invalid row filter '%s'.  Expect a column name, one of the operators =, !=, <, <=, >, >=, and a value.", expression);
+            throw new IllegalArgumentException(errMsg);
+        }
+
+        String operator = matcher.group(2);
+        String value = matcher.group(3);
+        if (!(operator.equals("=") || operator.equals("!=")) && Double.isNaN(toNumber(value))) {
+            String errMsg = String.format("Invalid row filter '%s'.  Operator %s requires a number.", expression, operator);
+            throw new IllegalArgumentException(errMsg);
+        }
+
+        return new RowFilter(expression.trim(), matcher.group(1), operator, value);
+    }
+
+    /**
+     * Find the column the rows are filtered on.
+     *
+     * @param values values of the first record of the data
+     * @param hasHeader true if the first record is the header
+     * @return column number, starting from 1
+     */
+    int getColumnNumber(List<String> values, boolean hasHeader) {
+        if (hasHeader) {
+            int index = values.indexOf(columnName);
+            if (index >= 0) {
+                return index + 1;
+            }
+        } else {
+            Matcher matcher = GENERATED_NAME_PATTERN.matcher(columnName);
+            if (matcher.matches()) {
+                int colNum = Integer.parseInt(matcher.group(1));
+                if (colNum >= 1 && colNum <= values.size()) {
+                    return colNum;
+                }
+            }
+        }
+
+        String errMsg = String.format("Row filter '%s': no such column %s.", expression, columnName);
+        throw new DataReaderException(errMsg);
+    }
+
+    /**
+     * Test whether a record is kept.
+     *
+     * @param values values of the record
+     * @param colNum column number given by
+     * {@link #getColumnNumber(List, boolean)}
+     * @param missingDataMarker missing data marker
+     * @return true if the record is kept
+     */
+    boolean test(List<String> values, int colNum, String missingDataMarker) {
+        if (colNum > values.size()) {
+            return false;
+        }
+
+        String recordValue = values.get(colNum - 1);
+        if (recordValue.isEmpty() || recordValue.equals(missingDataMarker)) {
+            return false;
+        }
+
+        double recordNumber = Double.isNaN(number) ? Double.NaN : toNumber(recordValue);
+        if (Double.isNaN(recordNumber)) {
+            switch (operator) {
+                case "=":
+                    return recordValue.equals(value);
+                case "!=":
+                    return !recordValue.equals(value);
+                default:
+                    return false;
+            }
+        }
+
+        int comparison = Double.compare(recordNumber, number);
+        switch (operator) {
+            case "=":
+                return comparison == 0;
+            case "!=":
+                return comparison != 0;
+            case "<":
+                return comparison < 0;
+            case "<=":
+                return comparison <= 0;
+            case ">":
+                return comparison > 0;
+            default:
+                return comparison >= 0;
+        }
+    }
+
+    private static double toNumber(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException exception) {
+            return Double.NaN;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+}
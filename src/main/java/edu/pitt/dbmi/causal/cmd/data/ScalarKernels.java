@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+/**
+ * The class {@code ScalarKernels} runs the numeric loops one value at a time.
+ */
+final class ScalarKernels implements Kernels {
+
+    @Override
+    public double sum(double[] x, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += x[i];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Four sums keep the floating-point units busy.
+     */
+    @Override
+    public double dot(double[] x, double[] y, int from, int to) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int i = from;
+        for (int end = to - 3; i < end; i += 4) {
+            sum0 += x[i] * y[i];
+            sum1 += x[i + 1] * y[i + 1];
+            sum2 += x[i + 2] * y[i + 2];
+            sum3 += x[i + 3] * y[i + 3];
+        }
+        for (; i < to; i++) {
+            sum0 += x[i] * y[i];
+        }
+
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    @Override
+    public void subtract(double[] x, double value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            x[i] -= value;
+        }
+    }
+
+    @Override
+    public void subtract(double[] x, double[] y, int length) {
+        for (int i = 0; i < length; i++) {
+            x[i] -= y[i];
+        }
+    }
+
+    @Override
+    public void addMultiple(double a, double[] x, double[] y, int length) {
+        for (int i = 0; i < length; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+}
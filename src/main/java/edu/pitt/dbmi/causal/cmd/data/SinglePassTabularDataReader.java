@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.DataType;
+import edu.pitt.dbmi.data.reader.Data;
+import edu.pitt.dbmi.causal.cmd.util.FileUtils;
+import edu.pitt.dbmi.data.reader.DataColumn;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.metadata.Metadata;
+import edu.pitt.dbmi.data.reader.validation.ValidationResult;
+import edu.pitt.dbmi.data.reader.validation.tabular.TabularDataFileValidation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The class {@code SinglePassTabularDataReader} reads in a tabular dataset
+ * with a single sequential scan of the file. The header, the discrete and
+ * continuous columns of mixed data, and the values are all handled in the same
+ * pass.
+ *
+ * The data produced is the same as the one produced by the tabular readers of
+ * the data-reader library, which read the file once for the header, once more
+ * to find the discrete columns of mixed data, once more to count the lines,
+ * and one last time for the values.
+ *
+ * The data can also be validated while it is read in. The problems found are
+ * then reported as the same validation results as the ones of the
+ * {@link TabularDataFileValidation} instead of failing on the first one.
+ */
+public final class SinglePassTabularDataReader {
+
+    private final Path dataFile;
+    private final Delimiter delimiter;
+
+    private char quoteCharacter;
+    private String commentMarker;
+    private String missingDataMarker;
+    private int categorySampleSize;
+    private boolean isColumnMajor;
+    private int maxNumOfMsg;
+    private List<String> columnTypeReport;
+
+    private RowFilter rowFilter;
+    private int rowLimit;
+    private int rowSampleSize;
+    private long rowSampleSeed;
+    private String rowSelectionReport;
+
+    /**
+     * Constructor.
+     *
+     * @param dataFile tabular data file
+     * @param delimiter data delimiter
+     */
+    public SinglePassTabularDataReader(Path dataFile, Delimiter delimiter) {
+        this.dataFile = dataFile;
+        this.delimiter = delimiter;
+        this.quoteCharacter = (char) -1;
+        this.commentMarker = "";
+        this.missingDataMarker = "";
+        this.maxNumOfMsg = TabularDataBuilder.DEFAULT_MAX_NUM_OF_MESSAGES;
+    }
+
+    /**
+     * Read in the dataset.
+     *
+     * @param namesOfColumnsToExclude names of the columns not to read in,
+     * ignored when the data has no header
+     * @param dataType continuous, discrete, or mixed
+     * @param numberOfCategories maximum number of categories a column of mixed
+     * data can have to be considered discrete
+     * @param hasHeader true if the first line of the data is the header
+     * @param metadata data metadata, can be null
+     * @return data read in
+     * @throws IOException when unable to read the file
+     */
+    public Data read(Set<String> namesOfColumnsToExclude, DataType dataType, int numberOfCategories, boolean hasHeader, Metadata metadata) throws IOException {
+        return read(namesOfColumnsToExclude, dataType, numberOfCategories, hasHeader, metadata, null);
+    }
+
+    /**
+     * Read in and validate the dataset. Problems in the data are added to the
+     * validation results instead of being thrown.
+     *
+     * @param namesOfColumnsToExclude names of the columns not to read in,
+     * ignored when the data has no header
+     * @param dataType continuous, discrete, or mixed
+     * @param numberOfCategories maximum number of categories a column of mixed
+     * data can have to be considered discrete
+     * @param hasHeader true if the first line of the data is the header
+     * @param metadata data metadata, can be null
+     * @param validationResults list to add the validation results to, data is
+     * not validated if null
+     * @return data read in, or null if the validation found any error
+     * @throws IOException when unable to read the file
+     */
+    public Data read(Set<String> namesOfColumnsToExclude, DataType dataType, int numberOfCategories, boolean hasHeader, Metadata metadata, List<ValidationResult> validationResults) throws IOException {
+        try (InputStream in = FileUtils.newInputStream(dataFile);
+             TabularRecordReader recordReader = new TabularRecordReader(in, delimiter, quoteCharacter, commentMarker)) {
+            List<String> values = new ArrayList<>();
+            if (!recordReader.readRecord(values)) {
+                return null;
+            }
+
+            int filterColNum = (rowFilter == null) ? 0 : rowFilter.getColumnNumber(values, hasHeader);
+            DataColumn[] dataColumns = TabularDataBuilder.createDataColumns(values, recordReader.getLineNumber(), hasHeader, namesOfColumnsToExclude, quoteCharacter, dataType, metadata);
+            boolean isTypeDetected = (dataType == DataType.Mixed);
+            if (isTypeDetected && categorySampleSize > 0) {
+                try (InputStream sampleIn = FileUtils.newInputStream(dataFile);
+                     TabularRecordReader sampleReader = new TabularRecordReader(sampleIn, delimiter, quoteCharacter, commentMarker)) {
+                    DiscreteColumnDetector detector = new DiscreteColumnDetector(dataColumns, numberOfCategories, missingDataMarker);
+                    columnTypeReport = detector.detect(sampleReader, hasHeader, categorySampleSize);
+                }
+                isTypeDetected = false;
+            }
+            TabularDataBuilder dataBuilder = new TabularDataBuilder(dataColumns, isTypeDetected, numberOfCategories, missingDataMarker, validationResults != null);
+            dataBuilder.setColumnMajor(isColumnMajor);
+            dataBuilder.setMaximumNumberOfMessages(maxNumOfMsg);
+            TabularDataBuilder.Chunk chunk = dataBuilder.createChunk();
+
+            // only the rows selected are parsed
+            RowReservoir reservoir = (rowSampleSize > 0) ? new RowReservoir(rowSampleSize, rowSampleSeed) : null;
+            int numOfRowsRead = 0;
+            int numOfRowsSelected = 0;
+            boolean hasRecord = !hasHeader || recordReader.readRecord(values);
+            while (hasRecord && (rowLimit == 0 || numOfRowsSelected < rowLimit)) {
+                numOfRowsRead++;
+                if (rowFilter == null || rowFilter.test(values, filterColNum, missingDataMarker)) {
+                    numOfRowsSelected++;
+                    if (reservoir == null) {
+                        chunk.addRecord(values, recordReader.getLineNumber());
+                    } else {
+                        reservoir.add(values, recordReader.getLineNumber());
+                    }
+                }
+                hasRecord = recordReader.readRecord(values);
+            }
+            if (reservoir != null) {
+                reservoir.addTo(chunk);
+            }
+            rowSelectionReport = (rowFilter == null && rowLimit == 0 && reservoir == null)
+                    ? null
+                    : createRowSelectionReport(chunk.getNumberOfRows(), numOfRowsRead, rowFilter, (reservoir == null) ? null : rowSampleSeed);
+
+            return dataBuilder.build(Collections.singletonList(chunk), metadata, validationResults);
+        } catch (IOException exception) {
+            if (validationResults == null || exception instanceof InterruptedIOException) {
+                throw exception;
+            }
+            validationResults.add(TabularDataBuilder.createFileErrorResult(dataFile));
+
+            return null;
+        }
+    }
+
+    public void setQuoteCharacter(char quoteCharacter) {
+        this.quoteCharacter = quoteCharacter;
+    }
+
+    public void setCommentMarker(String commentMarker) {
+        this.commentMarker = (commentMarker == null) ? "" : commentMarker.trim();
+    }
+
+    public void setMissingDataMarker(String missingDataMarker) {
+        this.missingDataMarker = (missingDataMarker == null) ? "" : missingDataMarker.trim();
+    }
+
+    /**
+     * Find the discrete columns of mixed data from at most the given number
+     * of rows at the start of the file, instead of from all of them. By
+     * default, all the rows are used.
+     *
+     * @param categorySampleSize number of rows, 0 for all the rows
+     */
+    public void setCategorySampleSize(int categorySampleSize) {
+        this.categorySampleSize = categorySampleSize;
+    }
+
+    /**
+     * Get the report of the detection of the discrete columns from a sample
+     * of the rows.
+     *
+     * @return report of the last read, or null if no sample was used
+     */
+    public List<String> getColumnTypeReport() {
+        return columnTypeReport;
+    }
+
+    /**
+     * Read in only the rows that match the filter.
+     *
+     * @param rowFilter row filter, null to read in all the rows
+     */
+    public void setRowFilter(RowFilter rowFilter) {
+        this.rowFilter = rowFilter;
+    }
+
+    /**
+     * Stop reading the file after the given number of rows are selected.
+     *
+     * @param rowLimit largest number of rows, 0 for no limit
+     */
+    public void setRowLimit(int rowLimit) {
+        this.rowLimit = rowLimit;
+    }
+
+    /**
+     * Set the largest number of problems reported when validating. The
+     * problems past it are counted but not reported one by one. By default,
+     * at most 100 problems are reported.
+     *
+     * @param maxNumOfMsg largest number of problems reported
+     */
+    public void setMaximumNumberOfMessages(int maxNumOfMsg) {
+        this.maxNumOfMsg = maxNumOfMsg;
+    }
+
+    /**
+     * Keep continuous data column by column instead of turning it into rows.
+     *
+     * @param isColumnMajor true to read continuous data in as
+     * {@link ColumnMajorTabularData}
+     */
+    public void setColumnMajor(boolean isColumnMajor) {
+        this.isColumnMajor = isColumnMajor;
+    }
+
+    /**
+     * Read in a uniform random sample of the selected rows, kept in the order
+     * of the file.
+     *
+     * @param rowSampleSize number of rows of the sample, 0 to read in all the
+     * selected rows
+     * @param rowSampleSeed seed of the random sample
+     */
+    public void setRowSample(int rowSampleSize, long rowSampleSeed) {
+        this.rowSampleSize = rowSampleSize;
+        this.rowSampleSeed = rowSampleSeed;
+    }
+
+    /**
+     * Get the report of the rows selected.
+     *
+     * @return report of the last read, or null if all the rows were read in
+     */
+    public String getRowSelectionReport() {
+        return rowSelectionReport;
+    }
+
+    static String createRowSelectionReport(int numOfRowsKept, int numOfRowsRead, RowFilter rowFilter, Long rowSampleSeed) {
+        StringBuilder report = new StringBuilder(String.format("Read in %d of the first %d rows of the file", numOfRowsKept, numOfRowsRead));
+        if (rowFilter != null) {
+            report.append(String.format(", filtered on %s", rowFilter));
+        }
+        if (rowSampleSeed != null) {
+            report.append(String.format(", sampled with seed %d", rowSampleSeed));
+        }
+
+        return report.append('.').toString();
+    }
+
+    /**
+     * Uniform random sample of the records, using reservoir sampling so that
+     * the number of records does not have to be known in advance.
+     */
+    private static final class RowReservoir {
+
+        private final Random random;
+        private final List<List<String>> records;
+        private final List<Integer> lineNums;
+        private final List<Long> rowNums;
+        private final int size;
+
+        private long numOfRows;
+
+        private RowReservoir(int size, long seed) {
+            this.random = new Random(seed);
+            this.records = new ArrayList<>();
+            this.lineNums = new ArrayList<>();
+            this.rowNums = new ArrayList<>();
+            this.size = size;
+        }
+
+        private void add(List<String> values, int lineNum) {
+            long rowNum = numOfRows++;
+            if (rowNum < size) {
+                records.add(new ArrayList<>(values));
+                lineNums.add(lineNum);
+                rowNums.add(rowNum);
+            } else {
+                long index = random.nextLong(rowNum + 1);
+                if (index < size) {
+                    records.set((int) index, new ArrayList<>(values));
+                    lineNums.set((int) index, lineNum);
+                    rowNums.set((int) index, rowNum);
+                }
+            }
+        }
+
+        /**
+         * Add the records of the sample to the chunk in the order of the
+         * file.
+         */
+        private void addTo(TabularDataBuilder.Chunk chunk) {
+            Integer[] order = new Integer[records.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(rowNums::get));
+            for (int i : order) {
+                chunk.addRecord(records.get(i), lineNums.get(i));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataType;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Node;
+import edu.pitt.dbmi.causal.cmd.util.FileUtils;
+import edu.pitt.dbmi.data.reader.DataColumn;
+import edu.pitt.dbmi.data.reader.DataReaderException;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.validation.MessageType;
+import edu.pitt.dbmi.data.reader.validation.ValidationAttribute;
+import edu.pitt.dbmi.data.reader.validation.ValidationCode;
+import edu.pitt.dbmi.data.reader.validation.ValidationResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The class {@code StreamingCovarianceReader} computes the covariance matrix
+ * of a continuous tabular dataset with a single pass over the file, without
+ * keeping the dataset in memory. Only the means and the covariances are kept,
+ * so the memory used depends on the number of variables but not on the number
+ * of cases.
+ *
+ * The values are read in the same way as the {@link SinglePassTabularDataReader}
+ * does. Since a case with a missing value cannot be part of the covariances,
+ * missing values are an error.
+ */
+public final class StreamingCovarianceReader {
+
+    private final Path dataFile;
+    private final Delimiter delimiter;
+
+    private char quoteCharacter;
+    private String commentMarker;
+    private String missingDataMarker;
+
+    /**
+     * Constructor.
+     *
+     * @param dataFile tabular data file
+     * @param delimiter data delimiter
+     */
+    public StreamingCovarianceReader(Path dataFile, Delimiter delimiter) {
+        this.dataFile = dataFile;
+        this.delimiter = delimiter;
+        this.quoteCharacter = (char) -1;
+        this.commentMarker = "";
+        this.missingDataMarker = "";
+    }
+
+    /**
+     * Compute the covariance matrix of the dataset.
+     *
+     * @param namesOfColumnsToExclude names of the columns not to read in,
+     * ignored when the data has no header
+     * @param hasHeader true if the first line of the data is the header
+     * @return covariance matrix of the dataset
+     * @throws IOException when unable to read the file
+     */
+    public ICovarianceMatrix read(Set<String> namesOfColumnsToExclude, boolean hasHeader) throws IOException {
+        return read(namesOfColumnsToExclude, hasHeader, null);
+    }
+
+    /**
+     * Compute the covariance matrix of the dataset and validate the dataset.
+     * Problems in the data are added to the validation results instead of
+     * being thrown.
+     *
+     * @param namesOfColumnsToExclude names of the columns not to read in,
+     * ignored when the data has no header
+     * @param hasHeader true if the first line of the data is the header
+     * @param validationResults list to add the validation results to, data is
+     * not validated if null
+     * @return covariance matrix of the dataset, or null if the validation
+     * found any error
+     * @throws IOException when unable to read the file
+     */
+    public ICovarianceMatrix read(Set<String> namesOfColumnsToExclude, boolean hasHeader, List<ValidationResult> validationResults) throws IOException {
+        boolean isValidating = validationResults != null;
+        try (InputStream in = FileUtils.newInputStream(dataFile);
+             TabularRecordReader recordReader = new TabularRecordReader(in, delimiter, quoteCharacter, commentMarker)) {
+            List<String> values = new ArrayList<>();
+            if (!recordReader.readRecord(values)) {
+                return null;
+            }
+
+            DataColumn[] dataColumns = TabularDataBuilder.createDataColumns(values, recordReader.getLineNumber(), hasHeader, namesOfColumnsToExclude, quoteCharacter, DataType.Continuous, null);
+            int numOfCols = dataColumns.length;
+            CovarianceAccumulator accumulator = new CovarianceAccumulator(numOfCols);
+            List<ValidationResult> results = new ArrayList<>();
+
+            boolean hasRecord = !hasHeader || recordReader.readRecord(values);
+            while (hasRecord) {
+                int lineNum = recordReader.getLineNumber();
+                int numOfValues = values.size();
+                double[] row = accumulator.nextRow();
+                boolean isValid = true;
+                for (int i = 0; i < numOfCols; i++) {
+                    int colNum = dataColumns[i].getColumnNumber();
+                    if (colNum > numOfValues) {
+                        if (!isValidating) {
+                            String errMsg = String.format("Insufficient data on line %d.  Extracted %d value(s) but expected %d.", lineNum, i, numOfCols);
+                            throw new DataReaderException(errMsg);
+                        }
+
+                        String errMsg = String.format("Line %d, column %d: Insufficient data.  Expect %d value(s) but encounter %d.", lineNum, numOfValues, numOfCols, i + 1);
+                        ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_INSUFFICIENT_DATA, errMsg);
+                        result.setAttribute(ValidationAttribute.COLUMN_NUMBER, numOfValues);
+                        result.setAttribute(ValidationAttribute.LINE_NUMBER, lineNum);
+                        result.setAttribute(ValidationAttribute.EXPECTED_COUNT, numOfCols);
+                        result.setAttribute(ValidationAttribute.ACTUAL_COUNT, i + 1);
+                        results.add(result);
+                        isValid = false;
+                        break;
+                    }
+
+                    String value = values.get(colNum - 1);
+                    if (value.isEmpty() || value.equals(missingDataMarker)) {
+                        if (!isValidating) {
+                            String errMsg = String.format("Missing value on line %d at column %d.  The covariance matrix cannot be streamed from data with missing values.", lineNum, colNum);
+                            throw new DataReaderException(errMsg);
+                        }
+
+                        String errMsg = String.format("Line %d, column %d: Missing value.  The covariance matrix cannot be streamed from data with missing values.", lineNum, colNum);
+                        ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_MISSING_VALUE, errMsg);
+                        result.setAttribute(ValidationAttribute.COLUMN_NUMBER, colNum);
+                        result.setAttribute(ValidationAttribute.LINE_NUMBER, lineNum);
+                        results.add(result);
+                        isValid = false;
+                        continue;
+                    }
+
+                    try {
+                        row[i] = Double.parseDouble(value);
+                    } catch (NumberFormatException exception) {
+                        if (!isValidating) {
+                            String errMsg = String.format("Non-continuous number %s on line %d at column %d.", value, lineNum, colNum);
+                            throw new DataReaderException(errMsg);
+                        }
+
+                        String errMsg = String.format("Line %d, column %d: Non-continuous number %s.", lineNum, colNum, value);
+                        ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_INVALID_NUMBER, errMsg);
+                        result.setAttribute(ValidationAttribute.COLUMN_NUMBER, colNum);
+                        result.setAttribute(ValidationAttribute.LINE_NUMBER, lineNum);
+                        result.setAttribute(ValidationAttribute.VALUE, value);
+                        results.add(result);
+                        isValid = false;
+                    }
+                }
+                if (isValid) {
+                    accumulator.addRow();
+                }
+
+                hasRecord = recordReader.readRecord(values);
+            }
+
+            long numOfRows = accumulator.getNumberOfRows();
+            if (numOfRows > Integer.MAX_VALUE) {
+                String errMsg = String.format("File %s has more than %d cases.", dataFile.getFileName(), Integer.MAX_VALUE);
+                throw new DataReaderException(errMsg);
+            }
+
+            if (isValidating) {
+                String infoMsg = String.format("There are %d cases and %d variables.", numOfRows, numOfCols);
+                ValidationResult result = new ValidationResult(ValidationCode.INFO, MessageType.FILE_SUMMARY, infoMsg);
+                result.setAttribute(ValidationAttribute.ROW_NUMBER, numOfRows);
+                result.setAttribute(ValidationAttribute.COLUMN_NUMBER, numOfCols);
+                results.add(result);
+
+                validationResults.addAll(results);
+                if (results.stream().anyMatch(e -> e.getCode() == ValidationCode.ERROR)) {
+                    return null;
+                }
+            }
+
+            List<Node> variables = new ArrayList<>(numOfCols);
+            for (DataColumn dataColumn : dataColumns) {
+                variables.add(new ContinuousVariable(dataColumn.getName()));
+            }
+
+            return new CovarianceMatrix(variables, accumulator.getCovariances(), (int) numOfRows);
+        } catch (IOException exception) {
+            if (!isValidating || exception instanceof InterruptedIOException) {
+                throw exception;
+            }
+            validationResults.add(TabularDataBuilder.createFileErrorResult(dataFile));
+
+            return null;
+        }
+    }
+
+    public void setQuoteCharacter(char quoteCharacter) {
+        this.quoteCharacter = quoteCharacter;
+    }
+
+    public void setCommentMarker(String commentMarker) {
+        this.commentMarker = (commentMarker == null) ? "" : commentMarker.trim();
+    }
+
+    public void setMissingDataMarker(String missingDataMarker) {
+        this.missingDataMarker = (missingDataMarker == null) ? "" : missingDataMarker.trim();
+    }
+
+}
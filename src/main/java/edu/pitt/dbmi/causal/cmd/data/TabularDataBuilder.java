@@ -0,0 +1,737 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.DataType;
+import edu.pitt.dbmi.data.reader.Data;
+import edu.pitt.dbmi.data.reader.DataColumn;
+import edu.pitt.dbmi.data.reader.DataColumns;
+import edu.pitt.dbmi.data.reader.DataReaderException;
+import edu.pitt.dbmi.data.reader.DiscreteDataColumn;
+import edu.pitt.dbmi.data.reader.metadata.ColumnMetadata;
+import edu.pitt.dbmi.data.reader.metadata.Metadata;
+import edu.pitt.dbmi.data.reader.tabular.ContinuousTabularData;
+import edu.pitt.dbmi.data.reader.tabular.DiscreteTabularDataColumn;
+import edu.pitt.dbmi.data.reader.tabular.MixedTabularData;
+import edu.pitt.dbmi.data.reader.tabular.MixedTabularDataColumn;
+import edu.pitt.dbmi.data.reader.tabular.TabularDataColumn;
+import edu.pitt.dbmi.data.reader.tabular.VerticalDiscreteTabularData;
+import edu.pitt.dbmi.data.reader.validation.MessageType;
+import edu.pitt.dbmi.data.reader.validation.ValidationAttribute;
+import edu.pitt.dbmi.data.reader.validation.ValidationCode;
+import edu.pitt.dbmi.data.reader.validation.ValidationResult;
+import edu.pitt.dbmi.data.reader.validation.tabular.TabularDataFileValidation;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The class {@code TabularDataBuilder} builds tabular data from records
+ * extracted from a data file. The records can be added to several chunks,
+ * each holding consecutive rows of the file, so that different parts of the
+ * file can be read in at the same time. The values are stored column by
+ * column in blocks so that the number of rows does not have to be known in
+ * advance.
+ *
+ * A column of mixed data keeps both its numbers and its category codes until
+ * it has more categories than allowed for a discrete column. When the data is
+ * built, the chunks are put together in order and the categories are encoded
+ * in sorted order, the same as the tabular readers of the data-reader library.
+ *
+ * When validating, the problems found are reported as the same validation
+ * results as the ones of the {@link TabularDataFileValidation} instead of
+ * failing on the first one. Only the first problems of the file, up to the
+ * maximum number of messages, are kept; the others are counted.
+ */
+final class TabularDataBuilder {
+
+    private static final int DISCRETE_MISSING_VALUE = -99;
+
+    /**
+     * Default largest number of problems reported when validating.
+     */
+    static final int DEFAULT_MAX_NUM_OF_MESSAGES = 100;
+
+    /**
+     * Order the validation results the same way as they are found when
+     * scanning the file: by line, then by column.
+     */
+    private static final Comparator<ValidationResult> VALIDATION_RESULT_ORDER = Comparator
+            .comparingInt((ValidationResult e) -> (Integer) e.getAttributes().getOrDefault(ValidationAttribute.LINE_NUMBER, 0))
+            .thenComparingInt(e -> (Integer) e.getAttributes().getOrDefault(ValidationAttribute.COLUMN_NUMBER, 0))
+            .thenComparing(e -> e.getMessageType() == MessageType.FILE_INSUFFICIENT_DATA);
+
+    private final DataColumn[] dataColumns;
+    private final boolean isTypeDetected;
+    private final int numberOfCategories;
+    private final String missingDataMarker;
+    private final boolean isValidating;
+    private final int numOfColsInDataFile;
+
+    private boolean isColumnMajor;
+    private int maxNumOfMsg = DEFAULT_MAX_NUM_OF_MESSAGES;
+
+    /**
+     * Constructor.
+     *
+     * @param dataColumns columns of the data
+     * @param isTypeDetected true if the columns of mixed data are found to be
+     * discrete or continuous from their values
+     * @param numberOfCategories maximum number of categories a column of mixed
+     * data can have to be considered discrete
+     * @param missingDataMarker missing data marker
+     * @param isValidating true if the data is validated
+     */
+    TabularDataBuilder(DataColumn[] dataColumns, boolean isTypeDetected, int numberOfCategories, String missingDataMarker, boolean isValidating) {
+        this.dataColumns = dataColumns;
+        this.isTypeDetected = isTypeDetected;
+        this.numberOfCategories = numberOfCategories;
+        this.missingDataMarker = missingDataMarker;
+        this.isValidating = isValidating;
+        this.numOfColsInDataFile = (int) Arrays.stream(dataColumns)
+                .filter(e -> !e.isGenerated())
+                .count();
+    }
+
+    /**
+     * Keep continuous data column by column instead of turning it into rows.
+     *
+     * @param isColumnMajor true to build continuous data as
+     * {@link ColumnMajorTabularData}
+     */
+    void setColumnMajor(boolean isColumnMajor) {
+        this.isColumnMajor = isColumnMajor;
+    }
+
+    /**
+     * Set the largest number of problems reported when validating. The
+     * problems past it are counted but not reported one by one.
+     *
+     * @param maxNumOfMsg largest number of problems reported
+     */
+    void setMaximumNumberOfMessages(int maxNumOfMsg) {
+        this.maxNumOfMsg = maxNumOfMsg;
+    }
+
+    /**
+     * Create the columns of the data from its first record.
+     *
+     * @param values values of the first record of the data
+     * @param lineNum line number of the first record
+     * @param hasHeader true if the first record is the header
+     * @param namesOfColumnsToExclude names of the columns not to read in,
+     * ignored when the data has no header
+     * @param quoteCharacter quote character
+     * @param dataType continuous, discrete, or mixed
+     * @param metadata data metadata, can be null
+     * @return columns of the data
+     */
+    static DataColumn[] createDataColumns(List<String> values, int lineNum, boolean hasHeader, Set<String> namesOfColumnsToExclude, char quoteCharacter, DataType dataType, Metadata metadata) {
+        boolean isDiscrete = (dataType == DataType.Discrete);
+        if (!hasHeader) {
+            int numOfCols = values.size();
+            DataColumn[] dataColumns = new DataColumn[numOfCols];
+            for (int i = 0; i < numOfCols; i++) {
+                int colNum = i + 1;
+                dataColumns[i] = new TabularDataColumn("C" + colNum, colNum, false, isDiscrete);
+            }
+
+            return dataColumns;
+        }
+
+        Set<String> excludedNames = new HashSet<>();
+        if (namesOfColumnsToExclude != null) {
+            namesOfColumnsToExclude.stream()
+                    .filter(e -> e != null)
+                    .map(String::trim)
+                    .filter(e -> !e.isEmpty())
+                    .map(e -> stripQuoteCharacter(e, quoteCharacter))
+                    .forEach(excludedNames::add);
+        }
+
+        List<DataColumn> dataColumns = new LinkedList<>();
+        int colNum = 0;
+        for (String name : values) {
+            colNum++;
+            if (excludedNames.contains(name)) {
+                continue;
+            }
+            if (name.isEmpty()) {
+                String errMsg = String.format("Missing variable name on line %d at column %d.", lineNum, colNum);
+                throw new DataReaderException(errMsg);
+            }
+
+            dataColumns.add(new TabularDataColumn(name, colNum, false, isDiscrete));
+        }
+
+        DataColumn[] columns = dataColumns.toArray(new DataColumn[0]);
+
+        return (metadata == null) ? columns : DataColumns.update(columns, metadata);
+    }
+
+    /**
+     * Create the validation result for a file that cannot be read.
+     *
+     * @param dataFile file that cannot be read
+     * @return validation result
+     */
+    static ValidationResult createFileErrorResult(Path dataFile) {
+        String errMsg = String.format("Unable to read file %s.", dataFile.getFileName());
+        ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_IO_ERROR, errMsg);
+        result.setAttribute(ValidationAttribute.FILE_NAME, dataFile.getFileName());
+
+        return result;
+    }
+
+    private static String stripQuoteCharacter(String value, char quoteCharacter) {
+        if (value.length() > 1 && value.charAt(0) == quoteCharacter && value.charAt(value.length() - 1) == quoteCharacter) {
+            return value.substring(1, value.length() - 1);
+        }
+
+        return value;
+    }
+
+    /**
+     * Create a chunk to add the records of a part of the file to.
+     *
+     * @return an empty chunk
+     */
+    Chunk createChunk() {
+        return new Chunk();
+    }
+
+    /**
+     * Build the data from the chunks.
+     *
+     * @param chunks chunks in the order of the file
+     * @param metadata data metadata, can be null
+     * @param validationResults list to add the validation results to, when
+     * validating
+     * @return data built, or null if the validation found any error
+     */
+    Data build(List<Chunk> chunks, Metadata metadata, List<ValidationResult> validationResults) {
+        int numOfCols = dataColumns.length;
+        int numOfRows = chunks.stream()
+                .mapToInt(e -> e.numOfRows)
+                .sum();
+
+        // decide on the type of the columns of mixed data
+        boolean isDiscrete = false;
+        boolean isContinuous = false;
+        for (int col = 0; col < numOfCols; col++) {
+            DataColumn dataColumn = dataColumns[col];
+            if (isTypeDetected && !dataColumn.isGenerated()) {
+                dataColumn.setDiscrete(getCategories(chunks, col) != null);
+            }
+            if (dataColumn.isDiscrete()) {
+                isDiscrete = true;
+            } else {
+                isContinuous = true;
+            }
+        }
+        boolean isMixed = isDiscrete && isContinuous;
+
+        if (isValidating) {
+            // each chunk keeps its first problems, so the first ones of the
+            // file are among them
+            List<ValidationResult> results = new ArrayList<>();
+            int numOfErrorsNotKept = 0;
+            int numOfWarningsNotKept = 0;
+            for (Chunk chunk : chunks) {
+                results.addAll(chunk.validationResults);
+                numOfErrorsNotKept += chunk.numOfErrorsNotKept;
+                numOfWarningsNotKept += chunk.numOfWarningsNotKept;
+                for (ColumnBuffer columnBuffer : chunk.columnBuffers) {
+                    if (!columnBuffer.dataColumn.isDiscrete()) {
+                        int colNum = columnBuffer.dataColumn.getColumnNumber();
+                        for (int i = 0; i < columnBuffer.invalidNumbers.size(); i++) {
+                            results.add(createInvalidNumberResult(columnBuffer.invalidNumbers.get(i), columnBuffer.invalidNumberLineNums.get(i), colNum));
+                        }
+                        numOfErrorsNotKept += columnBuffer.numOfInvalidNumbers - columnBuffer.invalidNumbers.size();
+                    }
+                }
+            }
+            results.sort(VALIDATION_RESULT_ORDER);
+
+            if (results.size() > maxNumOfMsg) {
+                List<ValidationResult> resultsNotKept = results.subList(maxNumOfMsg, results.size());
+                for (ValidationResult result : resultsNotKept) {
+                    if (result.getCode() == ValidationCode.ERROR) {
+                        numOfErrorsNotKept++;
+                    } else {
+                        numOfWarningsNotKept++;
+                    }
+                }
+                resultsNotKept.clear();
+            }
+            if (numOfWarningsNotKept > 0) {
+                String warnMsg = String.format("There are %d more warnings that are not shown.", numOfWarningsNotKept);
+                ValidationResult result = new ValidationResult(ValidationCode.WARNING, MessageType.FILE_SUMMARY, warnMsg);
+                results.add(result);
+            }
+            if (numOfErrorsNotKept > 0) {
+                String errMsg = String.format("There are %d more errors that are not shown.", numOfErrorsNotKept);
+                ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_SUMMARY, errMsg);
+                results.add(result);
+            }
+
+            String infoMsg = String.format("There are %d cases and %d variables.", numOfRows, numOfColsInDataFile);
+            ValidationResult result = new ValidationResult(ValidationCode.INFO, MessageType.FILE_SUMMARY, infoMsg);
+            result.setAttribute(ValidationAttribute.ROW_NUMBER, numOfRows);
+            result.setAttribute(ValidationAttribute.COLUMN_NUMBER, numOfColsInDataFile);
+            results.add(result);
+
+            validationResults.addAll(results);
+            if (results.stream().anyMatch(e -> e.getCode() == ValidationCode.ERROR)) {
+                return null;
+            }
+        } else {
+            // report the first non-continuous number found in the file
+            chunks.stream()
+                    .flatMap(e -> Arrays.stream(e.columnBuffers))
+                    .filter(e -> !e.dataColumn.isDiscrete() && !e.invalidNumbers.isEmpty())
+                    .min((e1, e2) -> (e1.invalidNumberLineNums.get(0).equals(e2.invalidNumberLineNums.get(0)))
+                    ? Integer.compare(e1.dataColumn.getColumnNumber(), e2.dataColumn.getColumnNumber())
+                    : Integer.compare(e1.invalidNumberLineNums.get(0), e2.invalidNumberLineNums.get(0)))
+                    .ifPresent(e -> {
+                        String errMsg = String.format(isMixed
+                                ? "Invalid number %s on line %d at column %d."
+                                : "Non-continuous number %s on line %d at column %d.",
+                                e.invalidNumbers.get(0), e.invalidNumberLineNums.get(0), e.dataColumn.getColumnNumber());
+                        throw new DataReaderException(errMsg);
+                    });
+        }
+
+        DiscreteDataColumn[] discreteDataColumns = new DiscreteDataColumn[numOfCols];
+        double[][] continuousData = new double[numOfCols][];
+        int[][] discreteData = new int[numOfCols][];
+        for (int col = 0; col < numOfCols; col++) {
+            DataColumn dataColumn = dataColumns[col];
+            if (isMixed || dataColumn.isDiscrete()) {
+                discreteDataColumns[col] = isMixed
+                        ? new MixedTabularDataColumn(dataColumn)
+                        : new DiscreteTabularDataColumn(dataColumn);
+            }
+
+            if (dataColumn.isDiscrete()) {
+                discreteData[col] = toDiscreteData(chunks, col, discreteDataColumns[col], numOfRows);
+            } else {
+                continuousData[col] = toContinuousData(chunks, col, numOfRows);
+            }
+            for (Chunk chunk : chunks) {
+                chunk.columnBuffers[col] = null;
+            }
+        }
+
+        if (metadata != null) {
+            applyInterventionalMetadata(metadata, continuousData, discreteData);
+        }
+
+        if (isMixed) {
+            return new MixedTabularData(numOfRows, discreteDataColumns, continuousData, discreteData);
+        } else if (isDiscrete) {
+            return new VerticalDiscreteTabularData(discreteDataColumns, discreteData);
+        } else if (isColumnMajor) {
+            return new ColumnMajorTabularData(dataColumns, numOfRows, continuousData);
+        } else {
+            double[][] data = new double[numOfRows][numOfCols];
+            for (int col = 0; col < numOfCols; col++) {
+                double[] column = continuousData[col];
+                for (int row = 0; row < numOfRows; row++) {
+                    data[row][col] = column[row];
+                }
+                continuousData[col] = null;
+            }
+
+            return new ContinuousTabularData(dataColumns, data);
+        }
+    }
+
+    /**
+     * Get all the categories of a column found in the chunks.
+     *
+     * @return the categories, or null if the column has too many categories
+     * to be discrete
+     */
+    private Set<String> getCategories(List<Chunk> chunks, int col) {
+        Set<String> categories = new TreeSet<>();
+        for (Chunk chunk : chunks) {
+            ColumnBuffer columnBuffer = chunk.columnBuffers[col];
+            if (columnBuffer.categories == null) {
+                return null;
+            }
+            categories.addAll(columnBuffer.categories.keySet());
+        }
+
+        return (categories.size() > numberOfCategories) ? null : categories;
+    }
+
+    private double[] toContinuousData(List<Chunk> chunks, int col, int numOfRows) {
+        double[] data = new double[numOfRows];
+        int row = 0;
+        for (Chunk chunk : chunks) {
+            row = chunk.columnBuffers[col].copyNumbers(data, row);
+        }
+
+        return data;
+    }
+
+    private int[] toDiscreteData(List<Chunk> chunks, int col, DiscreteDataColumn discreteDataColumn, int numOfRows) {
+        // categories are encoded in sorted order
+        Set<String> categories = new TreeSet<>();
+        chunks.forEach(chunk -> categories.addAll(chunk.columnBuffers[col].categories.keySet()));
+        if (discreteDataColumn.getDataColumn().isGenerated()) {
+            categories.add("0");
+            categories.add("1");
+        }
+        categories.forEach(discreteDataColumn::setValue);
+        discreteDataColumn.recategorize();
+
+        int[] data = new int[numOfRows];
+        int row = 0;
+        for (Chunk chunk : chunks) {
+            row = chunk.columnBuffers[col].copyCodes(data, row, discreteDataColumn);
+        }
+
+        return data;
+    }
+
+    /**
+     * Set the values of the interventional columns. A missing intervention
+     * value means no intervention, otherwise the generated status column is
+     * set to indicate an intervention.
+     */
+    private void applyInterventionalMetadata(Metadata metadata, double[][] continuousData, int[][] discreteData) {
+        metadata.getInterventionalColumns().forEach(column -> {
+            ColumnMetadata valCol = column.getValueColumn();
+            ColumnMetadata statCol = column.getStatusColumn();
+            int valColNum = valCol.getColumnNumber() - 1;
+            int statColNum = statCol.getColumnNumber() - 1;
+            boolean isStatusGenerated = dataColumns[statColNum].isGenerated();
+
+            double[] contVal = continuousData[valColNum];
+            int[] discVal = discreteData[valColNum];
+            double[] contStat = continuousData[statColNum];
+            int[] discStat = discreteData[statColNum];
+            int numOfRows = (contVal == null) ? discVal.length : contVal.length;
+            for (int i = 0; i < numOfRows; i++) {
+                boolean isMissing = (contVal == null)
+                        ? discVal[i] == DISCRETE_MISSING_VALUE
+                        : Double.isNaN(contVal[i]);
+                if (isMissing) {
+                    if (contVal == null) {
+                        discVal[i] = 0;
+                    } else {
+                        contVal[i] = 0;
+                    }
+                    if (contStat == null) {
+                        discStat[i] = 0;
+                    } else {
+                        contStat[i] = 0;
+                    }
+                } else if (isStatusGenerated) {
+                    if (contStat == null) {
+                        discStat[i] = 1;
+                    } else {
+                        contStat[i] = 1;
+                    }
+                }
+            }
+        });
+    }
+
+    private static ValidationResult createInvalidNumberResult(String value, int lineNum, int colNum) {
+        String errMsg = String.format("Line %d, column %d: Non-continuous number %s.", lineNum, colNum, value);
+        ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_INVALID_NUMBER, errMsg);
+        result.setAttribute(ValidationAttribute.COLUMN_NUMBER, colNum);
+        result.setAttribute(ValidationAttribute.LINE_NUMBER, lineNum);
+        result.setAttribute(ValidationAttribute.VALUE, value);
+
+        return result;
+    }
+
+    /**
+     * Consecutive rows of the data. A chunk is only used by one thread at a
+     * time.
+     */
+    final class Chunk {
+
+        private final ColumnBuffer[] columnBuffers;
+        private final List<ValidationResult> validationResults;
+
+        private int numOfRows;
+        private int numOfErrorsNotKept;
+        private int numOfWarningsNotKept;
+
+        private Chunk() {
+            this.columnBuffers = new ColumnBuffer[dataColumns.length];
+            for (int i = 0; i < columnBuffers.length; i++) {
+                DataColumn dataColumn = dataColumns[i];
+                boolean isUndecided = isTypeDetected && !dataColumn.isGenerated();
+                columnBuffers[i] = new ColumnBuffer(dataColumn, isUndecided, numberOfCategories, isValidating ? maxNumOfMsg : 1);
+            }
+            this.validationResults = isValidating ? new LinkedList<>() : null;
+        }
+
+        /**
+         * Get the number of rows added.
+         *
+         * @return number of rows
+         */
+        int getNumberOfRows() {
+            return numOfRows;
+        }
+
+        /**
+         * Add the values of a record as the next row.
+         *
+         * @param values values of the record
+         * @param lineNum line number of the record
+         */
+        void addRecord(List<String> values, int lineNum) {
+            int numOfValues = values.size();
+            for (int i = 0; i < numOfColsInDataFile; i++) {
+                ColumnBuffer columnBuffer = columnBuffers[i];
+                int colNum = columnBuffer.dataColumn.getColumnNumber();
+                if (colNum > numOfValues) {
+                    if (!isValidating) {
+                        String errMsg = String.format("Insufficient data on line %d.  Extracted %d value(s) but expected %d.", lineNum, i, numOfColsInDataFile);
+                        throw new DataReaderException(errMsg);
+                    }
+
+                    String errMsg = String.format("Line %d, column %d: Insufficient data.  Expect %d value(s) but encounter %d.", lineNum, numOfValues, numOfColsInDataFile, i + 1);
+                    ValidationResult result = new ValidationResult(ValidationCode.ERROR, MessageType.FILE_INSUFFICIENT_DATA, errMsg);
+                    result.setAttribute(ValidationAttribute.COLUMN_NUMBER, numOfValues);
+                    result.setAttribute(ValidationAttribute.LINE_NUMBER, lineNum);
+                    result.setAttribute(ValidationAttribute.EXPECTED_COUNT, numOfColsInDataFile);
+                    result.setAttribute(ValidationAttribute.ACTUAL_COUNT, i + 1);
+                    addValidationResult(result);
+
+                    // keep the columns the same length
+                    for (int j = i; j < numOfColsInDataFile; j++) {
+                        columnBuffers[j].addMissingValue();
+                    }
+                    break;
+                }
+
+                String value = values.get(colNum - 1);
+                if (value.isEmpty() || value.equals(missingDataMarker)) {
+                    columnBuffer.addMissingValue();
+                    if (value.isEmpty() && isValidating) {
+                        String errMsg = String.format("Line %d, column %d: Missing value.  No missing marker was found. Assumed value is missing.", lineNum, colNum);
+                        ValidationResult result = new ValidationResult(ValidationCode.WARNING, MessageType.FILE_MISSING_VALUE, errMsg);
+                        result.setAttribute(ValidationAttribute.COLUMN_NUMBER, colNum);
+                        result.setAttribute(ValidationAttribute.LINE_NUMBER, lineNum);
+                        addValidationResult(result);
+                    }
+                } else if (!columnBuffer.addValue(value)) {
+                    if (columnBuffer.isTypeDetected) {
+                        // only an error if the column turns out to be continuous
+                        columnBuffer.addInvalidNumber(value, lineNum);
+                    } else if (isValidating) {
+                        addValidationResult(createInvalidNumberResult(value, lineNum, colNum));
+                    } else {
+                        String errMsg = String.format("Non-continuous number %s on line %d at column %d.", value, lineNum, colNum);
+                        throw new DataReaderException(errMsg);
+                    }
+                }
+            }
+            numOfRows++;
+        }
+
+        /**
+         * Keep the problem if the chunk has fewer than the maximum number of
+         * problems, else count it.
+         */
+        private void addValidationResult(ValidationResult result) {
+            if (validationResults.size() < maxNumOfMsg) {
+                validationResults.add(result);
+            } else if (result.getCode() == ValidationCode.ERROR) {
+                numOfErrorsNotKept++;
+            } else {
+                numOfWarningsNotKept++;
+            }
+        }
+
+    }
+
+    /**
+     * Values of a column in a chunk, stored in blocks. A column of mixed data
+     * starts out undecided and keeps both its numbers and its category codes
+     * until it has more categories than allowed for a discrete column. From
+     * then on it is continuous and only its numbers are kept.
+     */
+    private static final class ColumnBuffer {
+
+        private static final int MIN_BLOCK_SIZE = 1 << 10;
+        private static final int MAX_BLOCK_SIZE = 1 << 16;
+
+        private final DataColumn dataColumn;
+        private final int numberOfCategories;
+        private final boolean isTypeDetected;
+        private final int maxNumOfInvalidNumbers;
+
+        private boolean isUndecided;
+
+        private List<double[]> numbers;
+        private double[] numberBlock;
+        private int numberBlockSize;
+
+        private List<int[]> codes;
+        private int[] codeBlock;
+        private int codeBlockSize;
+        private Map<String, Integer> categories;
+
+        private final List<String> invalidNumbers = new LinkedList<>();
+        private final List<Integer> invalidNumberLineNums = new LinkedList<>();
+        private int numOfInvalidNumbers;
+
+        private ColumnBuffer(DataColumn dataColumn, boolean isUndecided, int numberOfCategories, int maxNumOfInvalidNumbers) {
+            this.dataColumn = dataColumn;
+            this.isTypeDetected = isUndecided;
+            this.isUndecided = isUndecided;
+            this.numberOfCategories = numberOfCategories;
+            this.maxNumOfInvalidNumbers = maxNumOfInvalidNumbers;
+
+            boolean isDiscrete = !isUndecided && dataColumn.isDiscrete();
+            if (isUndecided || !isDiscrete) {
+                this.numbers = new ArrayList<>();
+            }
+            if (isUndecided || isDiscrete) {
+                this.codes = new ArrayList<>();
+                this.categories = new HashMap<>();
+            }
+        }
+
+        private void addMissingValue() {
+            if (numbers != null) {
+                addNumber(Double.NaN);
+            }
+            if (codes != null) {
+                addCode(DISCRETE_MISSING_VALUE);
+            }
+        }
+
+        /**
+         * Add a non-missing value.
+         *
+         * @return false if the column has numbers and the value is not one
+         */
+        private boolean addValue(String value) {
+            boolean isNumber = true;
+            if (numbers != null) {
+                try {
+                    addNumber(Double.parseDouble(value));
+                } catch (NumberFormatException exception) {
+                    isNumber = false;
+                    addNumber(Double.NaN);
+                }
+            }
+
+            if (codes != null) {
+                Integer code = categories.get(value);
+                if (code == null) {
+                    code = categories.size();
+                    categories.put(value, code);
+                }
+                addCode(code);
+
+                if (isUndecided && categories.size() > numberOfCategories) {
+                    // too many categories for a discrete column
+                    isUndecided = false;
+                    codes = null;
+                    codeBlock = null;
+                    categories = null;
+                }
+            }
+
+            return isNumber;
+        }
+
+        /**
+         * Keep an invalid number of a column of mixed data until it is known
+         * whether the column is continuous. Only the first ones are kept, the
+         * others are counted.
+         */
+        private void addInvalidNumber(String value, int lineNum) {
+            if (invalidNumbers.size() < maxNumOfInvalidNumbers) {
+                invalidNumbers.add(value);
+                invalidNumberLineNums.add(lineNum);
+            }
+            numOfInvalidNumbers++;
+        }
+
+        private int copyNumbers(double[] data, int row) {
+            int lastBlock = numbers.size() - 1;
+            for (int i = 0; i <= lastBlock; i++) {
+                double[] block = numbers.get(i);
+                int length = (i == lastBlock) ? numberBlockSize : block.length;
+                System.arraycopy(block, 0, data, row, length);
+                row += length;
+            }
+
+            return row;
+        }
+
+        private int copyCodes(int[] data, int row, DiscreteDataColumn discreteDataColumn) {
+            int[] encodings = new int[categories.size()];
+            categories.forEach((k, v) -> encodings[v] = discreteDataColumn.getEncodeValue(k));
+
+            int lastBlock = codes.size() - 1;
+            for (int i = 0; i <= lastBlock; i++) {
+                int[] block = codes.get(i);
+                int length = (i == lastBlock) ? codeBlockSize : block.length;
+                for (int j = 0; j < length; j++) {
+                    int code = block[j];
+                    data[row++] = (code == DISCRETE_MISSING_VALUE) ? code : encodings[code];
+                }
+            }
+
+            return row;
+        }
+
+        private void addNumber(double value) {
+            if (numberBlock == null || numberBlockSize == numberBlock.length) {
+                numberBlock = new double[(numberBlock == null) ? MIN_BLOCK_SIZE : Math.min(numberBlock.length << 1, MAX_BLOCK_SIZE)];
+                numberBlockSize = 0;
+                numbers.add(numberBlock);
+            }
+            numberBlock[numberBlockSize++] = value;
+        }
+
+        private void addCode(int code) {
+            if (codeBlock == null || codeBlockSize == codeBlock.length) {
+                codeBlock = new int[(codeBlock == null) ? MIN_BLOCK_SIZE : Math.min(codeBlock.length << 1, MAX_BLOCK_SIZE)];
+                codeBlockSize = 0;
+                codes.add(codeBlock);
+            }
+            codeBlock[codeBlockSize++] = code;
+        }
+
+    }
+
+}
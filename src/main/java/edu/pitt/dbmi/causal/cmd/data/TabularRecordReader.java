@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.pitt.dbmi.data.reader.Delimiter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The class {@code TabularRecordReader} reads delimited text one record at a
+ * time from a stream. The tokenizing rules are the same as the ones of the
+ * tabular readers of the data-reader library: blank lines and lines starting
+ * with the comment marker are skipped, values are trimmed, and delimiters
+ * within quotes are kept as part of the value.
+ *
+ * A record always ends at the end of its line, even within quotes. Only the
+ * quote state carries over to the next line: a quote left open at the end of
+ * a line is still open at the start of the next one.
+ *
+ * The records can also be read from a part of a memory-mapped file. The part
+ * has to start at the beginning of a line. Since the quote state carries over
+ * from line to line, the quote state at the start of the part has to be
+ * given, which is found by scanning the parts before it with
+ * {@link #skipToEnd()}.
+ */
+final class TabularRecordReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte SPACE_CHAR = Delimiter.SPACE.getByteValue();
+
+    private final InputStream in;
+    private final ByteBuffer source;
+    private final boolean isWhitespaceDelimiter;
+    private final byte delimChar;
+    private final byte quoteChar;
+    private final byte[] comment;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final StringBuilder dataBuilder = new StringBuilder();
+
+    private int length;
+    private int position;
+    private boolean endOfStream;
+
+    private boolean skip;
+    private boolean hasSeenNonblankChar;
+    private boolean hasQuoteChar;
+    private int cmntIndex;
+    private boolean checkForComment;
+    private byte prevChar = -1;
+
+    private int lineNum;
+    private int recordLineNum;
+
+    /**
+     * Constructor.
+     *
+     * @param in stream to read the records from
+     * @param delimiter data delimiter
+     * @param quoteCharacter quote character
+     * @param commentMarker comment marker, can be null
+     */
+    TabularRecordReader(InputStream in, Delimiter delimiter, char quoteCharacter, String commentMarker) {
+        this(in, null, delimiter, quoteCharacter, commentMarker, 1, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param source part of the file to read the records from
+     * @param delimiter data delimiter
+     * @param quoteCharacter quote character
+     * @param commentMarker comment marker, can be null
+     * @param lineNumber line number of the first line of the part
+     * @param isQuoted true if the part starts within a quote
+     */
+    TabularRecordReader(ByteBuffer source, Delimiter delimiter, char quoteCharacter, String commentMarker, int lineNumber, boolean isQuoted) {
+        this(null, source, delimiter, quoteCharacter, commentMarker, lineNumber, isQuoted);
+    }
+
+    private TabularRecordReader(InputStream in, ByteBuffer source, Delimiter delimiter, char quoteCharacter, String commentMarker, int lineNumber, boolean isQuoted) {
+        this.in = in;
+        this.source = source;
+        this.isWhitespaceDelimiter = (delimiter == Delimiter.WHITESPACE);
+        this.delimChar = delimiter.getByteValue();
+        this.quoteChar = Character.isDefined(quoteCharacter) ? (byte) quoteCharacter : -1;
+        this.comment = (commentMarker == null) ? new byte[0] : commentMarker.trim().getBytes();
+        this.checkForComment = comment.length > 0;
+        this.lineNum = lineNumber;
+        this.hasQuoteChar = isQuoted;
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @param values list to put the values of the record in
+     * @return false when there are no more records to read
+     * @throws IOException when unable to read from the stream, or when the
+     * thread is interrupted
+     */
+    boolean readRecord(List<String> values) throws IOException {
+        values.clear();
+
+        while (true) {
+            if (position == length) {
+                if (endOfStream || !fillBuffer()) {
+                    return finishLastRecord(values);
+                }
+            }
+
+            byte currChar = buffer[position++];
+            if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
+                if (currChar == LINE_FEED && prevChar == CARRIAGE_RETURN) {
+                    prevChar = LINE_FEED;
+                    continue;
+                }
+
+                boolean hasRecord = hasSeenNonblankChar && !skip;
+                if (hasRecord) {
+                    values.add(dataBuilder.toString().trim());
+                    recordLineNum = lineNum;
+                } else {
+                    values.clear();
+                }
+
+                lineNum++;
+                dataBuilder.setLength(0);
+                skip = false;
+                hasSeenNonblankChar = false;
+                cmntIndex = 0;
+                checkForComment = comment.length > 0;
+                prevChar = currChar;
+
+                if (hasRecord) {
+                    return true;
+                }
+
+                continue;
+            }
+
+            if (skip) {
+                prevChar = currChar;
+                continue;
+            }
+
+            if (currChar > SPACE_CHAR) {
+                hasSeenNonblankChar = true;
+            }
+            if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
+                continue;
+            }
+
+            if (checkForComment) {
+                if (currChar == comment[cmntIndex]) {
+                    if (++cmntIndex == comment.length) {
+                        skip = true;
+                        prevChar = currChar;
+                        continue;
+                    }
+                } else {
+                    checkForComment = false;
+                }
+            }
+
+            if (currChar == quoteChar) {
+                hasQuoteChar = !hasQuoteChar;
+            } else if (hasQuoteChar) {
+                dataBuilder.append((char) currChar);
+            } else {
+                boolean isDelimiter = isWhitespaceDelimiter
+                        ? currChar <= SPACE_CHAR && prevChar > SPACE_CHAR
+                        : currChar == delimChar;
+                if (isDelimiter) {
+                    values.add(dataBuilder.toString().trim());
+                    dataBuilder.setLength(0);
+                } else {
+                    dataBuilder.append((char) currChar);
+                }
+            }
+
+            prevChar = currChar;
+        }
+    }
+
+    /**
+     * Read through the rest of the input without extracting the values, only
+     * keeping track of the lines and of the quotes.
+     *
+     * @throws IOException when unable to read from the stream, or when the
+     * thread is interrupted
+     */
+    void skipToEnd() throws IOException {
+        while (position < length || (!endOfStream && fillBuffer())) {
+            byte currChar = buffer[position++];
+            if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
+                if (!(currChar == LINE_FEED && prevChar == CARRIAGE_RETURN)) {
+                    lineNum++;
+                    skip = false;
+                    hasSeenNonblankChar = false;
+                    cmntIndex = 0;
+                    checkForComment = comment.length > 0;
+                }
+                prevChar = currChar;
+                continue;
+            }
+
+            if (skip) {
+                prevChar = currChar;
+                continue;
+            }
+
+            if (currChar > SPACE_CHAR) {
+                hasSeenNonblankChar = true;
+            }
+            if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
+                continue;
+            }
+
+            if (checkForComment) {
+                if (currChar == comment[cmntIndex]) {
+                    if (++cmntIndex == comment.length) {
+                        skip = true;
+                        prevChar = currChar;
+                        continue;
+                    }
+                } else {
+                    checkForComment = false;
+                }
+            }
+
+            if (currChar == quoteChar) {
+                hasQuoteChar = !hasQuoteChar;
+            }
+
+            prevChar = currChar;
+        }
+    }
+
+    /**
+     * Get the line number of the last record read.
+     *
+     * @return line number of the last record read
+     */
+    int getLineNumber() {
+        return recordLineNum;
+    }
+
+    /**
+     * Get the line number of the line currently being read, or of the line
+     * after the last one when all the input has been read.
+     *
+     * @return line number of the line currently being read
+     */
+    int getCurrentLineNumber() {
+        return lineNum;
+    }
+
+    /**
+     * Test if the reading is currently within a quote.
+     *
+     * @return true if an opening quote has not been closed yet
+     */
+    boolean isQuoted() {
+        return hasQuoteChar;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    private boolean fillBuffer() throws IOException {
+        // an interrupted read must not pass for the end of the data
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Reading of records was interrupted.");
+        }
+
+        int len;
+        if (source == null) {
+            len = in.read(buffer);
+        } else if (source.hasRemaining()) {
+            len = Math.min(buffer.length, source.remaining());
+            source.get(buffer, 0, len);
+        } else {
+            len = -1;
+        }
+        if (len == -1) {
+            endOfStream = true;
+            length = 0;
+            position = 0;
+
+            return false;
+        }
+
+        length = len;
+        position = 0;
+
+        return true;
+    }
+
+    private boolean finishLastRecord(List<String> values) {
+        boolean hasRecord = hasSeenNonblankChar && !skip;
+        if (hasRecord) {
+            values.add(dataBuilder.toString().trim());
+            recordLineNum = lineNum;
+        } else {
+            values.clear();
+        }
+
+        dataBuilder.setLength(0);
+        hasSeenNonblankChar = false;
+        skip = false;
+
+        return hasRecord;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The class {@code VectorKernels} runs the numeric loops on SIMD registers
+ * through the Vector API, as many values at a time as the preferred vector
+ * shape of the CPU holds. The values left over are done one at a time.
+ *
+ * The class needs the module {@code jdk.incubator.vector} and is only loaded
+ * by {@link NumericKernels} when the module is present.
+ */
+final class VectorKernels implements Kernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public double sum(double[] x, int from, int to) {
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        int i = from;
+        for (int end = from + SPECIES.loopBound(to - from); i < end; i += SPECIES.length()) {
+            sums = sums.add(DoubleVector.fromArray(SPECIES, x, i));
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            sum += x[i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    public double dot(double[] x, double[] y, int from, int to) {
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        int i = from;
+        for (int end = from + SPECIES.loopBound(to - from); i < end; i += SPECIES.length()) {
+            sums = sums.add(DoubleVector.fromArray(SPECIES, x, i).mul(DoubleVector.fromArray(SPECIES, y, i)));
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            sum += x[i] * y[i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    public void subtract(double[] x, double value, int from, int to) {
+        int i = from;
+        for (int end = from + SPECIES.loopBound(to - from); i < end; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, i).sub(value).intoArray(x, i);
+        }
+        for (; i < to; i++) {
+            x[i] -= value;
+        }
+    }
+
+    @Override
+    public void subtract(double[] x, double[] y, int length) {
+        int i = 0;
+        for (int end = SPECIES.loopBound(length); i < end; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, i).sub(DoubleVector.fromArray(SPECIES, y, i)).intoArray(x, i);
+        }
+        for (; i < length; i++) {
+            x[i] -= y[i];
+        }
+    }
+
+    @Override
+    public void addMultiple(double a, double[] x, double[] y, int length) {
+        int i = 0;
+        for (int end = SPECIES.loopBound(length); i < end; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, i).mul(a).add(DoubleVector.fromArray(SPECIES, y, i)).intoArray(y, i);
+        }
+        for (; i < length; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+}
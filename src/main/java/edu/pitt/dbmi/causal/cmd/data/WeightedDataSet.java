@@ -0,0 +1,564 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.data.Knowledge;
+import edu.cmu.tetrad.data.VerticalIntDataBox;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.Matrix;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class {@code WeightedDataSet} is a discrete dataset whose rows each have
+ * the number of times they occur, usually the distinct rows of another
+ * dataset. Tests and scores that only count rows give the same results on it
+ * as on the rows it was collapsed from, counting each row as many times as it
+ * occurs.
+ *
+ * The subsets and copies of the dataset keep the counts of their rows. Code
+ * that does not know about the counts sees the distinct rows only, so the
+ * dataset must only be searched with tests and scores that take the counts.
+ * Rows cannot be added, removed or reordered.
+ *
+ * The tests and scores get their contingency tables from
+ * {@link #countCells(int[])}, from a cache of the tables when one is set. The
+ * values must not be changed once they are counted.
+ */
+public final class WeightedDataSet implements DataSet {
+
+    private static final long serialVersionUID = 23L;
+
+    private final DataSet dataSet;
+    private final int[] counts;
+
+    private transient volatile int[][] columns;
+    private transient volatile int[] dims;
+    private transient volatile ContingencyTables contingencyTables;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSet distinct rows
+     * @param counts number of times each row occurs
+     */
+    public WeightedDataSet(DataSet dataSet, int[] counts) {
+        if (counts == null || counts.length != dataSet.getNumRows()) {
+            throw new IllegalArgumentException("There must be a count for each row.");
+        }
+
+        this.dataSet = dataSet;
+        this.counts = counts;
+    }
+
+    /**
+     * Wrap a discrete dataset as it is, each row counted once.
+     *
+     * @param dataSet discrete dataset
+     * @return dataset of the rows, each with a count of 1
+     */
+    public static WeightedDataSet of(DataSet dataSet) {
+        int[] counts = new int[dataSet.getNumRows()];
+        Arrays.fill(counts, 1);
+
+        return new WeightedDataSet(dataSet, counts);
+    }
+
+    /**
+     * Collapse the identical rows of a discrete dataset. The distinct rows are
+     * kept in the order they first occur.
+     *
+     * @param dataSet discrete dataset
+     * @return dataset of the distinct rows and their counts
+     */
+    public static WeightedDataSet collapse(DataSet dataSet) {
+        int numOfRows = dataSet.getNumRows();
+        int numOfCols = dataSet.getNumColumns();
+        int[][] columns = getColumns(dataSet);
+
+        // open addressing, at most half full
+        int capacity = Integer.highestOneBit(Math.max(numOfRows, 1)) << 2;
+        int mask = capacity - 1;
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, -1);
+
+        int[] firstRows = new int[numOfRows];
+        int[] counts = new int[numOfRows];
+        int numOfDistinctRows = 0;
+        for (int row = 0; row < numOfRows; row++) {
+            int slot = hash(columns, row) & mask;
+            while (true) {
+                int distinctRow = slots[slot];
+                if (distinctRow < 0) {
+                    slots[slot] = numOfDistinctRows;
+                    firstRows[numOfDistinctRows] = row;
+                    counts[numOfDistinctRows++] = 1;
+                    break;
+                }
+                if (isEqual(columns, firstRows[distinctRow], row)) {
+                    counts[distinctRow]++;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        int[][] distinctColumns = new int[numOfCols][numOfDistinctRows];
+        for (int col = 0; col < numOfCols; col++) {
+            int[] column = columns[col];
+            int[] distinctColumn = distinctColumns[col];
+            for (int i = 0; i < numOfDistinctRows; i++) {
+                distinctColumn[i] = column[firstRows[i]];
+            }
+        }
+
+        DataSet distinctRows = new BoxDataSet(new VerticalIntDataBox(distinctColumns), dataSet.getVariables());
+        distinctRows.setName(dataSet.getName());
+        distinctRows.setKnowledge(dataSet.getKnowledge());
+
+        return new WeightedDataSet(distinctRows, Arrays.copyOf(counts, numOfDistinctRows));
+    }
+
+    /**
+     * Get the number of times each row occurs.
+     *
+     * @return count of each row
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    /**
+     * Get the number of rows the dataset was collapsed from.
+     *
+     * @return sum of the counts
+     */
+    public int getSampleSize() {
+        int sampleSize = 0;
+        for (int count : counts) {
+            sampleSize += count;
+        }
+
+        return sampleSize;
+    }
+
+    /**
+     * Get the values of the distinct rows, column by column. The columns are
+     * shared with the dataset when it is stored column by column, and are
+     * otherwise copied once.
+     *
+     * @return column values
+     */
+    public int[][] getColumns() {
+        int[][] values = columns;
+        if (values == null) {
+            values = getColumns(dataSet);
+            columns = values;
+        }
+
+        return values;
+    }
+
+    /**
+     * Get the number of categories of each variable.
+     *
+     * @return number of categories by column
+     */
+    public int[] getNumCategories() {
+        int[] numCategories = dims;
+        if (numCategories == null) {
+            numCategories = new int[dataSet.getNumColumns()];
+            for (int i = 0; i < numCategories.length; i++) {
+                numCategories[i] = ((DiscreteVariable) dataSet.getVariable(i)).getNumCategories();
+            }
+            dims = numCategories;
+        }
+
+        return numCategories;
+    }
+
+    /**
+     * Cache the contingency tables of the dataset. The subsets and copies of
+     * the dataset do not share the cache.
+     *
+     * @param maxBytes memory ceiling of the cached tables
+     * @return cache of the contingency tables
+     */
+    public ContingencyTables cacheContingencyTables(long maxBytes) {
+        contingencyTables = new ContingencyTables(getColumns(), counts, getNumCategories(), maxBytes);
+
+        return contingencyTables;
+    }
+
+    /**
+     * Get the cache of the contingency tables.
+     *
+     * @return cache of the contingency tables, null if not cached
+     */
+    public ContingencyTables getContingencyTables() {
+        return contingencyTables;
+    }
+
+    /**
+     * Count the combinations of values of variables, each row as many times as
+     * it occurs. The value of the last variable changes the fastest, and rows
+     * missing a value of any of the variables are not counted. The table must
+     * not be modified.
+     *
+     * @param variables column indices of the variables, all different
+     * @return contingency table of the variables
+     */
+    public int[] countCells(int[] variables) {
+        ContingencyTables tables = contingencyTables;
+
+        return (tables == null)
+                ? ContingencyTables.count(getColumns(), counts, getNumCategories(), variables)
+                : tables.getTable(variables);
+    }
+
+    /**
+     * Get the distinct rows without their counts.
+     *
+     * @return dataset of the distinct rows
+     */
+    public DataSet getDistinctRows() {
+        return dataSet;
+    }
+
+    @Override
+    public DataSet subsetRowsColumns(int[] rows, int[] columns) {
+        return new WeightedDataSet(dataSet.subsetRowsColumns(rows, columns), selectCounts(rows));
+    }
+
+    @Override
+    public DataSet subsetColumns(List<Node> vars) {
+        return new WeightedDataSet(dataSet.subsetColumns(vars), counts);
+    }
+
+    @Override
+    public DataSet subsetColumns(int[] columns) {
+        return new WeightedDataSet(dataSet.subsetColumns(columns), counts);
+    }
+
+    @Override
+    public DataSet subsetRows(int[] rows) {
+        return new WeightedDataSet(dataSet.subsetRows(rows), selectCounts(rows));
+    }
+
+    @Override
+    public DataSet copy() {
+        return new WeightedDataSet(dataSet.copy(), counts.clone());
+    }
+
+    @Override
+    public DataSet like() {
+        return new WeightedDataSet(dataSet.like(), new int[counts.length]);
+    }
+
+    @Override
+    public void addVariable(Node variable) {
+        dataSet.addVariable(variable);
+    }
+
+    @Override
+    public void addVariable(int index, Node variable) {
+        dataSet.addVariable(index, variable);
+    }
+
+    @Override
+    public void changeVariable(Node from, Node to) {
+        dataSet.changeVariable(from, to);
+    }
+
+    @Override
+    public void clearSelection() {
+        dataSet.clearSelection();
+    }
+
+    @Override
+    public void ensureColumns(int columns, List<String> excludedVariableNames) {
+        dataSet.ensureColumns(columns, excludedVariableNames);
+    }
+
+    @Override
+    public boolean existsMissingValue() {
+        return dataSet.existsMissingValue();
+    }
+
+    @Override
+    public void ensureRows(int rows) {
+        if (rows > counts.length) {
+            throw new UnsupportedOperationException("Rows cannot be added to a weighted dataset.");
+        }
+    }
+
+    @Override
+    public int getColumn(Node variable) {
+        return dataSet.getColumn(variable);
+    }
+
+    @Override
+    public Matrix getCorrelationMatrix() {
+        throw new UnsupportedOperationException("A weighted dataset is discrete.");
+    }
+
+    @Override
+    public Matrix getCovarianceMatrix() {
+        throw new UnsupportedOperationException("A weighted dataset is discrete.");
+    }
+
+    @Override
+    public double getDouble(int row, int column) {
+        return dataSet.getDouble(row, column);
+    }
+
+    @Override
+    public Matrix getDoubleData() {
+        return dataSet.getDoubleData();
+    }
+
+    @Override
+    public int getInt(int row, int column) {
+        return dataSet.getInt(row, column);
+    }
+
+    @Override
+    public String getName() {
+        return dataSet.getName();
+    }
+
+    @Override
+    public void setName(String name) {
+        dataSet.setName(name);
+    }
+
+    @Override
+    public int getNumColumns() {
+        return dataSet.getNumColumns();
+    }
+
+    @Override
+    public int getNumRows() {
+        return dataSet.getNumRows();
+    }
+
+    @Override
+    public Object getObject(int row, int col) {
+        return dataSet.getObject(row, col);
+    }
+
+    @Override
+    public int[] getSelectedIndices() {
+        return dataSet.getSelectedIndices();
+    }
+
+    @Override
+    public Node getVariable(int column) {
+        return dataSet.getVariable(column);
+    }
+
+    @Override
+    public Node getVariable(String name) {
+        return dataSet.getVariable(name);
+    }
+
+    @Override
+    public List<String> getVariableNames() {
+        return dataSet.getVariableNames();
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return dataSet.getVariables();
+    }
+
+    @Override
+    public boolean isContinuous() {
+        return dataSet.isContinuous();
+    }
+
+    @Override
+    public boolean isDiscrete() {
+        return dataSet.isDiscrete();
+    }
+
+    @Override
+    public boolean isMixed() {
+        return dataSet.isMixed();
+    }
+
+    @Override
+    public boolean isSelected(Node variable) {
+        return dataSet.isSelected(variable);
+    }
+
+    @Override
+    public void removeColumn(int index) {
+        dataSet.removeColumn(index);
+    }
+
+    @Override
+    public void removeColumn(Node variable) {
+        dataSet.removeColumn(variable);
+    }
+
+    @Override
+    public void removeCols(int[] selectedCols) {
+        dataSet.removeCols(selectedCols);
+    }
+
+    @Override
+    public void removeRows(int[] selectedRows) {
+        throw new UnsupportedOperationException("Rows cannot be removed from a weighted dataset.");
+    }
+
+    @Override
+    public void setDouble(int row, int column, double value) {
+        dataSet.setDouble(row, column, value);
+    }
+
+    @Override
+    public void setInt(int row, int col, int value) {
+        dataSet.setInt(row, col, value);
+    }
+
+    @Override
+    public void setObject(int row, int col, Object value) {
+        dataSet.setObject(row, col, value);
+    }
+
+    @Override
+    public void setSelected(Node variable, boolean selected) {
+        dataSet.setSelected(variable, selected);
+    }
+
+    @Override
+    public NumberFormat getNumberFormat() {
+        return dataSet.getNumberFormat();
+    }
+
+    @Override
+    public void setNumberFormat(NumberFormat nf) {
+        dataSet.setNumberFormat(nf);
+    }
+
+    @Override
+    public void setOutputDelimiter(Character character) {
+        dataSet.setOutputDelimiter(character);
+    }
+
+    @Override
+    public void permuteRows() {
+        throw new UnsupportedOperationException("Rows of a weighted dataset cannot be reordered.");
+    }
+
+    @Override
+    public Map<String, String> getColumnToTooltip() {
+        return dataSet.getColumnToTooltip();
+    }
+
+    @Override
+    public Knowledge getKnowledge() {
+        return dataSet.getKnowledge();
+    }
+
+    @Override
+    public void setKnowledge(Knowledge knowledge) {
+        dataSet.setKnowledge(knowledge);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof WeightedDataSet)) {
+            return false;
+        }
+
+        WeightedDataSet other = (WeightedDataSet) obj;
+
+        return Arrays.equals(counts, other.counts) && dataSet.equals(other.dataSet);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * dataSet.hashCode() + Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        return dataSet.toString();
+    }
+
+    private int[] selectCounts(int[] rows) {
+        int[] selectedCounts = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            selectedCounts[i] = counts[rows[i]];
+        }
+
+        return selectedCounts;
+    }
+
+    private static int[][] getColumns(DataSet dataSet) {
+        if (dataSet instanceof BoxDataSet) {
+            DataBox dataBox = ((BoxDataSet) dataSet).getDataBox();
+            if (dataBox instanceof VerticalIntDataBox) {
+                return ((VerticalIntDataBox) dataBox).getVariableVectors();
+            }
+        }
+
+        int numOfRows = dataSet.getNumRows();
+        int[][] columns = new int[dataSet.getNumColumns()][numOfRows];
+        for (int col = 0; col < columns.length; col++) {
+            for (int row = 0; row < numOfRows; row++) {
+                columns[col][row] = dataSet.getInt(row, col);
+            }
+        }
+
+        return columns;
+    }
+
+    private static int hash(int[][] columns, int row) {
+        int hash = 1;
+        for (int[] column : columns) {
+            hash = 31 * hash + column[row];
+        }
+        hash *= 0x9E3779B9;
+
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean isEqual(int[][] columns, int row1, int row2) {
+        for (int[] column : columns) {
+            if (column[row1] != column[row2]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
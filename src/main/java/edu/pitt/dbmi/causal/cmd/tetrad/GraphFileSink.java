@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.tetrad;
+
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.util.GraphSampling;
+import edu.cmu.tetrad.util.Params;
+import edu.pitt.dbmi.algo.resampling.ResamplingEdgeEnsemble;
+import edu.pitt.dbmi.causal.cmd.CmdArgs;
+import edu.pitt.dbmi.causal.cmd.util.FileUtils;
+import edu.pitt.dbmi.causal.cmd.util.GraphIO;
+import edu.pitt.dbmi.causal.cmd.util.LogMessages;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The class {@code GraphFileSink} writes out each result graph as soon as it
+ * is produced. The JSON file of the graph is written right away, and the text
+ * of the graph is spooled to a file of its own in a spool directory under the
+ * output directory. The spooled graphs are written to the output text file,
+ * in the order of the run, once the search is done, and the spool directory
+ * is deleted.
+ * <p>
+ * A run that can be resumed spools to its checkpoint directory instead, which
+ * also holds a manifest of the run configuration. A resumable run that is
+ * interrupted leaves its checkpoint behind, and the same run can be resumed
+ * from it, skipping the searches whose graphs are already there. The spool
+ * directory of any other run is deleted however the run ends.
+ */
+public class GraphFileSink implements GraphSink, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphFileSink.class);
+
+    private static final String MANIFEST_FILE = "manifest.txt";
+
+    private static final String SEED_ENTRY = String.format("parameter %s: ", Params.SEED);
+
+    private static final Pattern GRAPH_FILE = Pattern.compile("graph_(\\d+)\\.txt");
+
+    private final CmdArgs cmdArgs;
+
+    private final Path checkpointDirectory;
+
+    private final NavigableSet<Integer> indices;
+
+    private boolean graphsWritten;
+
+    /**
+     * Constructor. The checkpoint of an earlier run is picked up if the run is
+     * resumed and the checkpoint is of the same run configuration, else it is
+     * cleared. A run that is not resumed spools to a temporary directory.
+     *
+     * @param cmdArgs command-line inputs
+     * @param out output stream to write message to
+     * @throws IOException when unable to read or write the checkpoint
+     */
+    public GraphFileSink(CmdArgs cmdArgs, PrintStream out) throws IOException {
+        this.cmdArgs = cmdArgs;
+        this.indices = new ConcurrentSkipListSet<>();
+
+        if (!cmdArgs.isResume()) {
+            this.checkpointDirectory = Files.createTempDirectory(cmdArgs.getOutDirectory(), cmdArgs.getFilePrefix() + "_spool");
+
+            return;
+        }
+
+        this.checkpointDirectory = getCheckpointDirectory(cmdArgs);
+
+        List<String> manifest = getManifest(cmdArgs);
+        Path manifestFile = checkpointDirectory.resolve(MANIFEST_FILE);
+        if (!Files.exists(manifestFile)) {
+            String msg = String.format("No checkpoint %s to resume from; starting over.", checkpointDirectory);
+            LogMessages.logMessage(msg, LOGGER, out);
+        } else if (!manifest.equals(Files.readAllLines(manifestFile, StandardCharsets.UTF_8))) {
+            String msg = String.format("Checkpoint %s is of a different run configuration; starting over.", checkpointDirectory);
+            LogMessages.logMessage(msg, LOGGER, out);
+        } else {
+            readInCheckpoint();
+
+            String msg = String.format("Resuming from checkpoint %s: %d result graphs are already done.", checkpointDirectory, indices.size());
+            LogMessages.logMessage(msg, LOGGER, out);
+
+            return;
+        }
+
+        deleteCheckpoint();
+        Files.createDirectories(checkpointDirectory);
+        Files.write(manifestFile, manifest, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void accept(int index, Graph graph) throws IOException {
+        graph = applyEnsemble(graph);
+
+        if (cmdArgs.isJsonGraph()) {
+            String prefix = cmdArgs.getFilePrefix();
+            String fileName = (index > 0)
+                    ? String.format("%s_graph_%d.json", prefix, index)
+                    : String.format("%s_graph.json", prefix);
+
+            Path outGraphFile = Paths.get(cmdArgs.getOutDirectory().toString(), fileName);
+            if (Files.exists(outGraphFile)) {
+                Files.deleteIfExists(outGraphFile);
+            }
+
+            GraphIO.writeAsJSON(graph, outGraphFile);
+        }
+
+        // the graph file shows up whole, and only once the JSON file is written
+        Path graphFile = getGraphFile(index);
+        Path partFile = checkpointDirectory.resolve(graphFile.getFileName() + ".part");
+        Files.write(partFile, graph.toString().trim().getBytes(StandardCharsets.UTF_8));
+        Files.move(partFile, graphFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        indices.add(index);
+    }
+
+    @Override
+    public boolean hasGraph(int index) {
+        return indices.contains(index);
+    }
+
+    /**
+     * Write out the spooled graphs, in the order of the run.
+     *
+     * @param out output stream to write the graphs to
+     * @throws IOException when unable to read a spooled graph
+     */
+    public void writeGraphs(PrintStream out) throws IOException {
+        out.println();
+        out.println("================================================================================");
+
+        for (Integer index : indices) {
+            if (index > indices.first()) {
+                out.println("--------------------------------------------------------------------------------");
+            }
+
+            Files.copy(getGraphFile(index), out);
+            out.println();
+        }
+
+        graphsWritten = true;
+    }
+
+    /**
+     * Get the seed of the run that left the checkpoint, so that a resumed run
+     * can draw the same seeds.
+     *
+     * @param cmdArgs command-line inputs
+     * @return seed of the checkpoint, or null if there is none
+     */
+    public static Long getCheckpointSeed(CmdArgs cmdArgs) {
+        Path manifestFile = getCheckpointDirectory(cmdArgs).resolve(MANIFEST_FILE);
+        try {
+            if (Files.exists(manifestFile)) {
+                for (String entry : Files.readAllLines(manifestFile, StandardCharsets.UTF_8)) {
+                    if (entry.startsWith(SEED_ENTRY)) {
+                        return Long.valueOf(entry.substring(SEED_ENTRY.length()));
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException exception) {
+            LOGGER.error(String.format("Unable to read the seed of checkpoint %s.", manifestFile), exception);
+        }
+
+        return null;
+    }
+
+    private static Path getCheckpointDirectory(CmdArgs cmdArgs) {
+        return cmdArgs.getOutDirectory().resolve(cmdArgs.getFilePrefix() + "_checkpoint");
+    }
+
+    /**
+     * Get the manifest of everything the result graphs depend on: the
+     * algorithm, the input files, how the data is read in, the parameters and
+     * the graph manipulations. The number of threads is left out since it
+     * does not change the graphs.
+     *
+     * @param cmdArgs command-line inputs
+     * @return entries of the manifest
+     * @throws IOException when unable to read the attributes of an input file
+     */
+    private static List<String> getManifest(CmdArgs cmdArgs) throws IOException {
+        List<String> manifest = new LinkedList<>();
+        manifest.add("algorithm: " + describe(cmdArgs.getAlgorithmClass()));
+        manifest.add("test: " + describe(cmdArgs.getTestClass()));
+        manifest.add("score: " + describe(cmdArgs.getScoreClass()));
+        for (Path dataFile : cmdArgs.getDatasetFiles()) {
+            manifest.add("dataset: " + describe(dataFile));
+        }
+        manifest.add("knowledge: " + describe(cmdArgs.getKnowledgeFile()));
+        manifest.add("external graph: " + describe(cmdArgs.getExternalGraphFile()));
+        manifest.add("exclude variables: " + describe(cmdArgs.getExcludeVariableFile()));
+        manifest.add("metadata: " + describe(cmdArgs.getMetadataFile()));
+        manifest.add("data type: " + cmdArgs.getDataType());
+        manifest.add("delimiter: " + cmdArgs.getDelimiter());
+        manifest.add("quote char: " + (int) cmdArgs.getQuoteChar());
+        manifest.add("missing marker: " + cmdArgs.getMissingValueMarker());
+        manifest.add("comment marker: " + cmdArgs.getCommentMarker());
+        manifest.add("header: " + cmdArgs.isHasHeader());
+        manifest.add("number of categories: " + cmdArgs.getNumCategories());
+        manifest.add("category sample size: " + cmdArgs.getCategorySampleSize());
+        manifest.add("row filter: " + cmdArgs.getRowFilter());
+        manifest.add("row limit: " + cmdArgs.getRowLimit());
+        manifest.add("row sample: " + cmdArgs.getRowSampleSize());
+        if (cmdArgs.getRowSampleSize() > 0) {
+            manifest.add("row sample seed: " + cmdArgs.getRowSampleSeed());
+        }
+        cmdArgs.getParameters().forEach((param, value) -> {
+            if (!(Params.NUM_THREADS.equals(param) || Params.BOOTSTRAPPING_NUM_THREADS.equals(param))) {
+                manifest.add(String.format("parameter %s: %s", param, value));
+            }
+        });
+        manifest.add("json graph: " + cmdArgs.isJsonGraph());
+        manifest.add("choose dag in pattern: " + cmdArgs.isChooseDagInPattern());
+        manifest.add("choose mag in pag: " + cmdArgs.isChooseMagInPag());
+        manifest.add("generate pattern from dag: " + cmdArgs.isGeneratePatternFromDag());
+        manifest.add("generate pag from dag: " + cmdArgs.isGeneratePagFromDag());
+        manifest.add("generate pag from tsdag: " + cmdArgs.isGeneratePagFromTsDag());
+        manifest.add("make bidirected undirected: " + cmdArgs.isMakeBidirectedUndirected());
+        manifest.add("make undirected bidirected: " + cmdArgs.isMakeUndirectedBidirected());
+        manifest.add("make all edges undirected: " + cmdArgs.isMakeAllEdgesUndirected());
+        manifest.add("generate complete graph: " + cmdArgs.isGenerateCompleteGraph());
+        manifest.add("extract struct model: " + cmdArgs.isExtractStructModel());
+
+        return manifest;
+    }
+
+    private static String describe(Class clazz) {
+        return (clazz == null) ? "none" : clazz.getName();
+    }
+
+    private static String describe(Path file) throws IOException {
+        if (file == null) {
+            return "none";
+        } else if (FileUtils.isStream(file)) {
+            return file.toString();
+        } else {
+            return String.format("%s (%d bytes, modified %s)", file.toAbsolutePath(), Files.size(file), Files.getLastModifiedTime(file));
+        }
+    }
+
+    /**
+     * Pick up the graphs already in the checkpoint. Graph files left half
+     * written are not picked up.
+     *
+     * @throws IOException when unable to list the checkpoint directory
+     */
+    private void readInCheckpoint() throws IOException {
+        try (DirectoryStream<Path> checkpointFiles = Files.newDirectoryStream(checkpointDirectory)) {
+            for (Path checkpointFile : checkpointFiles) {
+                Matcher matcher = GRAPH_FILE.matcher(checkpointFile.getFileName().toString());
+                if (matcher.matches()) {
+                    indices.add(Integer.valueOf(matcher.group(1)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply the resampling ensemble method given on the command-line, if any.
+     *
+     * @param graph result graph
+     * @return graph to display
+     */
+    private Graph applyEnsemble(Graph graph) {
+        if (cmdArgs.isHasEnsembleOption()) {
+            String ensemble = cmdArgs.getParameters().get(Params.RESAMPLING_ENSEMBLE);
+            if (ensemble != null) {
+                try {
+                    int ensembleValue = Integer.parseInt(ensemble);
+
+                    // Ensemble method: Preserved (1), Highest (2), Majority (3)
+                    if (ensembleValue == 1) {
+                        graph = GraphSampling.createDisplayGraph(graph, ResamplingEdgeEnsemble.Preserved);
+                    } else if (ensembleValue == 2) {
+                        graph = GraphSampling.createDisplayGraph(graph, ResamplingEdgeEnsemble.Highest);
+                    } else if (ensembleValue == 3) {
+                        graph = GraphSampling.createDisplayGraph(graph, ResamplingEdgeEnsemble.Majority);
+                    }
+                } catch (NumberFormatException exception) {
+                    exception.printStackTrace(System.err);
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    private Path getGraphFile(int index) {
+        return checkpointDirectory.resolve(String.format("graph_%d.txt", index));
+    }
+
+    private void deleteCheckpoint() throws IOException {
+        if (Files.isDirectory(checkpointDirectory)) {
+            try (DirectoryStream<Path> checkpointFiles = Files.newDirectoryStream(checkpointDirectory)) {
+                for (Path checkpointFile : checkpointFiles) {
+                    Files.deleteIfExists(checkpointFile);
+                }
+            }
+            Files.deleteIfExists(checkpointDirectory);
+        }
+    }
+
+    /**
+     * Delete the checkpoint once the graphs are written out. The checkpoint
+     * of a resumable run that did not finish is kept, so that the run can be
+     * resumed. The spool directory of any other run is always deleted.
+     *
+     * @throws IOException when unable to delete the checkpoint directory
+     */
+    @Override
+    public void close() throws IOException {
+        if (graphsWritten || !cmdArgs.isResume()) {
+            deleteCheckpoint();
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.tetrad;
+
+import edu.cmu.tetrad.graph.Graph;
+import java.io.IOException;
+
+/**
+ * The interface {@code GraphSink} takes the result graphs of a run as soon as
+ * the searches produce them, so that the run does not have to hold on to them.
+ * The graphs can be given from several worker threads at once, each with its
+ * index in the run.
+ */
+@FunctionalInterface
+public interface GraphSink {
+
+    /**
+     * Take a result graph.
+     *
+     * @param index index of the graph in the run
+     * @param graph result graph
+     * @throws IOException when unable to write out the graph
+     */
+    void accept(int index, Graph graph) throws IOException;
+
+    /**
+     * Test if the sink already has the graph of the given index, from an
+     * earlier run that is resumed.
+     *
+     * @param index index of the graph in the run
+     * @return true if the search of the graph can be skipped
+     */
+    default boolean hasGraph(int index) {
+        return false;
+    }
+
+}
@@ -24,6 +24,7 @@ import edu.cmu.tetrad.annotation.TestOfIndependence;
 import edu.cmu.tetrad.annotation.TestOfIndependenceAnnotations;
 import edu.cmu.tetrad.data.DataType;
 import edu.pitt.dbmi.causal.cmd.CausalCmdApplication;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.LinkedList;
@@ -232,4 +233,16 @@ public final class TetradIndependenceTests {
                 : "";
     }
 
+    /**
+     * Determine if the given test of independence can be computed from a covariance
+     * matrix.
+     *
+     * @param clazz test-of-independence class
+     * @return true if the test of independence takes covariance data
+     */
+    public boolean takesCovariance(Class clazz) {
+        return (clazz != null && clazz.isAnnotationPresent(TestOfIndependence.class))
+                && Arrays.asList(((TestOfIndependence) clazz.getAnnotation(TestOfIndependence.class)).dataType()).contains(DataType.Covariance);
+    }
+
 }
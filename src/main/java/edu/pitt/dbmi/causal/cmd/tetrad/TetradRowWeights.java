@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.tetrad;
+
+import edu.cmu.tetrad.algcomparison.independence.ChiSquare;
+import edu.cmu.tetrad.algcomparison.independence.GSquare;
+import edu.cmu.tetrad.algcomparison.independence.IndependenceWrapper;
+import edu.cmu.tetrad.algcomparison.score.BdeuScore;
+import edu.cmu.tetrad.algcomparison.score.ScoreWrapper;
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.IndependenceTest;
+import edu.cmu.tetrad.search.score.Score;
+import edu.cmu.tetrad.search.test.ChiSquareTest;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+import edu.pitt.dbmi.causal.cmd.data.WeightedDataSet;
+
+/**
+ * The class {@code TetradRowWeights} is a utility class for searching
+ * {@link WeightedDataSet}s, datasets of distinct rows and their counts. Only
+ * the tests and scores that count rows can take the counts.
+ */
+public final class TetradRowWeights {
+
+    private TetradRowWeights() {
+    }
+
+    /**
+     * Test if the test and the score of an algorithm take the counts of the
+     * rows of a weighted dataset.
+     *
+     * @param testClass test of independence, null if not used
+     * @param scoreClass score, null if not used
+     * @return true if the counts can be used
+     */
+    public static boolean takesRowWeights(Class<? extends IndependenceWrapper> testClass, Class<? extends ScoreWrapper> scoreClass) {
+        boolean testTakesWeights = testClass == null
+                || testClass == ChiSquare.class
+                || testClass == GSquare.class;
+        boolean scoreTakesWeights = scoreClass == null
+                || scoreClass == BdeuScore.class;
+
+        return testTakesWeights && scoreTakesWeights;
+    }
+
+    /**
+     * Get the test of independence that takes the counts of the rows.
+     *
+     * @param testClass test of independence
+     * @return test taking the counts, null if no test is used
+     */
+    public static IndependenceWrapper getTest(Class<? extends IndependenceWrapper> testClass) {
+        if (testClass == null) {
+            return null;
+        } else if (testClass == ChiSquare.class) {
+            return new WeightedChiSquare();
+        } else if (testClass == GSquare.class) {
+            return new WeightedGSquare();
+        } else {
+            throw new IllegalArgumentException(String.format("Test %s does not take row weights.", testClass.getName()));
+        }
+    }
+
+    /**
+     * Get the score that takes the counts of the rows.
+     *
+     * @param scoreClass score
+     * @return score taking the counts, null if no score is used
+     */
+    public static ScoreWrapper getScore(Class<? extends ScoreWrapper> scoreClass) {
+        if (scoreClass == null) {
+            return null;
+        } else if (scoreClass == BdeuScore.class) {
+            return new WeightedBdeu();
+        } else {
+            throw new IllegalArgumentException(String.format("Score %s does not take row weights.", scoreClass.getName()));
+        }
+    }
+
+    /**
+     * Chi-square test counting each row of a weighted dataset as many times as
+     * it occurs.
+     */
+    public static class WeightedChiSquare extends ChiSquare {
+
+        private static final long serialVersionUID = 23L;
+
+        @Override
+        public IndependenceTest getTest(DataModel dataModel, Parameters parameters) {
+            if (dataModel instanceof WeightedDataSet) {
+                WeightedChiSquareTest test = new WeightedChiSquareTest((WeightedDataSet) dataModel, parameters.getDouble(Params.ALPHA), ChiSquareTest.TestType.CHI_SQUARE);
+                test.setMinCountPerCell(parameters.getDouble(Params.MIN_COUNT_PER_CELL));
+
+                return test;
+            }
+
+            return super.getTest(dataModel, parameters);
+        }
+
+    }
+
+    /**
+     * G-square test counting each row of a weighted dataset as many times as
+     * it occurs. The significance level is read from the alpha parameter.
+     */
+    public static class WeightedGSquare extends GSquare {
+
+        private static final long serialVersionUID = 23L;
+
+        @Override
+        public IndependenceTest getTest(DataModel dataModel, Parameters parameters) {
+            if (dataModel instanceof WeightedDataSet) {
+                WeightedChiSquareTest test = new WeightedChiSquareTest((WeightedDataSet) dataModel, parameters.getDouble(Params.ALPHA), ChiSquareTest.TestType.G_SQUARE);
+                test.setMinCountPerCell(parameters.getDouble(Params.MIN_COUNT_PER_CELL));
+
+                return test;
+            }
+
+            return super.getTest(dataModel, parameters);
+        }
+
+    }
+
+    /**
+     * BDeu score counting each row of a weighted dataset as many times as it
+     * occurs.
+     */
+    public static class WeightedBdeu extends BdeuScore {
+
+        private static final long serialVersionUID = 23L;
+
+        private DataModel dataModel;
+
+        @Override
+        public Score getScore(DataModel dataModel, Parameters parameters) {
+            this.dataModel = dataModel;
+            if (dataModel instanceof WeightedDataSet) {
+                WeightedBdeuScore score = new WeightedBdeuScore((WeightedDataSet) dataModel);
+                score.setSamplePrior(parameters.getDouble(Params.PRIOR_EQUIVALENT_SAMPLE_SIZE));
+                score.setStructurePrior(parameters.getDouble(Params.STRUCTURE_PRIOR));
+
+                return score;
+            }
+
+            return super.getScore(dataModel, parameters);
+        }
+
+        @Override
+        public Node getVariable(String name) {
+            return dataModel.getVariable(name);
+        }
+
+    }
+
+}
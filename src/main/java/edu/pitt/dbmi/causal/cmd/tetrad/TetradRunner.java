@@ -38,37 +38,58 @@ import edu.cmu.tetrad.graph.NodeType;
 import edu.cmu.tetrad.search.utils.DagToPag;
 import edu.cmu.tetrad.search.utils.TsDagToPag;
 import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
 import edu.pitt.dbmi.causal.cmd.AlgorithmRunException;
 import edu.pitt.dbmi.causal.cmd.CmdArgs;
+import edu.pitt.dbmi.causal.cmd.ValidationException;
+import edu.pitt.dbmi.causal.cmd.data.ContingencyTables;
 import edu.pitt.dbmi.causal.cmd.data.DataFiles;
+import edu.pitt.dbmi.causal.cmd.data.WeightedDataSet;
 import edu.pitt.dbmi.causal.cmd.util.DateTime;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
 import java.rmi.MarshalledObject;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * The class {@code TetradRunner} is a class for handling running Tetrad search
- * algorithms.
+ * algorithms. The runner owns a pool of worker threads, sized by the number of
+ * threads given on the command-line, that is shared by every stage of the run.
+ * The pool is shut down when the runner is closed.
  *
  * Oct 23, 2017 11:24:07 AM
  *
  * @author Kevin V. Bui (kvb2@pitt.edu)
  */
-public class TetradRunner {
+public class TetradRunner implements AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TetradRunner.class);
 
     private final CmdArgs cmdArgs;
 
-    private final List<Graph> graphs;
+    private final ExecutorService executorService;
 
     /**
      * Constructor.
@@ -77,37 +98,25 @@ public class TetradRunner {
      */
     public TetradRunner(CmdArgs cmdArgs) {
         this.cmdArgs = cmdArgs;
-        this.graphs = new LinkedList<>();
+        this.executorService = Executors.newFixedThreadPool(cmdArgs.getNumOfThreads(), new WorkerThreadFactory());
     }
 
     /**
-     * Run algorithm.
+     * Run algorithm. Each result graph is manipulated and given to the sink as
+     * soon as its search is done.
      *
      * @param out output stream to write message to
+     * @param graphSink sink taking the result graphs
      * @throws AlgorithmRunException when algorithm run fails
-     * @throws IOException when unable to read knowledge file
+     * @throws IOException when unable to read in the files or write out a
+     * graph
+     * @throws ValidationException when dataset validation fails
      */
-    public void runAlgorithm(PrintStream out) throws Exception {
-        final List<DataModel> dataModels = DataFiles.readInDatasets(cmdArgs, out);
-        final Algorithm algorithm = getAlgorithm(cmdArgs);
+    public void runAlgorithm(PrintStream out, GraphSink graphSink) throws AlgorithmRunException, IOException, ValidationException {
+        final List<DataModel> dataModels = DataFiles.readInDatasets(cmdArgs, executorService, out);
         final Knowledge knowledge = DataFiles.readInKnowledge(cmdArgs, out);
         final Graph externalGraph = DataFiles.readInExternalGraph(cmdArgs, out);
-
-        final boolean takesKnowledge = TetradAlgorithms.getInstance().takesKnowledge(cmdArgs.getAlgorithmClass());
-        final boolean hasKnowledge = !(knowledge == null || knowledge.getVariables().isEmpty());
-
-        final boolean takesExternalGraph = TetradAlgorithms.getInstance().takesExternalGraph(cmdArgs.getAlgorithmClass());
-        final boolean hasExternalGraph = !(externalGraph == null || externalGraph.getEdges().isEmpty());
-
-        // add knowledge, if any
-        if (takesKnowledge && hasKnowledge) {
-            ((HasKnowledge) algorithm).setKnowledge(knowledge);
-        }
-
-        // add external graph, if any
-        if (takesExternalGraph && hasExternalGraph) {
-            ((TakesExternalGraph) algorithm).setExternalGraph(new SingleGraphAlg(externalGraph));
-        }
+        final Algorithm algorithm = getAlgorithm(cmdArgs, dataModels, knowledge, externalGraph);
 
         final Parameters parameters = Tetrad.getParameters(cmdArgs);
         parameters.set("printStream", out);
@@ -128,14 +137,33 @@ public class TetradRunner {
             out.println("--------------------------------------------------------------------------------");
         }
 
-        List<Graph> graphList = runSearch(algorithm, parameters, dataModels);
+        runSearch(algorithm, parameters, dataModels, knowledge, externalGraph, graphSink);
 
         if (verbose) {
             out.println("--------------------------------------------------------------------------------");
         }
         out.printf("End search: %s%n", DateTime.printNow());
+        writeContingencyCacheStatistics(dataModels, out);
+    }
 
-        graphList.forEach(graph -> graphs.add(manipulateGraph(graph)));
+    /**
+     * Write out how often the search found the contingency tables of the
+     * datasets in their caches.
+     *
+     * @param dataModels datasets searched on
+     * @param out output stream to write message to
+     */
+    private void writeContingencyCacheStatistics(List<DataModel> dataModels, PrintStream out) {
+        List<Path> dataFiles = cmdArgs.getDatasetFiles();
+        for (int i = 0; i < dataModels.size(); i++) {
+            DataModel dataModel = dataModels.get(i);
+            if (dataModel instanceof WeightedDataSet) {
+                ContingencyTables contingencyTables = ((WeightedDataSet) dataModel).getContingencyTables();
+                if (contingencyTables != null) {
+                    out.printf("Contingency tables of dataset %s: %s.%n", dataFiles.get(i).getFileName(), contingencyTables.getStatistics());
+                }
+            }
+        }
     }
 
     /**
@@ -166,57 +194,194 @@ public class TetradRunner {
      * @param algorithm Tetrad algorithm
      * @param parameters algorithm, score, and test parameters
      * @param dataModels list of dataset to run
-     * @return list of result search graphs
+     * @param knowledge prior knowledge, can be null
+     * @param externalGraph external graph, can be null
+     * @param graphSink sink taking the result graphs
+     * @throws AlgorithmRunException when a search fails
+     * @throws IOException when the sink is unable to write out a graph
      */
-    private List<Graph> runSearch(final Algorithm algorithm, final Parameters parameters, final List<DataModel> dataModels) {
-        List<Graph> graphList = new LinkedList<>();
-
+    private void runSearch(final Algorithm algorithm, final Parameters parameters, final List<DataModel> dataModels, final Knowledge knowledge, final Graph externalGraph, final GraphSink graphSink) throws AlgorithmRunException, IOException {
         if (algorithm instanceof MultiDataSetAlgorithm) {
             int numOfRuns = parameters.getInt("numRuns");
-            while (numOfRuns > 0) {
-                numOfRuns--;
-
-                List<DataSet> dataSets = dataModels.stream()
-                        .map(e -> (DataSet) e)
-                        .collect(Collectors.toCollection(ArrayList::new));
-                if (dataSets.size() < parameters.getInt("randomSelectionSize")) {
-                    throw new IllegalArgumentException("Sorry, the 'random selection size' is greater than "
-                            + "the number of data sets.");
-                }
-                Collections.shuffle(dataSets);
-
-                List<DataModel> sub = new ArrayList<>();
-                for (int j = 0; j < parameters.getInt("randomSelectionSize"); j++) {
-                    sub.add(dataSets.get(j));
-                }
+            int randomSelectionSize = parameters.getInt("randomSelectionSize");
+            if (dataModels.size() < randomSelectionSize) {
+                throw new IllegalArgumentException("Sorry, the 'random selection size' is greater than "
+                        + "the number of data sets.");
+            }
 
-                graphList.add(((MultiDataSetAlgorithm) algorithm).search(sub, parameters));
+            // each run selects its datasets with the random stream of its own
+            List<BiFunction<Parameters, SplittableRandom, Graph>> searches = new ArrayList<>();
+            for (int run = 0; run < numOfRuns; run++) {
+                MultiDataSetAlgorithm runAlgorithm = (MultiDataSetAlgorithm) ((run == 0)
+                        ? algorithm
+                        : getAlgorithm(cmdArgs, dataModels, knowledge, externalGraph));
+                searches.add((runParameters, runRandom) -> {
+                    List<DataSet> dataSets = dataModels.stream()
+                            .map(e -> (DataSet) e)
+                            .collect(Collectors.toCollection(ArrayList::new));
+                    Collections.shuffle(dataSets, new Random(runRandom.nextLong()));
+
+                    List<DataModel> sub = new ArrayList<>(dataSets.subList(0, randomSelectionSize));
+
+                    return runAlgorithm.search(sub, runParameters);
+                });
             }
+            runSearches(searches, parameters, graphSink);
         } else if (algorithm instanceof ClusterAlgorithm) {
-            int numOfRuns = parameters.getInt("numRuns");
-            while (numOfRuns > 0) {
-                numOfRuns--;
-
-                dataModels.forEach(dataModel -> {
-                    if (dataModel instanceof ICovarianceMatrix) {
-                        graphList.add(algorithm.search(dataModel, parameters));
-                    } else if (dataModel instanceof DataSet) {
-                        DataSet dataSet = (DataSet) dataModel;
-                        if (dataSet.isContinuous()) {
-                            graphList.add(algorithm.search(dataSet, parameters));
-                        } else {
-                            throw new IllegalArgumentException("Sorry, you need a continuous dataset for a cluster algorithm.");
-                        }
+            List<DataModel> clusterDataModels = new LinkedList<>();
+            dataModels.forEach(dataModel -> {
+                if (dataModel instanceof ICovarianceMatrix) {
+                    clusterDataModels.add(dataModel);
+                } else if (dataModel instanceof DataSet) {
+                    if (((DataSet) dataModel).isContinuous()) {
+                        clusterDataModels.add(dataModel);
+                    } else {
+                        throw new IllegalArgumentException("Sorry, you need a continuous dataset for a cluster algorithm.");
                     }
-                });
+                }
+            });
+
+            int numOfRuns = parameters.getInt("numRuns");
+            List<BiFunction<Parameters, SplittableRandom, Graph>> searches = new ArrayList<>();
+            for (int run = 0; run < numOfRuns; run++) {
+                for (DataModel dataModel : clusterDataModels) {
+                    Algorithm runAlgorithm = searches.isEmpty()
+                            ? algorithm
+                            : getAlgorithm(cmdArgs, dataModels, knowledge, externalGraph);
+                    searches.add((runParameters, runRandom) -> runAlgorithm.search(dataModel, runParameters));
+                }
+            }
+            runSearches(searches, parameters, graphSink);
+        } else if (dataModels.size() > 1) {
+            // search the datasets side by side, each on its own algorithm
+            List<BiFunction<Parameters, SplittableRandom, Graph>> searches = new ArrayList<>();
+            for (DataModel dataModel : dataModels) {
+                Algorithm datasetAlgorithm = searches.isEmpty()
+                        ? algorithm
+                        : getAlgorithm(cmdArgs, dataModels, knowledge, externalGraph);
+                searches.add((datasetParameters, datasetRandom) -> datasetAlgorithm.search(dataModel, datasetParameters));
             }
+            runSearches(searches, parameters, graphSink);
         } else {
-            dataModels.forEach(dataModel -> {
-                graphList.add(algorithm.search(dataModel, parameters));
-            });
+            for (DataModel dataModel : dataModels) {
+                if (!graphSink.hasGraph(0)) {
+                    graphSink.accept(0, manipulateGraph(algorithm.search(dataModel, parameters)));
+                }
+            }
         }
+    }
 
-        return graphList;
+    /**
+     * Run searches side by side on the worker threads. Each search gets a copy
+     * of the parameters whose print stream writes to a buffer. The buffers are
+     * written out in the order of the searches, so that their output does not
+     * interleave. The worker thread manipulates the graph of its search and
+     * gives it to the sink, so that no graph is held on to after its search.
+     * <p>
+     * Each search also gets a random stream of its own, split off the seed
+     * parameter in the order of the searches. Its seed parameter is the first
+     * value of the stream, and the search draws whatever else it needs, such
+     * as a selection of datasets, from the rest. The streams, and so the
+     * graphs, do not depend on the number of threads. The searches whose
+     * graphs the sink already has are skipped, but still take their streams,
+     * so that a resumed run searches with the same seeds as the run it
+     * resumes.
+     * <p>
+     * The searches running side by side divide the threads between them, so
+     * that a search using threads of its own does not oversubscribe them.
+     *
+     * @param searches searches taking their parameters and random stream
+     * @param parameters algorithm, score, and test parameters
+     * @param graphSink sink taking the result graphs, indexed in the order of
+     * the searches
+     * @throws AlgorithmRunException when a search fails or is interrupted
+     */
+    private void runSearches(List<BiFunction<Parameters, SplittableRandom, Graph>> searches, Parameters parameters, GraphSink graphSink) throws AlgorithmRunException {
+        Object printStream = parameters.get("printStream");
+
+        SplittableRandom random = new SplittableRandom(parameters.getLong(Params.SEED));
+
+        // the graphs that are in the checkpoint of the run that is resumed
+        // are not searched for again
+        Map<Integer, SplittableRandom> searchRandoms = new LinkedHashMap<>();
+        for (int index = 0; index < searches.size(); index++) {
+            SplittableRandom searchRandom = random.split();
+            if (!graphSink.hasGraph(index)) {
+                searchRandoms.put(index, searchRandom);
+            }
+        }
+
+        // the searches running side by side share the threads between them
+        int numOfSearchThreads = getNumOfSearchThreads(cmdArgs.getNumOfThreads(), searchRandoms.size());
+
+        List<ByteArrayOutputStream> outputs = new LinkedList<>();
+        List<Future<?>> futures = new LinkedList<>();
+        for (Map.Entry<Integer, SplittableRandom> entry : searchRandoms.entrySet()) {
+            int graphIndex = entry.getKey();
+            SplittableRandom searchRandom = entry.getValue();
+            BiFunction<Parameters, SplittableRandom, Graph> search = searches.get(graphIndex);
+
+            Parameters searchParameters = new Parameters(parameters);
+            searchParameters.set(Params.SEED, searchRandom.nextLong() & Long.MAX_VALUE);
+            limitNumOfThreads(searchParameters, Params.NUM_THREADS, numOfSearchThreads);
+            limitNumOfThreads(searchParameters, Params.BOOTSTRAPPING_NUM_THREADS, numOfSearchThreads);
+            if (printStream instanceof PrintStream) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                searchParameters.set("printStream", new PrintStream(output, true));
+                outputs.add(output);
+            }
+            futures.add(executorService.submit(() -> {
+                graphSink.accept(graphIndex, manipulateGraph(search.apply(searchParameters, searchRandom)));
+
+                return null;
+            }));
+        }
+
+        Iterator<ByteArrayOutputStream> outputIterator = outputs.iterator();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+                if (outputIterator.hasNext()) {
+                    ((PrintStream) printStream).print(outputIterator.next().toString());
+                }
+            }
+        } catch (InterruptedException exception) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new AlgorithmRunException(exception);
+        } catch (ExecutionException exception) {
+            futures.forEach(future -> future.cancel(true));
+            throw new AlgorithmRunException(exception.getCause());
+        }
+    }
+
+    /**
+     * Get the number of threads each of the searches running side by side may
+     * use. The searches running side by side are no more than the threads, and
+     * each of them gets at least one thread.
+     *
+     * @param numOfThreads number of threads given on the command-line
+     * @param numOfSearches number of searches to run
+     * @return number of threads of each search
+     */
+    static int getNumOfSearchThreads(int numOfThreads, int numOfSearches) {
+        int numOfConcurrentSearches = Math.max(1, Math.min(numOfSearches, numOfThreads));
+
+        return Math.max(1, numOfThreads / numOfConcurrentSearches);
+    }
+
+    /**
+     * Limit the number of threads a search parameter asks for, if the search
+     * takes the parameter.
+     *
+     * @param parameters search parameters
+     * @param parameter name of the number-of-threads parameter
+     * @param maxNumOfThreads most threads the search may use
+     */
+    private void limitNumOfThreads(Parameters parameters, String parameter, int maxNumOfThreads) {
+        if (cmdArgs.getParameters().containsKey(parameter)) {
+            parameters.set(parameter, Math.min(parameters.getInt(parameter), maxNumOfThreads));
+        }
     }
 
     /**
@@ -342,25 +507,77 @@ public class TetradRunner {
      * Get algorithm instance from command-line input.
      *
      * @param cmdArgs command-line arguments
+     * @param dataModels datasets to search on
+     * @param knowledge prior knowledge, can be null
+     * @param externalGraph external graph, can be null
      * @return algorithm from command-line
      * @throws AlgorithmRunException whenever unable to algorithm from
      * command-line
      */
-    private Algorithm getAlgorithm(CmdArgs cmdArgs) throws AlgorithmRunException {
+    private Algorithm getAlgorithm(CmdArgs cmdArgs, List<DataModel> dataModels, Knowledge knowledge, Graph externalGraph) throws AlgorithmRunException {
+        Algorithm algorithm;
         try {
-            return AlgorithmFactory.create(cmdArgs.getAlgorithmClass(), cmdArgs.getTestClass(), cmdArgs.getScoreClass());
+            // datasets of distinct rows need the test and score taking their counts
+            if (dataModels.stream().anyMatch(WeightedDataSet.class::isInstance)) {
+                algorithm = AlgorithmFactory.create(cmdArgs.getAlgorithmClass(), TetradRowWeights.getTest(cmdArgs.getTestClass()), TetradRowWeights.getScore(cmdArgs.getScoreClass()));
+            } else {
+                algorithm = AlgorithmFactory.create(cmdArgs.getAlgorithmClass(), cmdArgs.getTestClass(), cmdArgs.getScoreClass());
+            }
         } catch (IllegalAccessException | InstantiationException | InvocationTargetException exception) {
             throw new AlgorithmRunException(exception);
         }
+
+        final boolean takesKnowledge = TetradAlgorithms.getInstance().takesKnowledge(cmdArgs.getAlgorithmClass());
+        final boolean hasKnowledge = !(knowledge == null || knowledge.getVariables().isEmpty());
+
+        final boolean takesExternalGraph = TetradAlgorithms.getInstance().takesExternalGraph(cmdArgs.getAlgorithmClass());
+        final boolean hasExternalGraph = !(externalGraph == null || externalGraph.getEdges().isEmpty());
+
+        // add knowledge, if any
+        if (takesKnowledge && hasKnowledge) {
+            ((HasKnowledge) algorithm).setKnowledge(knowledge);
+        }
+
+        // add external graph, if any
+        if (takesExternalGraph && hasExternalGraph) {
+            ((TakesExternalGraph) algorithm).setExternalGraph(new SingleGraphAlg(externalGraph));
+        }
+
+        return algorithm;
     }
 
     /**
-     * Get list of result graphs from search algorithms.
-     *
-     * @return list of result graphs from search algorithms
+     * Shut down the worker thread pool, waiting for running tasks to finish.
      */
-    public List<Graph> getGraphs() {
-        return graphs;
+    @Override
+    public void close() {
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException exception) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Thread factory for the worker threads. The threads are daemon threads
+     * so that a failed run never keeps the application alive.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "causal-cmd-worker-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+
     }
 
 }
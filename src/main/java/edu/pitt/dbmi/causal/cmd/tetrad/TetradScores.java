@@ -24,6 +24,7 @@ import edu.cmu.tetrad.annotation.Score;
 import edu.cmu.tetrad.annotation.ScoreAnnotations;
 import edu.cmu.tetrad.data.DataType;
 import edu.pitt.dbmi.causal.cmd.CausalCmdApplication;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.LinkedList;
@@ -231,4 +232,16 @@ public final class TetradScores {
                 : "";
     }
 
+    /**
+     * Determine if the given score can be computed from a covariance
+     * matrix.
+     *
+     * @param clazz score class
+     * @return true if the score takes covariance data
+     */
+    public boolean takesCovariance(Class clazz) {
+        return (clazz != null && clazz.isAnnotationPresent(Score.class))
+                && Arrays.asList(((Score) clazz.getAnnotation(Score.class)).dataType()).contains(DataType.Covariance);
+    }
+
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.tetrad;
+
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.score.DiscreteScore;
+import edu.pitt.dbmi.causal.cmd.data.WeightedDataSet;
+import java.text.DecimalFormat;
+import java.util.List;
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * The class {@code WeightedBdeuScore} is the BDeu score of Tetrad on the
+ * distinct rows of a {@link WeightedDataSet}. Each row is counted as many times
+ * as it occurs, so the local scores are the same as on the rows the dataset
+ * was collapsed from.
+ */
+public final class WeightedBdeuScore implements DiscreteScore {
+
+    private final WeightedDataSet dataSet;
+    private final List<Node> variables;
+    private final int[] numCategories;
+    private final int sampleSize;
+
+    private double samplePrior = 1.0;
+    private double structurePrior = 0.0;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSet discrete dataset of distinct rows and their counts
+     */
+    public WeightedBdeuScore(WeightedDataSet dataSet) {
+        this.dataSet = dataSet;
+        this.variables = dataSet.getVariables();
+        this.sampleSize = dataSet.getSampleSize();
+        this.numCategories = dataSet.getNumCategories();
+    }
+
+    @Override
+    public double localScore(int node, int... parents) {
+        int c = numCategories[node];
+        int r = 1;
+        for (int parent : parents) {
+            r *= numCategories[parent];
+        }
+
+        // counts of the child, row by row of the values of the parents
+        int[] n_jk = dataSet.countCells(append(parents, node));
+        int[] n_j = new int[r];
+        int N = 0;
+        for (int j = 0; j < r; j++) {
+            for (int k = 0; k < c; k++) {
+                n_j[j] += n_jk[j * c + k];
+            }
+            N += n_j[j];
+        }
+
+        double cellPrior = samplePrior / (c * r);
+        double rowPrior = samplePrior / r;
+
+        double score = getPriorForStructure(parents.length, N);
+        for (int j = 0; j < r; j++) {
+            score -= Gamma.logGamma(rowPrior + n_j[j]);
+            for (int k = 0; k < c; k++) {
+                score += Gamma.logGamma(cellPrior + n_jk[j * c + k]);
+            }
+        }
+        score += r * Gamma.logGamma(rowPrior);
+        score -= c * r * Gamma.logGamma(cellPrior);
+
+        return (Double.isNaN(score) || Double.isInfinite(score)) ? Double.NaN : score;
+    }
+
+    private double getPriorForStructure(int numParents, int N) {
+        double e = structurePrior;
+        if (e == 0) {
+            return 0.0;
+        }
+
+        int vm = N - 1;
+
+        return numParents * FastMath.log(e / vm) + (vm - numParents) * FastMath.log(1.0 - e / vm);
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y, int[] z) {
+        return localScore(y, append(z, x)) - localScore(y, z);
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return variables;
+    }
+
+    @Override
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    @Override
+    public boolean isEffectEdge(double bump) {
+        return bump > 0;
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return (int) FastMath.ceil(FastMath.log(sampleSize));
+    }
+
+    @Override
+    public DataSet getDataSet() {
+        return dataSet;
+    }
+
+    @Override
+    public void setStructurePrior(double structurePrior) {
+        this.structurePrior = structurePrior;
+    }
+
+    @Override
+    public void setSamplePrior(double samplePrior) {
+        this.samplePrior = samplePrior;
+    }
+
+    @Override
+    public String toString() {
+        DecimalFormat nf = new DecimalFormat("0.00");
+
+        return "BDeu Score Sample prior = " + nf.format(samplePrior) + " Structure prior = " + nf.format(structurePrior);
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.tetrad;
+
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.IndependenceFact;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.IndependenceTest;
+import edu.cmu.tetrad.search.test.ChiSquareTest;
+import edu.cmu.tetrad.search.test.IndependenceResult;
+import edu.cmu.tetrad.search.utils.LogUtilsSearch;
+import edu.cmu.tetrad.util.NumberFormatUtil;
+import edu.cmu.tetrad.util.TetradLogger;
+import edu.pitt.dbmi.causal.cmd.data.WeightedDataSet;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.math3.distribution.ChiSquaredDistribution;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * The class {@code WeightedChiSquareTest} is the chi-square and G-square test
+ * of Tetrad on the distinct rows of a {@link WeightedDataSet}. Each row is
+ * counted as many times as it occurs, so the statistic, the degrees of freedom
+ * and the p-value are the same as on the rows the dataset was collapsed from.
+ */
+public final class WeightedChiSquareTest implements IndependenceTest {
+
+    private final WeightedDataSet dataSet;
+    private final List<Node> variables;
+    private final ChiSquareTest.TestType testType;
+    private final int[] dims;
+    private final Map<IndependenceFact, IndependenceResult> facts = new ConcurrentHashMap<>();
+
+    private double alpha;
+    private double minCountPerCell = 1.0;
+    private boolean verbose;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSet discrete dataset of distinct rows and their counts
+     * @param alpha significance level
+     * @param testType chi-square or G-square
+     */
+    public WeightedChiSquareTest(WeightedDataSet dataSet, double alpha, ChiSquareTest.TestType testType) {
+        this.dataSet = dataSet;
+        this.variables = new ArrayList<>(dataSet.getVariables());
+        this.testType = testType;
+        this.dims = dataSet.getNumCategories();
+
+        setAlpha(alpha);
+    }
+
+    @Override
+    public IndependenceTest indTestSubset(List<Node> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Subset may not be empty.");
+        }
+        if (!variables.containsAll(nodes)) {
+            throw new IllegalArgumentException("All nodes must be original nodes");
+        }
+
+        WeightedChiSquareTest test = new WeightedChiSquareTest((WeightedDataSet) dataSet.subsetColumns(nodes), alpha, testType);
+        test.setMinCountPerCell(minCountPerCell);
+
+        return test;
+    }
+
+    @Override
+    public IndependenceResult checkIndependence(Node x, Node y, Set<Node> z) {
+        IndependenceFact fact = new IndependenceFact(x, y, z);
+        IndependenceResult result = facts.get(fact);
+        if (result == null) {
+            List<Node> conditioningVariables = new ArrayList<>(z);
+            Collections.sort(conditioningVariables);
+
+            int[] testIndices = new int[2 + conditioningVariables.size()];
+            testIndices[0] = variables.indexOf(x);
+            testIndices[1] = variables.indexOf(y);
+            for (int i = 0; i < conditioningVariables.size(); i++) {
+                testIndices[i + 2] = variables.indexOf(conditioningVariables.get(i));
+            }
+            for (int i = 0; i < testIndices.length; i++) {
+                if (testIndices[i] < 0) {
+                    throw new IllegalArgumentException("Variable " + i + " was not used in the constructor.");
+                }
+            }
+
+            result = calcChiSquare(fact, testIndices);
+            facts.put(fact, result);
+
+            if (verbose && result.isIndependent()) {
+                TetradLogger.getInstance().forceLogMessage(LogUtilsSearch.independenceFactMsg(x, y, z, result.getPValue()));
+            }
+        }
+
+        return new IndependenceResult(fact, result.isIndependent(), result.getPValue(), alpha - result.getPValue());
+    }
+
+    /**
+     * Sum the statistic and the degrees of freedom over the strata of the
+     * conditioning variables, skipping the rows, columns and strata that have
+     * too few counts, as Tetrad does.
+     */
+    private IndependenceResult calcChiSquare(IndependenceFact fact, int[] testIndices) {
+        int numRows = dims[testIndices[0]];
+        int numCols = dims[testIndices[1]];
+        int numOfCells = numRows * numCols;
+
+        // one x-by-y table for each combination of values of z
+        int[] tableIndices = new int[testIndices.length];
+        System.arraycopy(testIndices, 2, tableIndices, 0, testIndices.length - 2);
+        tableIndices[testIndices.length - 2] = testIndices[0];
+        tableIndices[testIndices.length - 1] = testIndices[1];
+        int[] table = dataSet.countCells(tableIndices);
+        int numOfStrata = table.length / numOfCells;
+
+        double xSquare = 0.0;
+        int df = 0;
+        double[] sumRows = new double[numRows];
+        double[] sumCols = new double[numCols];
+        boolean[] zeroRows = new boolean[numRows];
+        boolean[] zeroCols = new boolean[numCols];
+        for (int stratum = 0; stratum < numOfStrata; stratum++) {
+            int offset = stratum * numOfCells;
+
+            long total = 0;
+            int numNonZeroRows = 0;
+            for (int i = 0; i < numRows; i++) {
+                long sum = 0;
+                for (int j = 0; j < numCols; j++) {
+                    sum += table[offset + i * numCols + j];
+                }
+                sumRows[i] = sum;
+                zeroRows[i] = sum == 0 || sum < minCountPerCell * numCols;
+                if (!zeroRows[i]) {
+                    numNonZeroRows++;
+                }
+                total += sum;
+            }
+            int numNonZeroCols = 0;
+            for (int j = 0; j < numCols; j++) {
+                long sum = 0;
+                for (int i = 0; i < numRows; i++) {
+                    sum += table[offset + i * numCols + j];
+                }
+                sumCols[j] = sum;
+                zeroCols[j] = sum == 0 || sum < minCountPerCell * numRows;
+                if (!zeroCols[j]) {
+                    numNonZeroCols++;
+                }
+            }
+
+            if (total < minCountPerCell * numRows * numCols || total == 0 || numNonZeroRows <= 1 || numNonZeroCols <= 1) {
+                continue;
+            }
+
+            double stratumXSquare = 0.0;
+            for (int i = 0; i < numRows; i++) {
+                for (int j = 0; j < numCols; j++) {
+                    if (zeroRows[i] || zeroCols[j]) {
+                        continue;
+                    }
+
+                    double observed = table[offset + i * numCols + j];
+                    double expected = sumRows[i] * sumCols[j] / total;
+                    if (testType == ChiSquareTest.TestType.CHI_SQUARE) {
+                        double d = observed - expected;
+                        stratumXSquare += d * d / expected;
+                    } else if (observed > 0.0) {
+                        stratumXSquare += 2.0 * observed * FastMath.log(observed / expected);
+                    }
+                }
+            }
+
+            int stratumDf = (numNonZeroRows - 1) * (numNonZeroCols - 1);
+            xSquare += stratumXSquare;
+            df += (stratumDf == 0) ? 1 : stratumDf;
+        }
+
+        if (df == 0) {
+            return new IndependenceResult(fact, true, Double.NaN, Double.NaN);
+        }
+
+        double pValue = 1.0 - new ChiSquaredDistribution(df).cumulativeProbability(xSquare);
+
+        return new IndependenceResult(fact, pValue > alpha, pValue, alpha - pValue);
+    }
+
+    /**
+     * Set the minimum count a cell should have on average for its row, column
+     * and stratum to be tested.
+     *
+     * @param minCountPerCell minimum average count per cell
+     */
+    public void setMinCountPerCell(double minCountPerCell) {
+        this.minCountPerCell = minCountPerCell;
+    }
+
+    @Override
+    public int getSampleSize() {
+        return dataSet.getSampleSize();
+    }
+
+    @Override
+    public double getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void setAlpha(double alpha) {
+        if (alpha < 0.0 || alpha > 1.0) {
+            throw new IllegalArgumentException("Significance level must be in [0, 1]: " + alpha);
+        }
+
+        this.alpha = alpha;
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return Collections.unmodifiableList(variables);
+    }
+
+    @Override
+    public DataSet getData() {
+        return dataSet;
+    }
+
+    @Override
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    @Override
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    @Override
+    public String toString() {
+        NumberFormat nf = NumberFormatUtil.getInstance().getNumberFormat();
+        String name = (testType == ChiSquareTest.TestType.CHI_SQUARE) ? "Chi Square" : "G Square";
+
+        return name + ", alpha = " + nf.format(alpha);
+    }
+
+}
@@ -51,7 +51,10 @@ public final class DateTime {
      * @return a formatted date-time
      */
     public static String print(Date date) {
-        return DF.format(date);
+        // date format is not thread-safe
+        synchronized (DF) {
+            return DF.format(date);
+        }
     }
 
 }
@@ -18,9 +18,16 @@
  */
 package edu.pitt.dbmi.causal.cmd.util;
 
+import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
 
 /**
  * The class {@code FileUtils} is a utility class for file management.
@@ -31,6 +38,19 @@ import java.nio.file.Path;
  */
 public class FileUtils {
 
+    /**
+     * The name of the file that stands for the standard input.
+     */
+    public static final String STANDARD_INPUT = "-";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Compressed files at least this large are decompressed on a separate
+     * thread, ahead of the reader.
+     */
+    private static final long READ_AHEAD_MIN_SIZE = 1 << 20;
+
     private FileUtils() {
     }
 
@@ -50,4 +70,149 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Determine if a given file exists or is a stream, either the standard
+     * input or a named pipe.
+     *
+     * @param file file to determine if it exists or not
+     * @throws FileNotFoundException when file does not exist or when file is a
+     * directory
+     */
+    public static void existsOrIsStream(Path file) throws FileNotFoundException {
+        if (!isStream(file)) {
+            exists(file);
+        }
+    }
+
+    /**
+     * Determine if a given file is the standard input.
+     *
+     * @param file file
+     * @return true if the file stands for the standard input
+     */
+    public static boolean isStandardInput(Path file) {
+        return STANDARD_INPUT.equals(file.toString());
+    }
+
+    /**
+     * Determine if a given file is a stream, either the standard input or a
+     * named pipe, which can only be read once.
+     *
+     * @param file file
+     * @return true if the file can only be read once
+     */
+    public static boolean isStream(Path file) {
+        return isStandardInput(file)
+                || (Files.exists(file) && !Files.isRegularFile(file) && !Files.isDirectory(file));
+    }
+
+    /**
+     * Determine if a given file is compressed with gzip.
+     *
+     * @param file file
+     * @return true if the file is a regular file that starts with the gzip
+     * magic number
+     * @throws IOException when unable to read the file
+     */
+    public static boolean isCompressed(Path file) throws IOException {
+        if (isStream(file) || !Files.isRegularFile(file)) {
+            return false;
+        }
+
+        try (InputStream in = Files.newInputStream(file, StandardOpenOption.READ)) {
+            return isGzip(in.readNBytes(2));
+        }
+    }
+
+    private static boolean isGzip(byte[] header) {
+        return header.length == 2
+                && (header[0] & 0xFF) == (GZIPInputStream.GZIP_MAGIC & 0xFF)
+                && (header[1] & 0xFF) == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+    /**
+     * Open a file for reading. The standard input is left open when the
+     * stream returned is closed. A file compressed with gzip is decompressed
+     * as it is read, on a separate thread when the file is large or a
+     * stream.
+     *
+     * @param file file, or the standard input
+     * @return input stream of the file
+     * @throws IOException when unable to open the file
+     */
+    public static InputStream newInputStream(Path file) throws IOException {
+        InputStream in;
+        if (isStandardInput(file)) {
+            in = new FilterInputStream(System.in) {
+                @Override
+                public void close() throws IOException {
+                }
+            };
+        } else {
+            in = Files.newInputStream(file, StandardOpenOption.READ);
+        }
+
+        BufferedInputStream bufferedIn = new BufferedInputStream(in, BUFFER_SIZE);
+        bufferedIn.mark(2);
+        byte[] header = bufferedIn.readNBytes(2);
+        bufferedIn.reset();
+        if (!isGzip(header)) {
+            return bufferedIn;
+        }
+
+        InputStream gzipIn = new GZIPInputStream(bufferedIn, BUFFER_SIZE);
+        if (isStream(file) || Files.size(file) >= READ_AHEAD_MIN_SIZE) {
+            return new ReadAheadInputStream(gzipIn, "gunzip-" + file.getFileName());
+        }
+
+        return gzipIn;
+    }
+
+    /**
+     * Read in a file with a reader that only takes a path. A file compressed
+     * with gzip is first decompressed to a temporary file, which is deleted
+     * once read.
+     *
+     * @param <T> type of the content read in
+     * @param file file
+     * @param reader reads in the (decompressed) file
+     * @return content read in
+     * @throws IOException when unable to read the file
+     */
+    public static <T> T readUncompressed(Path file, PathReader<T> reader) throws IOException {
+        if (!isCompressed(file)) {
+            return reader.read(file);
+        }
+
+        Path tempFile = Files.createTempFile("causal-cmd", ".tmp");
+        try {
+            try (InputStream in = newInputStream(file)) {
+                Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return reader.read(tempFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Reads in the content of a file given by its path.
+     *
+     * @param <T> type of the content read in
+     */
+    @FunctionalInterface
+    public interface PathReader<T> {
+
+        /**
+         * Read in a file.
+         *
+         * @param file file
+         * @return content read in
+         * @throws IOException when unable to read the file
+         */
+        T read(Path file) throws IOException;
+
+    }
+
 }
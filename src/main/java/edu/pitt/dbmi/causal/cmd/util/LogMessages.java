@@ -25,6 +25,7 @@ import edu.pitt.dbmi.data.reader.validation.ValidationCode;
 import edu.pitt.dbmi.data.reader.validation.ValidationResult;
 import java.io.PrintStream;
 import java.nio.file.Path;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -76,9 +77,21 @@ public final class LogMessages {
      * @param out output stream to write message to
      */
     public static void readingFileEnd(Path file, Logger logger, PrintStream out) {
+        readingFileEnd(file, new Date(), logger, out);
+    }
+
+    /**
+     * Log the end time of reading file, for a file read in earlier.
+     *
+     * @param file file to log information about
+     * @param date time the reading of the file ended
+     * @param logger write log message to
+     * @param out output stream to write message to
+     */
+    public static void readingFileEnd(Path file, Date date, Logger logger, PrintStream out) {
         String fileName = file.getFileName().toString();
         String msg = String.format("Finished reading in file %s.", fileName);
-        logMessage(msg, logger, out);
+        logMessage(msg, date, logger, out);
     }
 
     /**
@@ -89,9 +102,21 @@ public final class LogMessages {
      * @param out output stream to write message to
      */
     public static void readingFileStart(Path file, Logger logger, PrintStream out) {
+        readingFileStart(file, new Date(), logger, out);
+    }
+
+    /**
+     * Log the start time of reading file, for a file read in earlier.
+     *
+     * @param file file to log information about
+     * @param date time the reading of the file started
+     * @param logger write log message to
+     * @param out output stream to write message to
+     */
+    public static void readingFileStart(Path file, Date date, Logger logger, PrintStream out) {
         String fileName = file.getFileName().toString();
         String msg = String.format("Start reading in file %s.", fileName);
-        logMessage(msg, logger, out);
+        logMessage(msg, date, logger, out);
     }
 
     /**
@@ -162,7 +187,19 @@ public final class LogMessages {
      * @param out output stream to write message to
      */
     public static void logMessage(String message, Logger logger, PrintStream out) {
-        out.printf("%s: %s%n", DateTime.printNow(), message);
+        logMessage(message, new Date(), logger, out);
+    }
+
+    /**
+     * Log message of something that happened at the given time.
+     *
+     * @param message message to write to log file
+     * @param date time the message is about
+     * @param logger write log message to
+     * @param out output stream to write message to
+     */
+    public static void logMessage(String message, Date date, Logger logger, PrintStream out) {
+        out.printf("%s: %s%n", DateTime.print(date), message);
         logger.info(message);
     }
 
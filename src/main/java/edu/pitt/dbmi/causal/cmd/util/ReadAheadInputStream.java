@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The class {@code ReadAheadInputStream} reads an input stream on a separate
+ * thread, a few blocks ahead of the reader. Used on a decompressing stream,
+ * the data is decompressed while the data read before it is parsed.
+ */
+final class ReadAheadInputStream extends InputStream {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Number of blocks read ahead.
+     */
+    private static final int CAPACITY = 16;
+
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final InputStream in;
+    private final BlockingQueue<byte[]> blocks;
+    private final Thread thread;
+
+    private volatile IOException failure;
+
+    private byte[] block;
+    private int position;
+
+    /**
+     * Constructor. The input stream starts being read right away.
+     *
+     * @param in input stream to read ahead
+     * @param name name of the thread reading the input stream
+     */
+    ReadAheadInputStream(InputStream in, String name) {
+        this.in = in;
+        this.blocks = new ArrayBlockingQueue<>(CAPACITY);
+        this.thread = new Thread(this::readAhead, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void readAhead() {
+        try {
+            int length;
+            do {
+                byte[] buffer = new byte[BLOCK_SIZE];
+                length = in.readNBytes(buffer, 0, BLOCK_SIZE);
+                if (length > 0) {
+                    blocks.put((length == BLOCK_SIZE) ? buffer : Arrays.copyOf(buffer, length));
+                }
+            } while (length == BLOCK_SIZE);
+        } catch (IOException exception) {
+            failure = exception;
+        } catch (RuntimeException exception) {
+            failure = new IOException(exception);
+        } catch (InterruptedException exception) {
+            // closed before the end of the stream
+            return;
+        }
+
+        try {
+            blocks.put(END_OF_STREAM);
+        } catch (InterruptedException exception) {
+            // closed before the end of the stream
+        }
+    }
+
+    /**
+     * Get the next block read ahead.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean nextBlock() throws IOException {
+        if (block == END_OF_STREAM) {
+            return false;
+        }
+
+        try {
+            block = blocks.take();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading ahead was interrupted.");
+        }
+        position = 0;
+
+        if (block == END_OF_STREAM) {
+            if (failure != null) {
+                throw failure;
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if ((block == null || position == block.length) && !nextBlock()) {
+            return -1;
+        }
+
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if ((block == null || position == block.length) && !nextBlock()) {
+            return -1;
+        }
+
+        int length = Math.min(len, block.length - position);
+        System.arraycopy(block, position, b, off, length);
+        position += length;
+
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        in.close();
+    }
+
+}
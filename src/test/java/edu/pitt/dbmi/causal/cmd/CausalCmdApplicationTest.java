@@ -18,7 +18,37 @@
  */
 package edu.pitt.dbmi.causal.cmd;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphNode;
+import edu.cmu.tetrad.graph.GraphSaveLoadUtils;
+import edu.cmu.tetrad.util.DataConvertUtils;
+import edu.pitt.dbmi.causal.cmd.data.BinaryCovarianceFile;
+import edu.pitt.dbmi.causal.cmd.tetrad.GraphFileSink;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.covariance.CovarianceDataReader;
+import edu.pitt.dbmi.data.reader.covariance.LowerCovarianceDataFileReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -51,6 +81,467 @@ public class CausalCmdApplicationTest {
         CausalCmdApplication.main(args);
     }
 
+    @Test
+    public void testImagesWithMultipleContinuousDatasets() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA_20K_PART1 + "," + TestFiles.CONTINUOUS_DATA_20K_PART2;
+        String dirOut = TestFiles.createSubDir(tempDir, "images_multiple_datasets").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "images",
+            "--score", "sem-bic-score",
+            "--default",
+            "--thread", "2",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testFGESWithCachedMixedData() throws Exception {
+        String dataset = TestFiles.MIXED_DATA;
+        String dirCache = TestFiles.createSubDir(tempDir, "dataset_cache").toString();
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_cached_mixed").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "mixed",
+            "--numCategories", "4",
+            "--algorithm", "fges",
+            "--score", "cg-bic-score",
+            "--default",
+            "--cache-dir", dirCache,
+            "--out", dirOut
+        };
+
+        // the first run caches the dataset, the second run reads it from the cache
+        CausalCmdApplication.main(args);
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testFGESWithCompactMixedData() throws Exception {
+        String dataset = TestFiles.MIXED_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_compact_mixed").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "mixed",
+            "--numCategories", "4",
+            "--algorithm", "fges",
+            "--score", "cg-bic-score",
+            "--default",
+            "--compact-data",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testFGESWithCompactContinuousData() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA;
+        Path dirOut = TestFiles.createSubDir(tempDir, "fges_compact_continuous");
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--json-graph",
+            "--prefix", "uncompacted",
+            "--out", dirOut.toString()
+        };
+        CausalCmdApplication.main(args);
+
+        // the covariances are computed on the fly from the compacted data
+        String[] compactArgs = Arrays.copyOf(args, args.length + 1);
+        compactArgs[args.length - 3] = "compacted";
+        compactArgs[args.length] = "--compact-data";
+        CausalCmdApplication.main(compactArgs);
+
+        Graph uncompactedGraph = GraphSaveLoadUtils.loadGraphJson(dirOut.resolve("uncompacted_graph.json").toFile());
+        Graph compactedGraph = GraphSaveLoadUtils.loadGraphJson(dirOut.resolve("compacted_graph.json").toFile());
+        assertEquals(getEdges(uncompactedGraph), getEdges(compactedGraph));
+    }
+
+    @Test
+    public void testFGESWithEachOfMultipleContinuousDatasets() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA_20K_PART1 + "," + TestFiles.CONTINUOUS_DATA_20K_PART2;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_each_dataset").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--default",
+            "--thread", "2",
+            "--numThreads", "2",
+            "--json-graph",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testIMaGESWithConcurrentRuns() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA_20K_PART1 + "," + TestFiles.CONTINUOUS_DATA_20K_PART2;
+        Path dirOut = TestFiles.createSubDir(tempDir, "images_concurrent_runs");
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "images",
+            "--score", "sem-bic-score",
+            "--numRuns", "4",
+            "--randomSelectionSize", "1",
+            "--seed", "42",
+            "--json-graph",
+            "--thread", "2",
+            "--prefix", "concurrent",
+            "--out", dirOut.toString()
+        };
+        CausalCmdApplication.main(args);
+
+        // the runs are seeded, so running them one at a time gives the same
+        // graphs in the same order
+        String[] serialArgs = Arrays.copyOf(args, args.length);
+        serialArgs[args.length - 5] = "1";
+        serialArgs[args.length - 3] = "serial";
+        CausalCmdApplication.main(serialArgs);
+
+        for (String suffix : new String[]{"", "_1", "_2", "_3"}) {
+            Graph serialGraph = GraphSaveLoadUtils.loadGraphJson(dirOut.resolve("serial_graph" + suffix + ".json").toFile());
+            Graph concurrentGraph = GraphSaveLoadUtils.loadGraphJson(dirOut.resolve("concurrent_graph" + suffix + ".json").toFile());
+            assertEquals(getEdges(serialGraph), getEdges(concurrentGraph));
+        }
+    }
+
+    @Test
+    public void testIMaGESWithSeededRuns() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA_20K_PART1 + "," + TestFiles.CONTINUOUS_DATA_20K_PART2;
+        String dirOut = TestFiles.createSubDir(tempDir, "images_seeded_runs").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "images",
+            "--score", "sem-bic-score",
+            "--numRuns", "4",
+            "--randomSelectionSize", "1",
+            "--seed", "42",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testIMaGESWithResume() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA_20K_PART1 + "," + TestFiles.CONTINUOUS_DATA_20K_PART2;
+        Path dirOut = TestFiles.createSubDir(tempDir, "images_resume");
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "images",
+            "--score", "sem-bic-score",
+            "--numRuns", "4",
+            "--randomSelectionSize", "1",
+            "--seed", "42",
+            "--json-graph",
+            "--prefix", "images",
+            "--resume",
+            "--out", dirOut.toString()
+        };
+
+        // leave behind the checkpoint of a run interrupted after its second
+        // graph, which is one that no search gives
+        Graph checkpointGraph = new EdgeListGraph();
+        checkpointGraph.addNode(new GraphNode("FromCheckpoint"));
+        try (GraphFileSink graphSink = new GraphFileSink(CmdParser.parse(args), System.out)) {
+            graphSink.accept(1, checkpointGraph);
+        }
+        assertTrue(Files.exists(dirOut.resolve("images_checkpoint").resolve("graph_1.txt")));
+
+        // the resumed run reuses the graph of the checkpoint, searches for
+        // the others, and deletes the checkpoint once it is done
+        CausalCmdApplication.main(args);
+
+        assertNotNull(GraphSaveLoadUtils.loadGraphJson(dirOut.resolve("images_graph_1.json").toFile()).getNode("FromCheckpoint"));
+        for (String graphFile : new String[]{"images_graph.json", "images_graph_2.json", "images_graph_3.json"}) {
+            assertNull(GraphSaveLoadUtils.loadGraphJson(dirOut.resolve(graphFile).toFile()).getNode("FromCheckpoint"));
+        }
+        assertTrue(new String(Files.readAllBytes(dirOut.resolve("images_out.txt"))).contains("FromCheckpoint"));
+        assertFalse(Files.exists(dirOut.resolve("images_checkpoint")));
+
+        // a run that is not resumable leaves nothing behind, even if it is
+        // interrupted
+        String[] notResumableArgs = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "images",
+            "--score", "sem-bic-score",
+            "--prefix", "not_resumable",
+            "--out", dirOut.toString()
+        };
+        try (GraphFileSink graphSink = new GraphFileSink(CmdParser.parse(notResumableArgs), System.out)) {
+            graphSink.accept(1, checkpointGraph);
+        }
+        try (Stream<Path> outFiles = Files.list(dirOut)) {
+            assertTrue(outFiles.noneMatch(file -> file.getFileName().toString().startsWith("not_resumable")));
+        }
+    }
+
+    @Test
+    public void testFGESWithColumnMajorContinuousData() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_column_major").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--default",
+            "--column-major",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testFGESWithColumnMajorContinuousDataAndCovariancesOnTheFly() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_column_major_on_the_fly").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--column-major",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testPCWithCollapsedDiscreteRows() throws Exception {
+        Path dirOut = TestFiles.createSubDir(tempDir, "pc_collapse_rows");
+
+        // repeat every row, and every third row once more
+        List<String> lines = Files.readAllLines(Paths.get(TestFiles.DISCRETE_DATA));
+        List<String> duplicatedLines = new ArrayList<>();
+        duplicatedLines.add(lines.get(0));
+        for (int i = 1; i < lines.size(); i++) {
+            duplicatedLines.add(lines.get(i));
+            duplicatedLines.add(lines.get(i));
+            if (i % 3 == 0) {
+                duplicatedLines.add(lines.get(i));
+            }
+        }
+        Path dataset = Files.write(dirOut.resolve("duplicated_rows.txt"), duplicatedLines);
+
+        String[] args = {
+            "--dataset", dataset.toString(),
+            "--delimiter", "tab",
+            "--data-type", "discrete",
+            "--algorithm", "pc",
+            "--test", "chi-square-test",
+            "--default",
+            "--json-graph",
+            "--prefix", "uncollapsed",
+            "--out", dirOut.toString()
+        };
+        CausalCmdApplication.main(args);
+
+        String[] collapsedArgs = Arrays.copyOf(args, args.length + 1);
+        collapsedArgs[args.length - 3] = "collapsed";
+        collapsedArgs[args.length] = "--collapse-rows";
+        CausalCmdApplication.main(collapsedArgs);
+
+        // the weighted distinct rows give the same counts as the duplicated rows
+        Graph uncollapsedGraph = GraphSaveLoadUtils.loadGraphJson(dirOut.resolve("uncollapsed_graph.json").toFile());
+        Graph collapsedGraph = GraphSaveLoadUtils.loadGraphJson(dirOut.resolve("collapsed_graph.json").toFile());
+        assertEquals(getEdges(uncollapsedGraph), getEdges(collapsedGraph));
+    }
+
+    @Test
+    public void testPCWithContingencyCache() throws Exception {
+        String dataset = TestFiles.DISCRETE_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "pc_contingency_cache").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "discrete",
+            "--algorithm", "pc",
+            "--test", "chi-square-test",
+            "--default",
+            "--contingency-cache", "16",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testFGESWithOffHeapMixedData() throws Exception {
+        String dataset = TestFiles.MIXED_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_off_heap_mixed").toString();
+        String dirOffHeap = TestFiles.createSubDir(tempDir, "fges_off_heap_mixed_scratch").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "mixed",
+            "--numCategories", "4",
+            "--algorithm", "fges",
+            "--score", "cg-bic-score",
+            "--default",
+            "--off-heap-dir", dirOffHeap,
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testFGESWithOffHeapContinuousData() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA;
+        Path dirOut = TestFiles.createSubDir(tempDir, "fges_off_heap_continuous");
+        String dirOffHeap = TestFiles.createSubDir(tempDir, "fges_off_heap_continuous_scratch").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--json-graph",
+            "--prefix", "on_heap",
+            "--out", dirOut.toString()
+        };
+        CausalCmdApplication.main(args);
+
+        // the covariances are computed on the fly from the data stored off the heap
+        String[] offHeapArgs = Arrays.copyOf(args, args.length + 2);
+        offHeapArgs[args.length - 3] = "off_heap";
+        offHeapArgs[args.length] = "--off-heap-dir";
+        offHeapArgs[args.length + 1] = dirOffHeap;
+        CausalCmdApplication.main(offHeapArgs);
+
+        Graph onHeapGraph = GraphSaveLoadUtils.loadGraphJson(dirOut.resolve("on_heap_graph.json").toFile());
+        Graph offHeapGraph = GraphSaveLoadUtils.loadGraphJson(dirOut.resolve("off_heap_graph.json").toFile());
+        assertEquals(getEdges(onHeapGraph), getEdges(offHeapGraph));
+    }
+
+    @Test
+    public void testFGESWithSampledCategoriesMixedData() throws Exception {
+        String dataset = TestFiles.MIXED_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_sampled_categories").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "mixed",
+            "--numCategories", "4",
+            "--category-sample-size", "50",
+            "--algorithm", "fges",
+            "--score", "cg-bic-score",
+            "--default",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testFGESWithSampledRows() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_sampled_rows").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--default",
+            "--row-filter", "X1>-1.5",
+            "--row-sample", "60",
+            "--row-sample-seed", "42",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testFGESWithDatasetFromStandardInput() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_standard_input").toString();
+        String[] args = {
+            "--dataset", "-",
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--default",
+            "--out", dirOut
+        };
+
+        InputStream stdin = System.in;
+        try (InputStream in = Files.newInputStream(Paths.get(dataset))) {
+            System.setIn(in);
+            CausalCmdApplication.main(args);
+        } finally {
+            System.setIn(stdin);
+        }
+    }
+
+    @Test
+    public void testFGESWithStreamedCovariance() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_stream_covariance").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--default",
+            "--stream-covariance",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testFGESWithWrittenCovariance() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA;
+        Path dirOut = TestFiles.createSubDir(tempDir, "fges_write_covariance");
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--default",
+            "--write-covariance",
+            "--use-covariance",
+            "--prefix", "fges",
+            "--out", dirOut.toString()
+        };
+        CausalCmdApplication.main(args);
+
+        String covarianceDataset = dirOut.resolve("fges_covariance.bin").toString();
+        String dirReuseOut = TestFiles.createSubDir(tempDir, "fges_reuse_covariance").toString();
+        String[] reuseArgs = {
+            "--dataset", covarianceDataset,
+            "--delimiter", "tab",
+            "--data-type", "covariance",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--default",
+            "--out", dirReuseOut
+        };
+        CausalCmdApplication.main(reuseArgs);
+    }
+
     @Test
     public void testGFCIWithContinuousMissingData() throws Exception {
         String dataset = TestFiles.CONTINUOUS_10VAR_1KCASE_MISSING_DATA;
@@ -69,6 +560,45 @@ public class CausalCmdApplicationTest {
         CausalCmdApplication.main(args);
     }
 
+    @Test
+    public void testGFCIWithPairwiseCovarianceOfMissingData() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_10VAR_1KCASE_MISSING_DATA;
+        String excludedVariables = TestFiles.EXCLUDE_VARIABLES;
+        String dirOut = TestFiles.createSubDir(tempDir, "gfci_pairwise_covariance").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--exclude-var", excludedVariables,
+            "--delimiter", "comma",
+            "--data-type", "continuous",
+            "--algorithm", "gfci",
+            "--test", "fisher-z-test",
+            "--score", "sem-bic-score",
+            "--missing", "*",
+            "--use-covariance",
+            "--default",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    @Test
+    public void testFGESWithVectorKernels() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_vector_kernels").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--use-covariance",
+            "--vector-kernels",
+            "--default",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
     @Test
     public void testGFCIWithContinuousDataAndChooseMagInPag() throws Exception {
         String dataset = TestFiles.CONTINUOUS_DATA;
@@ -123,6 +653,29 @@ public class CausalCmdApplicationTest {
         CausalCmdApplication.main(args);
     }
 
+    @Test
+    public void testFGESBinaryCovariance() throws Exception {
+        Path textFile = Paths.get(TestFiles.COVARIANCE_CONTINUOUS_DATA);
+        CovarianceDataReader dataReader = new LowerCovarianceDataFileReader(textFile, Delimiter.TAB);
+        ICovarianceMatrix covarianceMatrix = (ICovarianceMatrix) DataConvertUtils.toCovarianceMatrix(dataReader.readInData());
+
+        Path dirIn = TestFiles.createSubDir(tempDir, "fges_binary_covar_input");
+        Path dataset = dirIn.resolve("covariance.bin");
+        BinaryCovarianceFile.write(covarianceMatrix, dataset);
+
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_binary_covar").toString();
+        String[] args = {
+            "--dataset", dataset.toString(),
+            "--delimiter", "tab",
+            "--data-type", "covariance",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--default",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
     @Test
     public void testGFCIWithContinuousDataAndKnowledge() throws Exception {
         String dataset = TestFiles.CONTINUOUS_DATA;
@@ -142,6 +695,35 @@ public class CausalCmdApplicationTest {
         CausalCmdApplication.main(args);
     }
 
+    @Test
+    public void testGFCIWithCompressedContinuousDataAndKnowledge() throws Exception {
+        Path dirIn = TestFiles.createSubDir(tempDir, "gfci_compressed_input");
+        String dataset = gzip(Paths.get(TestFiles.CONTINUOUS_DATA), dirIn).toString();
+        String knowledge = gzip(Paths.get(TestFiles.KNOWLEDGE_CONTINUOUS_DATA), dirIn).toString();
+        String dirOut = TestFiles.createSubDir(tempDir, "gfci_compressed").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--knowledge", knowledge,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "gfci",
+            "--test", "fisher-z-test",
+            "--score", "sem-bic-score",
+            "--default",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    private static Path gzip(Path file, Path dir) throws Exception {
+        Path compressedFile = dir.resolve(file.getFileName() + ".gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressedFile))) {
+            Files.copy(file, out);
+        }
+
+        return compressedFile;
+    }
+
     @Test
     public void testGFCIWithNoHeaderContinuousData() throws Exception {
         String dataset = TestFiles.CONTINUOUS_DATA_NO_HEADER;
@@ -231,4 +813,31 @@ public class CausalCmdApplicationTest {
         CausalCmdApplication.main(args);
     }
 
+    @Test
+    public void testFGESWithContinuousDataAndThreads() throws Exception {
+        String dataset = TestFiles.CONTINUOUS_DATA;
+        String dirOut = TestFiles.createSubDir(tempDir, "fges_cont_threads").toString();
+        String[] args = {
+            "--dataset", dataset,
+            "--delimiter", "tab",
+            "--data-type", "continuous",
+            "--algorithm", "fges",
+            "--score", "sem-bic-score",
+            "--thread", "2",
+            "--default",
+            "--out", dirOut
+        };
+        CausalCmdApplication.main(args);
+    }
+
+    private static Set<String> getEdges(Graph graph) {
+        // the nodes of an edge with the same endpoints are in no particular order
+        return graph.getEdges().stream()
+                .map(edge -> (edge.getEndpoint1() == edge.getEndpoint2() && edge.getNode1().getName().compareTo(edge.getNode2().getName()) > 0)
+                ? new Edge(edge.getNode2(), edge.getNode1(), edge.getEndpoint2(), edge.getEndpoint1())
+                : edge)
+                .map(Edge::toString)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
 }
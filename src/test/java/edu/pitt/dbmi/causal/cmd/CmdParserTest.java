@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test the parsing of the command-line options.
+ */
+public class CmdParserTest {
+
+    @TempDir
+    public static Path tempDir;
+
+    /**
+     * The maximum number of categories of a discrete column of mixed data is
+     * stored, so that the columns with few categories are read in as
+     * discrete instead of all being read in as continuous.
+     */
+    @Test
+    public void testNumCategories() throws Exception {
+        String[] args = {
+            "--dataset", TestFiles.MIXED_DATA,
+            "--delimiter", "tab",
+            "--data-type", "mixed",
+            "--numCategories", "4",
+            "--algorithm", "fges",
+            "--score", "cg-bic-score",
+            "--out", tempDir.toString()
+        };
+        assertEquals(4, CmdParser.parse(args).getNumCategories());
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.graph.Node;
+import edu.pitt.dbmi.causal.cmd.data.ColumnMajorDataBox;
+import edu.pitt.dbmi.causal.cmd.data.CovarianceBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Compare the row-major dataset of Tetrad with the column-major one on
+ * workloads that scan the data a column at a time. Run with
+ * {@code mvn test -Dtest=ColumnMajorDataBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ColumnMajorDataBenchmarkTest {
+
+    private static final int NUM_OF_ROWS = 200_000;
+    private static final int NUM_OF_COLS = 50;
+
+    private static final int NUM_OF_WARMUPS = 2;
+    private static final int NUM_OF_RUNS = 5;
+
+    @Test
+    public void benchmarkColumnScans() throws Exception {
+        Random random = new Random(23);
+        double[][] rows = new double[NUM_OF_ROWS][NUM_OF_COLS];
+        double[][] columns = new double[NUM_OF_COLS][NUM_OF_ROWS];
+        for (int row = 0; row < NUM_OF_ROWS; row++) {
+            for (int col = 0; col < NUM_OF_COLS; col++) {
+                double value = random.nextGaussian();
+                rows[row][col] = value;
+                columns[col][row] = value;
+            }
+        }
+
+        List<Node> variables = new ArrayList<>(NUM_OF_COLS);
+        for (int col = 0; col < NUM_OF_COLS; col++) {
+            variables.add(new ContinuousVariable("X" + col));
+        }
+        DataSet rowMajor = new BoxDataSet(new DoubleDataBox(rows), variables);
+        DataSet columnMajor = new BoxDataSet(new ColumnMajorDataBox(NUM_OF_ROWS, columns), variables);
+
+        int[] halfOfCols = new int[NUM_OF_COLS / 2];
+        for (int j = 0; j < halfOfCols.length; j++) {
+            halfOfCols[j] = 2 * j;
+        }
+
+        System.out.printf("%d rows x %d columns, best of %d runs (ms)%n", NUM_OF_ROWS, NUM_OF_COLS, NUM_OF_RUNS);
+        System.out.printf("%-36s %12s %12s%n", "workload", "row-major", "column-major");
+        report("column sums, DataSet.getDouble", rowMajor, columnMajor, ColumnMajorDataBenchmarkTest::sumColumns);
+        report("column sums, primitive arrays", rowMajor, columnMajor, ColumnMajorDataBenchmarkTest::sumArrayColumns);
+        report("covariance matrix, causal-cmd", rowMajor, columnMajor, dataSet -> new CovarianceBuilder(null, 1).build(dataSet).getValue(0, 0));
+        report("covariance matrix, Tetrad", rowMajor, columnMajor, dataSet -> new CovarianceMatrix(dataSet).getValue(0, 0));
+        report("subset of half of the columns", rowMajor, columnMajor, dataSet -> dataSet.subsetColumns(halfOfCols).getDouble(0, 0));
+    }
+
+    private static void report(String workload, DataSet rowMajor, DataSet columnMajor, Workload workloadToRun) throws Exception {
+        System.out.printf("%-36s %12.1f %12.1f%n", workload, time(rowMajor, workloadToRun), time(columnMajor, workloadToRun));
+    }
+
+    /**
+     * Get the best time of the runs, in milliseconds.
+     */
+    private static double time(DataSet dataSet, Workload workload) throws Exception {
+        double checksum = 0;
+        for (int i = 0; i < NUM_OF_WARMUPS; i++) {
+            checksum += workload.run(dataSet);
+        }
+
+        long bestTime = Long.MAX_VALUE;
+        for (int i = 0; i < NUM_OF_RUNS; i++) {
+            long start = System.nanoTime();
+            checksum += workload.run(dataSet);
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+        }
+
+        // keep the results from being optimized away
+        if (Double.isInfinite(checksum)) {
+            System.out.println(checksum);
+        }
+
+        return bestTime / 1e6;
+    }
+
+    private static double sumColumns(DataSet dataSet) {
+        double total = 0;
+        for (int col = 0; col < dataSet.getNumColumns(); col++) {
+            for (int row = 0; row < dataSet.getNumRows(); row++) {
+                total += dataSet.getDouble(row, col);
+            }
+        }
+
+        return total;
+    }
+
+    private static double sumArrayColumns(DataSet dataSet) {
+        Object dataBox = ((BoxDataSet) dataSet).getDataBox();
+        double total = 0;
+        if (dataBox instanceof ColumnMajorDataBox) {
+            for (double[] column : ((ColumnMajorDataBox) dataBox).getColumns()) {
+                for (double value : column) {
+                    total += value;
+                }
+            }
+        } else {
+            double[][] data = ((DoubleDataBox) dataBox).getData();
+            for (int col = 0; col < NUM_OF_COLS; col++) {
+                for (double[] row : data) {
+                    total += row[col];
+                }
+            }
+        }
+
+        return total;
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+
+        double run(DataSet dataSet) throws Exception;
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.CovarianceMatrixOnTheFly;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import edu.cmu.tetrad.graph.Node;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the data box that stores a dataset compactly.
+ */
+public class CompactDataBoxTest {
+
+    private static final int NUM_OF_ROWS = 500;
+
+    private static final int NUM_OF_COLS = 6;
+
+    @Test
+    public void testCovarianceComputedOnTheFly() {
+        DataSet compactDataSet = CompactDataBox.compact(createContinuousDataSet());
+
+        // the covariances of the float values, widened to doubles
+        ICovarianceMatrix expected = new CovarianceMatrix(compactDataSet);
+        ICovarianceMatrix actual = new CovarianceMatrixOnTheFly(compactDataSet);
+        for (int i = 0; i < NUM_OF_COLS; i++) {
+            for (int j = 0; j < NUM_OF_COLS; j++) {
+                assertEquals(expected.getValue(i, j), actual.getValue(i, j), 1e-12);
+            }
+        }
+
+        // Tetrad demeans the columns in place, which must not change the stored values
+        DataSet originalDataSet = createContinuousDataSet();
+        for (int row = 0; row < NUM_OF_ROWS; row++) {
+            for (int col = 0; col < NUM_OF_COLS; col++) {
+                assertEquals((float) originalDataSet.getDouble(row, col), compactDataSet.getDouble(row, col));
+            }
+        }
+    }
+
+    private static DataSet createContinuousDataSet() {
+        List<Node> variables = new ArrayList<>(NUM_OF_COLS);
+        double[][] columns = new double[NUM_OF_COLS][NUM_OF_ROWS];
+        Random random = new Random(23);
+        for (int col = 0; col < NUM_OF_COLS; col++) {
+            variables.add(new ContinuousVariable("X" + (col + 1)));
+            for (int row = 0; row < NUM_OF_ROWS; row++) {
+                columns[col][row] = (col == 0)
+                        ? random.nextGaussian()
+                        : 0.5 * columns[col - 1][row] + random.nextGaussian();
+            }
+        }
+
+        return new BoxDataSet(new VerticalDoubleDataBox(columns), variables);
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Node;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test that the vectorized loops give the same results as the scalar ones.
+ * The data are a few rows longer than a multiple of any vector width, so that
+ * the vectorized loops also run their scalar tails.
+ */
+public class NumericKernelsTest {
+
+    private static final int NUM_OF_ROWS = 1027;
+
+    private static final int NUM_OF_COLS = 6;
+
+    private static final double TOLERANCE = 1e-10;
+
+    @AfterEach
+    public void tearDown() {
+        NumericKernels.setVectorized(false);
+    }
+
+    @Test
+    public void testMeansAndCovariances() {
+        assumeTrue(NumericKernels.isVectorApiAvailable());
+
+        Kernels scalarKernels = new ScalarKernels();
+        Kernels vectorKernels = new VectorKernels();
+
+        double[][] columns = createColumns(new Random(17));
+        for (int i = 0; i < NUM_OF_COLS; i++) {
+            double scalarMean = scalarKernels.sum(columns[i], 0, NUM_OF_ROWS) / NUM_OF_ROWS;
+            double vectorMean = vectorKernels.sum(columns[i], 0, NUM_OF_ROWS) / NUM_OF_ROWS;
+            assertEquals(scalarMean, vectorMean, TOLERANCE * Math.abs(scalarMean));
+
+            for (int j = 0; j <= i; j++) {
+                double scalarCovariance = getCovariance(scalarKernels, columns[i], columns[j]);
+                double vectorCovariance = getCovariance(vectorKernels, columns[i], columns[j]);
+                assertEquals(scalarCovariance, vectorCovariance, TOLERANCE * Math.abs(scalarCovariance));
+            }
+        }
+    }
+
+    @Test
+    public void testCovarianceBuilder() throws Exception {
+        assumeTrue(NumericKernels.isVectorApiAvailable());
+
+        // one column with missing values for the pairwise covariances
+        double[][] columns = createColumns(new Random(29));
+        for (int row = 0; row < NUM_OF_ROWS; row += 7) {
+            columns[1][row] = Double.NaN;
+        }
+
+        List<DataSet> dataSets = new ArrayList<>();
+        dataSets.add(createDataSet(columns, false));
+        dataSets.add(createDataSet(columns, true));
+        for (DataSet dataSet : dataSets) {
+            CovarianceBuilder covarianceBuilder = new CovarianceBuilder(null, 1);
+
+            NumericKernels.setVectorized(false);
+            ICovarianceMatrix scalarMatrix = covarianceBuilder.build(dataSet);
+
+            assertTrue(NumericKernels.setVectorized(true));
+            ICovarianceMatrix vectorMatrix = covarianceBuilder.build(dataSet);
+
+            assertEquals(scalarMatrix.getSampleSize(), vectorMatrix.getSampleSize());
+            for (int i = 0; i < NUM_OF_COLS; i++) {
+                for (int j = 0; j < NUM_OF_COLS; j++) {
+                    double expected = scalarMatrix.getValue(i, j);
+                    assertEquals(expected, vectorMatrix.getValue(i, j), TOLERANCE * Math.abs(expected));
+                }
+            }
+        }
+    }
+
+    private static double getCovariance(Kernels kernels, double[] x, double[] y) {
+        double[] centeredX = x.clone();
+        double[] centeredY = y.clone();
+        kernels.subtract(centeredX, kernels.sum(x, 0, NUM_OF_ROWS) / NUM_OF_ROWS, 0, NUM_OF_ROWS);
+        kernels.subtract(centeredY, kernels.sum(y, 0, NUM_OF_ROWS) / NUM_OF_ROWS, 0, NUM_OF_ROWS);
+
+        return kernels.dot(centeredX, centeredY, 0, NUM_OF_ROWS) / (NUM_OF_ROWS - 1);
+    }
+
+    /**
+     * Create correlated columns with nonzero means.
+     */
+    private static double[][] createColumns(Random random) {
+        double[][] columns = new double[NUM_OF_COLS][NUM_OF_ROWS];
+        for (int row = 0; row < NUM_OF_ROWS; row++) {
+            double common = random.nextGaussian();
+            for (int col = 0; col < NUM_OF_COLS; col++) {
+                columns[col][row] = (col + 1) * 10 + common + random.nextGaussian();
+            }
+        }
+
+        return columns;
+    }
+
+    private static DataSet createDataSet(double[][] columns, boolean isColumnMajor) {
+        List<Node> variables = new ArrayList<>();
+        for (int col = 0; col < NUM_OF_COLS; col++) {
+            variables.add(new ContinuousVariable("X" + (col + 1)));
+        }
+
+        if (isColumnMajor) {
+            return new BoxDataSet(new ColumnMajorDataBox(NUM_OF_ROWS, columns), variables);
+        }
+
+        DoubleDataBox dataBox = new DoubleDataBox(NUM_OF_ROWS, NUM_OF_COLS);
+        for (int row = 0; row < NUM_OF_ROWS; row++) {
+            for (int col = 0; col < NUM_OF_COLS; col++) {
+                dataBox.set(row, col, columns[col][row]);
+            }
+        }
+
+        return new BoxDataSet(dataBox, variables);
+    }
+
+}
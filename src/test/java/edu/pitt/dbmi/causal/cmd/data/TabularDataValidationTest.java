@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import edu.cmu.tetrad.data.DataType;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.validation.MessageType;
+import edu.pitt.dbmi.data.reader.validation.ValidationAttribute;
+import edu.pitt.dbmi.data.reader.validation.ValidationCode;
+import edu.pitt.dbmi.data.reader.validation.ValidationResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test the validation of tabular data while it is read in.
+ */
+public class TabularDataValidationTest {
+
+    private static final int NUM_OF_ROWS = 200;
+
+    private static final int MAX_NUM_OF_MESSAGES = 10;
+
+    @TempDir
+    public static Path tempDir;
+
+    @Test
+    public void testSinglePassReadWithMalformedData() throws Exception {
+        SinglePassTabularDataReader dataReader = new SinglePassTabularDataReader(createMalformedDataFile("single_pass.txt"), Delimiter.TAB);
+        dataReader.setMaximumNumberOfMessages(MAX_NUM_OF_MESSAGES);
+
+        List<ValidationResult> validationResults = new LinkedList<>();
+        assertNull(dataReader.read(Collections.emptySet(), DataType.Continuous, 0, true, null, validationResults));
+        assertValidationResults(validationResults);
+    }
+
+    @Test
+    public void testMappedReadWithMalformedData() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            MappedTabularDataReader dataReader = new MappedTabularDataReader(createMalformedDataFile("mapped.txt"), Delimiter.TAB, executorService, 2);
+            dataReader.setMaximumNumberOfMessages(MAX_NUM_OF_MESSAGES);
+
+            // small chunks, so that each of them has problems past the maximum
+            dataReader.setChunkSize(256);
+
+            List<ValidationResult> validationResults = new LinkedList<>();
+            assertNull(dataReader.read(Collections.emptySet(), DataType.Continuous, 0, true, null, validationResults));
+            assertValidationResults(validationResults);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Only the first problems of the file are kept, the others are counted.
+     */
+    private static void assertValidationResults(List<ValidationResult> validationResults) {
+        List<ValidationResult> problems = validationResults.stream()
+                .filter(e -> e.getMessageType() != MessageType.FILE_SUMMARY)
+                .collect(Collectors.toList());
+        assertEquals(MAX_NUM_OF_MESSAGES, problems.size());
+        for (int i = 0; i < problems.size(); i++) {
+            ValidationResult problem = problems.get(i);
+            assertEquals(i + 2, problem.getAttributes().get(ValidationAttribute.LINE_NUMBER));
+            assertEquals((i % 2 == 0) ? ValidationCode.ERROR : ValidationCode.WARNING, problem.getCode());
+        }
+
+        List<String> summaries = validationResults.stream()
+                .filter(e -> e.getMessageType() == MessageType.FILE_SUMMARY)
+                .map(ValidationResult::getMessage)
+                .collect(Collectors.toList());
+        int numOfProblemsNotKept = (NUM_OF_ROWS - MAX_NUM_OF_MESSAGES) / 2;
+        List<String> expected = new ArrayList<>();
+        expected.add(String.format("There are %d more warnings that are not shown.", numOfProblemsNotKept));
+        expected.add(String.format("There are %d more errors that are not shown.", numOfProblemsNotKept));
+        expected.add(String.format("There are %d cases and %d variables.", NUM_OF_ROWS, 3));
+        assertEquals(expected, summaries);
+    }
+
+    /**
+     * Create a data file whose rows alternate between an invalid number and a
+     * missing value with no missing marker.
+     */
+    private static Path createMalformedDataFile(String fileName) throws Exception {
+        List<String> lines = new ArrayList<>(NUM_OF_ROWS + 1);
+        lines.add("X1\tX2\tX3");
+        for (int row = 0; row < NUM_OF_ROWS; row++) {
+            lines.add((row % 2 == 0) ? "1.5\tabc\t2.5" : "1.5\t\t2.5");
+        }
+
+        return Files.write(tempDir.resolve(fileName), lines);
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.data;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.pitt.dbmi.data.reader.Delimiter;
+import java.io.ByteArrayInputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the reading of records when the thread is interrupted.
+ */
+public class TabularRecordReaderTest {
+
+    @Test
+    public void testReadRecordWhenInterrupted() throws Exception {
+        byte[] data = "X1\tX2\n1.5\t2.5\n".getBytes(StandardCharsets.UTF_8);
+        try (TabularRecordReader recordReader = new TabularRecordReader(new ByteArrayInputStream(data), Delimiter.TAB, '"', "//")) {
+            Thread.currentThread().interrupt();
+            try {
+                // the interrupted read is not taken for the end of the data
+                assertThrows(InterruptedIOException.class, () -> recordReader.readRecord(new ArrayList<>()));
+            } finally {
+                Thread.interrupted();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2019 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.causal.cmd.tetrad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test how the searches running side by side divide the threads.
+ */
+public class TetradRunnerTest {
+
+    @Test
+    public void testGetNumOfSearchThreads() {
+        // a single search gets every thread
+        assertEquals(8, TetradRunner.getNumOfSearchThreads(8, 1));
+
+        // the searches running side by side share the threads
+        assertEquals(4, TetradRunner.getNumOfSearchThreads(8, 2));
+        assertEquals(2, TetradRunner.getNumOfSearchThreads(8, 3));
+        assertEquals(1, TetradRunner.getNumOfSearchThreads(2, 2));
+
+        // no more searches run side by side than there are threads
+        assertEquals(1, TetradRunner.getNumOfSearchThreads(4, 16));
+
+        // each search gets at least one thread
+        assertEquals(1, TetradRunner.getNumOfSearchThreads(1, 0));
+    }
+
+}